@@ -25,6 +25,13 @@ android {
             )
         }
     }
+    buildFeatures {
+        buildConfig = true
+    }
+    testOptions {
+        // Robolectric inflates the real layouts in the simulation tests
+        unitTests.isIncludeAndroidResources = true
+    }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_11
         targetCompatibility = JavaVersion.VERSION_11
@@ -37,7 +44,12 @@ dependencies {
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
+    implementation(libs.webkit)
+    implementation(libs.okhttp)
+    implementation(project(":watchdog-core"))
     testImplementation(libs.junit)
+    testImplementation(libs.robolectric)
+    testImplementation(libs.mockwebserver)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
     implementation ("androidx.lifecycle:lifecycle-process:2.6.2")
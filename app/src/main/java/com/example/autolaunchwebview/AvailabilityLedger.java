@@ -0,0 +1,308 @@
+package com.example.autolaunchwebview;
+
+import android.app.ActivityManager;
+import android.app.ApplicationExitInfo;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleObserver;
+import androidx.lifecycle.OnLifecycleEvent;
+import androidx.lifecycle.ProcessLifecycleOwner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Tracks how long kiosk content was actually visible, per day and per cause of downtime.
+ * Time is only accounted on state transitions (no polling) into a small memory-mapped
+ * file, so the cost per transition and the file size stay constant however long we run.
+ */
+public class AvailabilityLedger implements LifecycleObserver {
+    private static final String TAG = "AvailabilityLedger";
+    private static final String FILE_NAME = "availability_ledger.bin";
+
+    public static final int VISIBLE = 0;
+    public static final int BACKGROUND = 1;
+    public static final int PROCESS_DOWN = 2;
+    public static final int LOADING = 3;
+    public static final int LOAD_ERROR = 4;
+    public static final int RENDERER_GONE = 5;
+    private static final int CAUSE_COUNT = 6;
+    public static final String[] CAUSE_NAMES = {
+            "visible", "background", "process_down", "loading", "load_error", "renderer_gone"
+    };
+
+    private static final int MAGIC = 0x4B41564C; // "KAVL"
+    private static final int VERSION = 1;
+    private static final int DAYS = 32;
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    // Header: magic, version, current cause, (pad), current cause since
+    private static final int OFF_CAUSE = 8;
+    private static final int OFF_SINCE = 16;
+    private static final int HEADER_SIZE = 32;
+    // Day slot: epoch day, then ms per cause, then entries per cause
+    private static final int SLOT_SIZE = 8 + CAUSE_COUNT * 8 * 2;
+
+    private static AvailabilityLedger instance;
+
+    private final MappedByteBuffer buffer;
+    private boolean foreground;
+    private int pageState = LOADING;
+
+    /**
+     * Open the ledger from any thread
+     */
+    public static synchronized AvailabilityLedger get(Context context) {
+        if (instance == null) {
+            // Normally loaded by KioskApplication's io warm-up; a main-thread caller that wins
+            // the race loads it here rather than failing StrictMode
+            KioskExecutors.permitDiskOnMain(() -> instance = new AvailabilityLedger(context.getApplicationContext()));
+        }
+        return instance;
+    }
+
+    /**
+     * The ledger if something in this process already opened it, otherwise null
+     */
+    public static synchronized AvailabilityLedger getIfOpen() {
+        return instance;
+    }
+
+    private AvailabilityLedger(Context context) {
+        MappedByteBuffer mapped = null;
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        long size = HEADER_SIZE + (long) SLOT_SIZE * DAYS;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() != size) {
+                raf.setLength(0);
+                raf.setLength(size);
+            }
+            mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open availability ledger", e);
+        }
+        buffer = mapped;
+        if (buffer == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            for (int i = 0; i < size; i += 8) {
+                buffer.putLong(i, 0);
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        } else {
+            recoverOpenInterval(context, now);
+        }
+        buffer.putInt(OFF_CAUSE, BACKGROUND);
+        buffer.putLong(OFF_SINCE, now);
+
+        // LifecycleRegistry is main-thread only; a late observer still gets ON_START replayed
+        KioskExecutors.main().execute(() -> ProcessLifecycleOwner.get().getLifecycle().addObserver(this));
+    }
+
+    /**
+     * The previous process died without closing its interval: credit its last cause up to
+     * when it was last seen alive, and the rest of the gap to PROCESS_DOWN
+     */
+    private void recoverOpenInterval(Context context, long now) {
+        int cause = buffer.getInt(OFF_CAUSE);
+        long since = buffer.getLong(OFF_SINCE);
+        if (cause < 0 || cause >= CAUSE_COUNT || since <= 0 || since > now) {
+            return;
+        }
+
+        long lastAlive = Math.max(since, EventJournal.getPreviousProcessLastSeen());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            try {
+                ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+                List<ApplicationExitInfo> exits = am.getHistoricalProcessExitReasons(null, 0, 1);
+                if (!exits.isEmpty() && exits.get(0).getTimestamp() > since) {
+                    lastAlive = exits.get(0).getTimestamp();
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to read process exit reasons", e);
+            }
+        }
+        lastAlive = Math.min(lastAlive, now);
+
+        credit(cause, since, lastAlive);
+        countEntry(PROCESS_DOWN, lastAlive);
+        credit(PROCESS_DOWN, lastAlive, now);
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_START)
+    public void onAppForegrounded() {
+        foreground = true;
+        update();
+    }
+
+    @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
+    public void onAppBackgrounded() {
+        foreground = false;
+        update();
+        if (buffer != null) {
+            // msync blocks on storage; keep it off the main thread
+            KioskExecutors.serial().execute(buffer::force);
+        }
+    }
+
+    public void onPageStarted() {
+        pageState = LOADING;
+        update();
+    }
+
+    public void onPageFinished() {
+        // An error earlier in this load keeps the page in the error state
+        if (pageState == LOADING) {
+            pageState = VISIBLE;
+            update();
+        }
+    }
+
+    public void onPageError() {
+        pageState = LOAD_ERROR;
+        update();
+    }
+
+    public void onRendererGone() {
+        pageState = RENDERER_GONE;
+        update();
+    }
+
+    private synchronized void update() {
+        if (buffer == null) {
+            return;
+        }
+        int cause = foreground ? pageState : BACKGROUND;
+        int current = buffer.getInt(OFF_CAUSE);
+        if (cause == current) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        credit(current, buffer.getLong(OFF_SINCE), now);
+        countEntry(cause, now);
+        buffer.putInt(OFF_CAUSE, cause);
+        buffer.putLong(OFF_SINCE, now);
+    }
+
+    /**
+     * Add [from, to) to the cause, splitting at local midnights
+     */
+    private void credit(int cause, long from, long to) {
+        // Never walk more days than the ring holds
+        from = Math.max(from, to - DAYS * DAY_MS);
+        while (from < to) {
+            long day = epochDay(from);
+            long dayEnd = Math.min(to, dayStart(day + 1));
+            if (dayEnd <= from) {
+                // Offset change right at midnight; always make progress
+                dayEnd = Math.min(to, from + DAY_MS);
+            }
+            int offset = slot(day);
+            int msOffset = offset + 8 + cause * 8;
+            buffer.putLong(msOffset, buffer.getLong(msOffset) + (dayEnd - from));
+            from = dayEnd;
+        }
+    }
+
+    private void countEntry(int cause, long at) {
+        int offset = slot(epochDay(at)) + 8 + CAUSE_COUNT * 8 + cause * 8;
+        buffer.putLong(offset, buffer.getLong(offset) + 1);
+    }
+
+    /**
+     * Offset of the slot for the given day, recycling it if it last held an older day
+     */
+    private int slot(long day) {
+        int offset = HEADER_SIZE + (int) (day % DAYS) * SLOT_SIZE;
+        if (buffer.getLong(offset) != day) {
+            for (int i = 0; i < SLOT_SIZE; i += 8) {
+                buffer.putLong(offset + i, 0);
+            }
+            buffer.putLong(offset, day);
+        }
+        return offset;
+    }
+
+    private static long epochDay(long wallMs) {
+        return Math.floorDiv(wallMs + TimeZone.getDefault().getOffset(wallMs), DAY_MS);
+    }
+
+    private static long dayStart(long epochDay) {
+        long utc = epochDay * DAY_MS;
+        return utc - TimeZone.getDefault().getOffset(utc);
+    }
+
+    /**
+     * Milliseconds per cause for the day `daysAgo` days back, including the still-open interval
+     */
+    public synchronized long[] getDay(int daysAgo) {
+        long[] totals = new long[CAUSE_COUNT];
+        if (buffer == null) {
+            return totals;
+        }
+        long now = System.currentTimeMillis();
+        long day = epochDay(now) - daysAgo;
+        int offset = HEADER_SIZE + (int) (day % DAYS) * SLOT_SIZE;
+        if (buffer.getLong(offset) == day) {
+            for (int i = 0; i < CAUSE_COUNT; i++) {
+                totals[i] = buffer.getLong(offset + 8 + i * 8);
+            }
+        }
+        if (daysAgo == 0) {
+            long since = Math.max(buffer.getLong(OFF_SINCE), dayStart(day));
+            totals[buffer.getInt(OFF_CAUSE)] += Math.max(0, now - since);
+        }
+        return totals;
+    }
+
+    /**
+     * Visible time as a fraction of all tracked time for the day, or -1 if nothing was tracked
+     */
+    public static double availability(long[] totals) {
+        long sum = 0;
+        for (long t : totals) {
+            sum += t;
+        }
+        return sum == 0 ? -1 : (double) totals[VISIBLE] / sum;
+    }
+
+    /**
+     * Daily availability and downtime causes for the last `days` days
+     */
+    public String getReport(int days) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+        StringBuilder out = new StringBuilder();
+        long now = System.currentTimeMillis();
+        for (int d = 0; d < Math.min(days, DAYS); d++) {
+            long[] totals = getDay(d);
+            double ratio = availability(totals);
+            if (ratio < 0) {
+                continue;
+            }
+            out.append(format.format(new Date(now - d * DAY_MS)))
+                    .append(String.format(Locale.US, ": %.2f%%", ratio * 100));
+            for (int i = 1; i < CAUSE_COUNT; i++) {
+                if (totals[i] > 0) {
+                    out.append(' ').append(CAUSE_NAMES[i]).append('=').append(totals[i] / 1000).append('s');
+                }
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}
@@ -8,6 +8,8 @@ import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 
+import com.example.autolaunchwebview.watchdog.BootDelayPolicy;
+
 public class BootReceiver extends BroadcastReceiver {
     private static final String TAG = "BootReceiver";
 
@@ -15,6 +17,7 @@ public class BootReceiver extends BroadcastReceiver {
     public void onReceive(Context context, Intent intent) {
         String action = intent.getAction();
         Log.d(TAG, "Received broadcast: " + action);
+        EventJournal.open(context);
 
         if (Intent.ACTION_BOOT_COMPLETED.equals(action) ||
                 "android.intent.action.QUICKBOOT_POWERON".equals(action) ||
@@ -22,28 +25,18 @@ public class BootReceiver extends BroadcastReceiver {
 
             // Optional: delay launch by manufacturer if needed
             int delayMs = getBootDelayForManufacturer();
+            EventJournal.record(EventJournal.BOOT_RECEIVED, delayMs, 0);
 
             new Handler(Looper.getMainLooper()).postDelayed(() -> {
-                Log.d(TAG, "Launching LaunchActivity after delay");
-
-                Intent launchIntent = new Intent(context, LaunchActivity.class);
-                launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                context.startActivity(launchIntent);
+                Log.d(TAG, "Requesting launch after boot delay");
+                PowerAccounting.onDispatch(PowerAccounting.SUBSYSTEM_LAUNCH);
+                LaunchCoordinator.requestLaunch(context, KioskStats.Trigger.BOOT);
 
             }, delayMs);
         }
     }
 
     private int getBootDelayForManufacturer() {
-        String manufacturer = Build.MANUFACTURER.toLowerCase();
-        if (manufacturer.contains("xiaomi") || manufacturer.contains("redmi")) {
-            return 15000;
-        } else if (manufacturer.contains("oneplus")) {
-            return 12000;
-        } else if (manufacturer.contains("oppo") || manufacturer.contains("vivo")) {
-            return 10000;
-        } else {
-            return 8000; // default fallback
-        }
+        return BootDelayPolicy.delayMsForManufacturer(Build.MANUFACTURER);
     }
 }
\ No newline at end of file
@@ -0,0 +1,498 @@
+package com.example.autolaunchwebview;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Delta updates for ContentBundleStore. The server publishes a manifest listing every file of
+ * a version by content hash, next to the files themselves stored by hash:
+ * <pre>
+ *   manifest.json        {"version": "42", "files": [{"path": "index.html", "sha256": "...", "size": 1234}]}
+ *   objects/&lt;sha256&gt;     file contents
+ * </pre>
+ * Only hashes the installed bundle doesn't already contain are downloaded, a few at a time,
+ * and each is verified as it streams in. The new version is assembled as a separate archive
+ * and handed to ContentBundleStore.install, which swaps it in atomically.
+ * The manifest is what every object is verified against, so it is only fetched over https
+ * (plain http only from the device itself, for a test server behind adb reverse).
+ */
+public class BundleUpdater {
+    private static final String TAG = "BundleUpdater";
+    private static final String OBJECTS_DIR = "objects";
+    // Sidecar next to each archive: one "sha256 crc size path" line per entry
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+    private static final int MAX_MANIFEST_BYTES = 4 * 1024 * 1024;
+    private static final Object UPDATE_LOCK = new Object();
+
+    /**
+     * What an update did; bytesFull is what a full download of the version would have cost
+     */
+    public static class Result {
+        public String version;
+        public boolean installed;
+        public int files;
+        public int filesFetched;
+        public long bytesFetched;
+        public long bytesFull;
+
+        @Override
+        public String toString() {
+            if (!installed) {
+                return "Bundle " + version + " already installed";
+            }
+            return String.format(Locale.US, "Installed bundle %s: fetched %d/%d files, %d of %d bytes (%.1f%%)",
+                    version, filesFetched, files, bytesFetched, bytesFull,
+                    bytesFull == 0 ? 0.0 : bytesFetched * 100.0 / bytesFull);
+        }
+    }
+
+    static class FileRef {
+        final String path;
+        final String sha256;
+        final long size;
+
+        FileRef(String path, String sha256, long size) {
+            this.path = path;
+            this.sha256 = sha256;
+            this.size = size;
+        }
+    }
+
+    /**
+     * An entry of the installed archive, found by content hash
+     */
+    static class LocalEntry {
+        final String path;
+        final long crc;
+        final long size;
+
+        LocalEntry(String path, long crc, long size) {
+            this.path = path;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+
+    static class Digest {
+        final String sha256;
+        final long crc;
+        final long size;
+
+        Digest(String sha256, long crc, long size) {
+            this.sha256 = sha256;
+            this.crc = crc;
+            this.size = size;
+        }
+    }
+
+    private final ContentBundleStore store;
+    private final String manifestUrl;
+    private final File objectsDir;
+    private final int parallelism;
+
+    public BundleUpdater(ContentBundleStore store, String manifestUrl) {
+        this.store = store;
+        this.manifestUrl = manifestUrl;
+        this.objectsDir = new File(store.getBundleDir(), OBJECTS_DIR);
+        // Bounded: enough to hide per-request latency, not enough to starve the WebView
+        this.parallelism = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * https, or http to a literal loopback address. HttpURLConnection never follows a redirect
+     * from https to http, so objects fetched relative to the manifest stay on https too.
+     */
+    static boolean isTrustedManifestUrl(URL url) {
+        String host = url.getHost();
+        return "https".equals(url.getProtocol())
+                || ("http".equals(url.getProtocol())
+                && ("127.0.0.1".equals(host) || "localhost".equalsIgnoreCase(host) || "[::1]".equals(host)));
+    }
+
+    /**
+     * Bring the installed bundle up to the manifest's version. Blocking; call off the main thread.
+     * Updates run one at a time across all instances: the service and DebugActivity each make
+     * their own updater, but they share objects/ and the staged archive.
+     */
+    public Result update() throws IOException {
+        synchronized (UPDATE_LOCK) {
+            return updateLocked();
+        }
+    }
+
+    private Result updateLocked() throws IOException {
+        URL url = new URL(manifestUrl);
+        if (!isTrustedManifestUrl(url)) {
+            throw new IOException("Bundle manifest must be https: " + manifestUrl);
+        }
+        String manifestVersion;
+        List<FileRef> files;
+        try {
+            JSONObject manifest = new JSONObject(new String(fetchSmall(url), StandardCharsets.UTF_8));
+            manifestVersion = manifest.getString("version");
+            files = parseFiles(manifest.getJSONArray("files"));
+        } catch (JSONException e) {
+            throw new IOException("Malformed bundle manifest", e);
+        }
+        if (!manifestVersion.matches("[A-Za-z0-9._-]+")) {
+            throw new IOException("Invalid bundle version: " + manifestVersion);
+        }
+
+        Result result = new Result();
+        result.version = manifestVersion;
+        result.files = files.size();
+        String installedVersion = store.getInstalledVersion();
+        if (manifestVersion.equals(installedVersion)) {
+            return result;
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism, new WorkerFactory());
+        try {
+            Map<String, LocalEntry> local = installedVersion != null
+                    ? loadIndex(installedVersion, pool)
+                    : new HashMap<>();
+
+            // Everything not already in the installed archive is needed as an object; objects
+            // left by an interrupted update are re-verified instead of fetched again
+            Map<String, Future<Long>> objectCrcs = new HashMap<>();
+            AtomicInteger fetchedFiles = new AtomicInteger();
+            AtomicLong fetchedBytes = new AtomicLong();
+            for (FileRef file : files) {
+                result.bytesFull += file.size;
+                if (local.containsKey(file.sha256) || objectCrcs.containsKey(file.sha256)) {
+                    continue;
+                }
+                objectCrcs.put(file.sha256, pool.submit(() -> {
+                    File object = new File(objectsDir, file.sha256);
+                    if (object.exists()) {
+                        try {
+                            return verify(object, file);
+                        } catch (IOException e) {
+                            Log.w(TAG, "Discarding bad object " + file.sha256, e);
+                        }
+                    }
+                    long crc = download(file, object);
+                    fetchedFiles.incrementAndGet();
+                    fetchedBytes.addAndGet(file.size);
+                    return crc;
+                }));
+            }
+            Map<String, Long> crcs = new HashMap<>();
+            for (Map.Entry<String, Future<Long>> entry : objectCrcs.entrySet()) {
+                crcs.put(entry.getKey(), await(entry.getValue()));
+            }
+            result.filesFetched = fetchedFiles.get();
+            result.bytesFetched = fetchedBytes.get();
+
+            File staged = new File(store.getBundleDir(), manifestVersion + ".zip.tmp");
+            assemble(staged, files, installedVersion, local, crcs);
+            writeIndex(manifestVersion, files, local, crcs);
+            store.install(staged, manifestVersion);
+            result.installed = true;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        deleteObjects();
+        KioskStats.onBundleUpdate(result.filesFetched, result.bytesFetched, result.bytesFull);
+        Log.i(TAG, result.toString());
+        return result;
+    }
+
+    private static List<FileRef> parseFiles(JSONArray array) throws JSONException, IOException {
+        List<FileRef> files = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject file = array.getJSONObject(i);
+            String sha256 = file.getString("sha256").toLowerCase(Locale.US);
+            // The hash becomes a file name, so it must be exactly that
+            if (!sha256.matches("[0-9a-f]{64}")) {
+                throw new IOException("Invalid hash in manifest: " + sha256);
+            }
+            files.add(new FileRef(file.getString("path"), sha256, file.getLong("size")));
+        }
+        return files;
+    }
+
+    /**
+     * Hash index of the installed archive, from its sidecar or (for archives that arrived
+     * without one, e.g. pushed by hand) by hashing every entry in parallel
+     */
+    private Map<String, LocalEntry> loadIndex(String version, ExecutorService pool) throws IOException {
+        Map<String, LocalEntry> index = new HashMap<>();
+        File indexFile = new File(store.getBundleDir(), version + INDEX_SUFFIX);
+        if (indexFile.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(indexFile))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split(" ", 4);
+                    if (parts.length == 4) {
+                        index.put(parts[0], new LocalEntry(parts[3], Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+                    }
+                }
+                return index;
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "Corrupt bundle index, rebuilding", e);
+                index.clear();
+            }
+        }
+
+        ContentBundleStore.Bundle bundle = new ContentBundleStore.Bundle(
+                new File(store.getBundleDir(), version + ".zip"), version);
+        List<String> paths = new ArrayList<>(bundle.entries.keySet());
+        List<Future<Digest>> hashes = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            ContentBundleStore.Entry entry = bundle.entries.get(path);
+            hashes.add(pool.submit(() -> {
+                try (InputStream in = bundle.open(entry)) {
+                    return digest(in, null);
+                }
+            }));
+        }
+        try (Writer writer = new FileWriter(indexFile)) {
+            for (int i = 0; i < paths.size(); i++) {
+                Digest digest = await(hashes.get(i));
+                LocalEntry entry = new LocalEntry(paths.get(i), digest.crc, digest.size);
+                index.put(digest.sha256, entry);
+                writer.write(digest.sha256 + " " + entry.crc + " " + entry.size + " " + entry.path + "\n");
+            }
+        }
+        return index;
+    }
+
+    private void writeIndex(String version, List<FileRef> files, Map<String, LocalEntry> local, Map<String, Long> crcs)
+            throws IOException {
+        try (Writer writer = new FileWriter(new File(store.getBundleDir(), version + INDEX_SUFFIX))) {
+            for (FileRef file : files) {
+                LocalEntry existing = local.get(file.sha256);
+                long crc = existing != null ? existing.crc : crcs.get(file.sha256);
+                writer.write(file.sha256 + " " + crc + " " + file.size + " " + file.path + "\n");
+            }
+        }
+    }
+
+    /**
+     * Write the new version as a stored (uncompressed) archive, so ContentBundleStore can
+     * serve every entry straight from its mapping
+     */
+    private void assemble(File staged, List<FileRef> files, @Nullable String installedVersion,
+                          Map<String, LocalEntry> local, Map<String, Long> crcs) throws IOException {
+        ContentBundleStore.Bundle installed = installedVersion != null && !local.isEmpty()
+                ? new ContentBundleStore.Bundle(new File(store.getBundleDir(), installedVersion + ".zip"), installedVersion)
+                : null;
+        byte[] buffer = new byte[64 * 1024];
+        try (FileOutputStream fileOut = new FileOutputStream(staged);
+             ZipOutputStream zip = new ZipOutputStream(fileOut)) {
+            for (FileRef file : files) {
+                LocalEntry existing = local.get(file.sha256);
+                ZipEntry entry = new ZipEntry(file.path);
+                entry.setMethod(ZipEntry.STORED);
+                entry.setSize(file.size);
+                entry.setCompressedSize(file.size);
+                entry.setCrc(existing != null ? existing.crc : crcs.get(file.sha256));
+                zip.putNextEntry(entry);
+                InputStream in = existing != null && installed != null
+                        ? installed.open(installed.entries.get(existing.path))
+                        : new FileInputStream(new File(objectsDir, file.sha256));
+                try {
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        zip.write(buffer, 0, n);
+                    }
+                } finally {
+                    in.close();
+                }
+                zip.closeEntry();
+            }
+            zip.finish();
+            fileOut.getFD().sync();
+        } catch (IOException | RuntimeException e) {
+            if (!staged.delete()) {
+                Log.w(TAG, "Failed to remove " + staged);
+            }
+            throw e;
+        } finally {
+            if (installed != null) {
+                installed.close();
+            }
+        }
+    }
+
+    /**
+     * Download one object, hashing as it streams; it only gets its final name once verified
+     */
+    private long download(FileRef file, File object) throws IOException {
+        if (!objectsDir.isDirectory() && !objectsDir.mkdirs()) {
+            throw new IOException("Failed to create " + objectsDir);
+        }
+        File part = new File(objectsDir, file.sha256 + ".part");
+        HttpURLConnection connection = open(new URL(new URL(manifestUrl), OBJECTS_DIR + "/" + file.sha256));
+        try (InputStream in = connection.getInputStream();
+             FileOutputStream out = new FileOutputStream(part)) {
+            Digest digest = digest(in, out);
+            out.getFD().sync();
+            check(file, digest);
+            if (!part.renameTo(object)) {
+                throw new IOException("Failed to store object " + file.sha256);
+            }
+            return digest.crc;
+        } finally {
+            connection.disconnect();
+            if (part.exists() && !part.delete()) {
+                Log.w(TAG, "Failed to remove " + part);
+            }
+        }
+    }
+
+    private static long verify(File object, FileRef file) throws IOException {
+        try (InputStream in = new FileInputStream(object)) {
+            Digest digest = digest(in, null);
+            check(file, digest);
+            return digest.crc;
+        } catch (IOException e) {
+            if (!object.delete()) {
+                Log.w(TAG, "Failed to remove " + object);
+            }
+            throw e;
+        }
+    }
+
+    private static void check(FileRef file, Digest digest) throws IOException {
+        if (!file.sha256.equals(digest.sha256) || file.size != digest.size) {
+            throw new IOException("Hash mismatch for " + file.path + " (" + file.sha256 + ")");
+        }
+    }
+
+    /**
+     * SHA-256, CRC-32 and size in one pass over the stream, optionally copying it to out
+     */
+    private static Digest digest(InputStream in, @Nullable OutputStream out) throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        long size = 0;
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            sha256.update(buffer, 0, n);
+            crc.update(buffer, 0, n);
+            if (out != null) {
+                out.write(buffer, 0, n);
+            }
+            size += n;
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : sha256.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return new Digest(hex.toString(), crc.getValue(), size);
+    }
+
+    private static byte[] fetchSmall(URL url) throws IOException {
+        HttpURLConnection connection = open(url);
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+                if (out.size() > MAX_MANIFEST_BYTES) {
+                    throw new IOException("Manifest too large");
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(URL url) throws IOException {
+        PowerAccounting.onNetwork(PowerAccounting.SUBSYSTEM_CONTENT);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            connection.disconnect();
+            throw new IOException("HTTP " + status + " for " + url);
+        }
+        return connection;
+    }
+
+    private void deleteObjects() {
+        File[] objects = objectsDir.listFiles();
+        if (objects == null) {
+            return;
+        }
+        for (File object : objects) {
+            if (!object.delete()) {
+                Log.w(TAG, "Failed to remove " + object);
+            }
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bundle update interrupted", e);
+        }
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "BundleUpdater-" + count.incrementAndGet());
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    }
+}
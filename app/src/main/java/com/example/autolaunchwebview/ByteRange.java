@@ -0,0 +1,70 @@
+package com.example.autolaunchwebview;
+
+import androidx.annotation.Nullable;
+
+/**
+ * A single-range Range header (RFC 9110 section 14) resolved against a resource of known
+ * length: the inclusive byte span to send, and whether that is a 206 part or the whole 200.
+ * Anything this doesn't understand (other units, several ranges, malformed or invalid specs)
+ * is ignored, as the RFC allows, and the whole resource is sent.
+ */
+final class ByteRange {
+    final long start;
+    // Inclusive; start - 1 for an empty resource sent whole
+    final long end;
+    final boolean partial;
+
+    private ByteRange(long start, long end, boolean partial) {
+        this.start = start;
+        this.end = end;
+        this.partial = partial;
+    }
+
+    long length() {
+        return end - start + 1;
+    }
+
+    /**
+     * The span to serve for header, or null if the range can't be satisfied (416)
+     */
+    @Nullable
+    static ByteRange parse(@Nullable String header, long length) {
+        ByteRange whole = new ByteRange(0, length - 1, false);
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return whole;
+        }
+        int dash = header.indexOf('-');
+        if (dash < 0) {
+            return whole;
+        }
+        String from = header.substring(6, dash).trim();
+        String to = header.substring(dash + 1).trim();
+        if (!from.matches("\\d*") || !to.matches("\\d*") || from.isEmpty() && to.isEmpty()) {
+            return whole;
+        }
+        long first;
+        long last;
+        try {
+            first = from.isEmpty() ? -1 : Long.parseLong(from);
+            last = to.isEmpty() ? -1 : Long.parseLong(to);
+        } catch (NumberFormatException e) {
+            // More digits than a long holds
+            return whole;
+        }
+        if (from.isEmpty()) {
+            // Suffix range: the last N bytes; none of an empty resource
+            if (last == 0 || length == 0) {
+                return null;
+            }
+            return new ByteRange(Math.max(0, length - last), length - 1, true);
+        }
+        if (!to.isEmpty() && last < first) {
+            // Invalid rather than unsatisfiable, so ignored
+            return whole;
+        }
+        if (first >= length) {
+            return null;
+        }
+        return new ByteRange(first, to.isEmpty() ? length - 1 : Math.min(last, length - 1), true);
+    }
+}
@@ -0,0 +1,426 @@
+package com.example.autolaunchwebview;
+
+import android.annotation.SuppressLint;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.provider.Settings;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * Outbound WebSocket to a management server that pushes commands to the kiosk. One long-lived
+ * connection with protocol-level pings as heartbeat, jittered exponential backoff on
+ * reconnect, and acknowledgements batched into one frame. Everything except socket I/O runs
+ * on the main thread, so no state here needs locking.
+ * <pre>
+ *   server: {"id": "7", "cmd": "set_url", "url": "https://example.com"}
+ *   kiosk:  {"type": "ack", "acks": [{"id": "7", "ok": true}]}
+ * </pre>
+ * Commands: reload, set_url, clear_cache, dump_diagnostics (answered with a "result"), restart.
+ * The bearer token goes out with the handshake, so only wss:// endpoints are accepted, or
+ * ws:// to the device itself (an adb reverse tunnel to a test broker); see isAllowedEndpoint.
+ */
+public class CommandChannel extends WebSocketListener {
+    private static final String TAG = "CommandChannel";
+    private static final long PING_INTERVAL_S = 30;
+    private static final long MIN_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 5 * 60_000;
+    // Acks arriving within this window go out in one frame
+    private static final long ACK_BATCH_MS = 100;
+    private static final long RESTART_DELAY_MS = 1000;
+    private static final int RECENT_IDS = 64;
+    private static final int DIAGNOSTIC_JOURNAL_RECORDS = 200;
+
+    public static final String[] COMMANDS = {"reload", "set_url", "clear_cache", "dump_diagnostics", "restart"};
+    private static final int CMD_RELOAD = 0;
+    private static final int CMD_SET_URL = 1;
+    private static final int CMD_CLEAR_CACHE = 2;
+    private static final int CMD_DUMP_DIAGNOSTICS = 3;
+    private static final int CMD_RESTART = 4;
+
+    /**
+     * The live kiosk WebView, registered by MainActivity while it exists
+     */
+    public interface Target {
+        void reload();
+
+        void loadUrl(String url);
+
+        void clearCache();
+    }
+
+    private static WeakReference<Target> target = new WeakReference<>(null);
+
+    private final Context context;
+    private final String url;
+    @Nullable
+    private final String token;
+    private final OkHttpClient client;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private final Runnable connectRunnable = this::connect;
+    private final Runnable flushAcksRunnable = this::flushAcks;
+    // Commands already executed, in case the server redelivers after a reconnect
+    private final LinkedHashSet<String> recentIds = new LinkedHashSet<>();
+    private JSONArray pendingAcks = new JSONArray();
+    private WebSocket socket;
+    private boolean connected;
+    private boolean running;
+    private long backoffMs = MIN_BACKOFF_MS;
+
+    public CommandChannel(Context context, String url, @Nullable String token) {
+        this.context = context.getApplicationContext();
+        this.url = url;
+        this.token = token;
+        this.client = new OkHttpClient.Builder()
+                .pingInterval(PING_INTERVAL_S, TimeUnit.SECONDS)
+                .retryOnConnectionFailure(false)
+                .build();
+    }
+
+    /**
+     * Whether url may carry commands and the token: wss://, or ws:// to a loopback host
+     */
+    public static boolean isAllowedEndpoint(String url) {
+        Uri uri = Uri.parse(url);
+        String scheme = uri.getScheme();
+        if ("wss".equalsIgnoreCase(scheme)) {
+            return true;
+        }
+        String host = uri.getHost();
+        // Literal hosts only; resolving a name here could be redirected off the device
+        return "ws".equalsIgnoreCase(scheme) && host != null
+                && (host.equals("127.0.0.1") || host.equalsIgnoreCase("localhost")
+                || host.equals("[::1]") || host.equals("::1"));
+    }
+
+    /**
+     * Set or clear the command target; called on the main thread
+     */
+    public static void setTarget(@Nullable Target newTarget) {
+        target = new WeakReference<>(newTarget);
+    }
+
+    /**
+     * Clear the target only if it is still the given one (a newer activity may have replaced it)
+     */
+    public static void clearTarget(Target oldTarget) {
+        if (target.get() == oldTarget) {
+            target = new WeakReference<>(null);
+        }
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        connect();
+    }
+
+    public void stop() {
+        running = false;
+        handler.removeCallbacks(connectRunnable);
+        handler.removeCallbacks(flushAcksRunnable);
+        if (socket != null) {
+            socket.close(1001, "Service stopping");
+            socket = null;
+        }
+        setConnected(false);
+        client.dispatcher().executorService().shutdown();
+    }
+
+    private void connect() {
+        if (!running) {
+            return;
+        }
+        PowerAccounting.onDispatch(PowerAccounting.SUBSYSTEM_COMMANDS);
+        PowerAccounting.onNetwork(PowerAccounting.SUBSYSTEM_COMMANDS);
+        Request.Builder request = new Request.Builder().url(url);
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        socket = client.newWebSocket(request.build(), this);
+    }
+
+    // --- WebSocketListener, called on OkHttp threads ---
+
+    @Override
+    public void onOpen(@NonNull WebSocket webSocket, @NonNull Response response) {
+        handler.post(() -> {
+            if (webSocket != socket) {
+                return;
+            }
+            backoffMs = MIN_BACKOFF_MS;
+            setConnected(true);
+            sendHello();
+            flushAcks();
+        });
+    }
+
+    @Override
+    public void onMessage(@NonNull WebSocket webSocket, @NonNull String text) {
+        PowerAccounting.onNetwork(PowerAccounting.SUBSYSTEM_COMMANDS);
+        handler.post(() -> {
+            if (webSocket == socket) {
+                handleMessage(text);
+            }
+        });
+    }
+
+    @Override
+    public void onClosing(@NonNull WebSocket webSocket, int code, @NonNull String reason) {
+        webSocket.close(1000, null);
+    }
+
+    @Override
+    public void onClosed(@NonNull WebSocket webSocket, int code, @NonNull String reason) {
+        handler.post(() -> onDisconnected(webSocket, "closed " + code));
+    }
+
+    @Override
+    public void onFailure(@NonNull WebSocket webSocket, @NonNull Throwable t, @Nullable Response response) {
+        handler.post(() -> onDisconnected(webSocket, t.toString()));
+    }
+
+    private void onDisconnected(WebSocket webSocket, String why) {
+        if (webSocket != socket) {
+            return;
+        }
+        socket = null;
+        setConnected(false);
+        if (!running) {
+            return;
+        }
+        // Random extra delay so a fleet that lost the server together does not reconnect in lockstep
+        long delay = backoffMs + (long) (random.nextDouble() * backoffMs / 2);
+        backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+        Log.w(TAG, "Command channel down (" + why + "), reconnecting in " + delay + " ms");
+        handler.postDelayed(connectRunnable, delay);
+    }
+
+    private void setConnected(boolean connected) {
+        if (this.connected != connected) {
+            this.connected = connected;
+            KioskStats.onCommandChannelState(connected);
+            EventJournal.record(EventJournal.COMMAND_CHANNEL, connected ? 1 : 0, 0);
+        }
+    }
+
+    // --- Commands ---
+
+    private void handleMessage(String text) {
+        String id = null;
+        try {
+            JSONObject message = new JSONObject(text);
+            id = message.getString("id");
+            if (recentIds.contains(id)) {
+                queueAck(id, null);
+                return;
+            }
+            String command = message.getString("cmd");
+            int index = indexOf(command);
+            if (index < 0) {
+                queueAck(id, "Unknown command: " + command);
+                return;
+            }
+            remember(id);
+            KioskStats.onCommand(index);
+            EventJournal.record(EventJournal.COMMAND_RECEIVED, index, 0);
+            execute(index, id, message);
+        } catch (JSONException e) {
+            Log.w(TAG, "Malformed command: " + text, e);
+            if (id != null) {
+                queueAck(id, "Malformed command");
+            }
+        }
+    }
+
+    private void execute(int command, String id, JSONObject message) throws JSONException {
+        Target current = target.get();
+        switch (command) {
+            case CMD_RELOAD:
+                if (current == null) {
+                    queueAck(id, "Kiosk activity not running");
+                    return;
+                }
+                current.reload();
+                break;
+            case CMD_SET_URL:
+                String newUrl = message.getString("url");
+                String scheme = Uri.parse(newUrl).getScheme();
+                if (!"https".equalsIgnoreCase(scheme) && !"http".equalsIgnoreCase(scheme)) {
+                    // No file:, content:, javascript: or intent: pages in the kiosk WebView
+                    queueAck(id, "Only http(s) URLs can be shown");
+                    return;
+                }
+                KioskConfig.setHomeUrl(context, newUrl);
+                if (current != null) {
+                    current.loadUrl(newUrl);
+                }
+                break;
+            case CMD_CLEAR_CACHE:
+                KioskExecutors.io().execute(() -> MediaCache.get(context).clear());
+                if (current != null) {
+                    current.clearCache();
+                }
+                break;
+            case CMD_DUMP_DIAGNOSTICS:
+                // Rendering reads process stats and decodes the journal; keep it off main
+                KioskExecutors.io().execute(() -> {
+                    String body = MetricsServer.render() + "\n# Event journal\n"
+                            + EventJournal.decode(DIAGNOSTIC_JOURNAL_RECORDS);
+                    handler.post(() -> sendDiagnostics(id, body));
+                });
+                return;
+            case CMD_RESTART:
+                queueAck(id, null);
+                flushAcks();
+                restart();
+                return;
+        }
+        queueAck(id, null);
+    }
+
+    private void sendDiagnostics(String id, String body) {
+        try {
+            JSONObject result = new JSONObject();
+            result.put("type", "result");
+            result.put("id", id);
+            result.put("body", body);
+            send(result);
+            queueAck(id, null);
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to build diagnostics", e);
+            queueAck(id, "Failed to build diagnostics");
+        }
+    }
+
+    /**
+     * Kill the process and have the alarm manager bring MainActivity back shortly after
+     */
+    @SuppressLint("UnspecifiedImmutableFlag")
+    private void restart() {
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            flags |= PendingIntent.FLAG_IMMUTABLE;
+        }
+        PendingIntent pending = PendingIntent.getActivity(context, 0, intent, flags);
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager != null) {
+            alarmManager.set(AlarmManager.RTC, System.currentTimeMillis() + RESTART_DELAY_MS, pending);
+            PowerAccounting.onAlarm(PowerAccounting.SUBSYSTEM_COMMANDS);
+        }
+        if (socket != null) {
+            socket.close(1001, "Restarting");
+        }
+        EventJournal.flush();
+        Log.w(TAG, "Restarting on remote command");
+        // Give the close and ack frames a moment to leave
+        handler.postDelayed(() -> Process.killProcess(Process.myPid()), 200);
+    }
+
+    private void queueAck(String id, @Nullable String error) {
+        try {
+            JSONObject ack = new JSONObject();
+            ack.put("id", id);
+            ack.put("ok", error == null);
+            if (error != null) {
+                ack.put("error", error);
+            }
+            pendingAcks.put(ack);
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to build ack", e);
+            return;
+        }
+        if (pendingAcks.length() == 1) {
+            handler.postDelayed(flushAcksRunnable, ACK_BATCH_MS);
+        }
+    }
+
+    private void flushAcks() {
+        handler.removeCallbacks(flushAcksRunnable);
+        if (pendingAcks.length() == 0 || socket == null) {
+            // Kept until the next connection
+            return;
+        }
+        try {
+            JSONObject batch = new JSONObject();
+            batch.put("type", "ack");
+            batch.put("acks", pendingAcks);
+            if (send(batch)) {
+                pendingAcks = new JSONArray();
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to build ack batch", e);
+        }
+    }
+
+    @SuppressLint("HardwareIds")
+    private void sendHello() {
+        try {
+            JSONObject hello = new JSONObject();
+            hello.put("type", "hello");
+            hello.put("device", Settings.Secure.getString(context.getContentResolver(), Settings.Secure.ANDROID_ID));
+            hello.put("model", Build.MANUFACTURER + " " + Build.MODEL);
+            hello.put("sdk", Build.VERSION.SDK_INT);
+            hello.put("commands", new JSONArray(COMMANDS));
+            send(hello);
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to build hello", e);
+        }
+    }
+
+    private boolean send(JSONObject message) {
+        if (socket == null) {
+            return false;
+        }
+        PowerAccounting.onNetwork(PowerAccounting.SUBSYSTEM_COMMANDS);
+        return socket.send(message.toString());
+    }
+
+    private void remember(String id) {
+        recentIds.add(id);
+        if (recentIds.size() > RECENT_IDS) {
+            Iterator<String> oldest = recentIds.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    private static int indexOf(String command) {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            if (COMMANDS[i].equals(command)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.autolaunchwebview;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Takes kiosk settings from a technician over adb, see KioskConfig.applyExtras:
+ * <pre>
+ *   adb shell am broadcast -n com.example.autolaunchwebview/.ConfigReceiver --es home_url https://example.com
+ * </pre>
+ * The manifest guards it with the DUMP permission, which the shell holds and ordinary apps
+ * can't get, so other apps on the device can't rewrite the configuration.
+ */
+public class ConfigReceiver extends BroadcastReceiver {
+    private static final String TAG = "ConfigReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        Context app = context.getApplicationContext();
+        PendingResult result = goAsync();
+        KioskExecutors.io().execute(() -> {
+            try {
+                // Also the way to pick up a bundle just pushed to the drop folder
+                ContentBundleStore.get(app).importDropped();
+                if (KioskConfig.applyExtras(app, intent)) {
+                    Log.i(TAG, "Configuration updated");
+                    // Let the service pick up a changed command channel endpoint
+                    restartService(app);
+                }
+            } finally {
+                result.finish();
+            }
+        });
+    }
+
+    private static void restartService(Context context) {
+        Intent serviceIntent = new Intent(context, InactivityMonitorService.class);
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                context.startForegroundService(serviceIntent);
+            } else {
+                context.startService(serviceIntent);
+            }
+        } catch (IllegalStateException | SecurityException e) {
+            // Background start refused; the service reads the new settings on its next start
+            Log.w(TAG, "Failed to notify the monitor service", e);
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package com.example.autolaunchwebview;
+
+import android.content.Context;
+import android.util.Log;
+import android.webkit.MimeTypeMap;
+import android.webkit.WebResourceResponse;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.webkit.WebViewAssetLoader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Versioned web-app bundles (zip archives) kept in app-internal storage and served to the
+ * WebView through WebViewAssetLoader. Archives are memory-mapped and entries are served
+ * straight from the mapping. The first valid version is activated as soon as it is installed;
+ * later ones only when the next main-frame load starts, so a page never mixes files from two
+ * versions.
+ */
+public class ContentBundleStore implements WebViewAssetLoader.PathHandler {
+    private static final String TAG = "ContentBundleStore";
+    public static final String PATH_PREFIX = "/bundle/";
+    public static final String HOME_URL = "https://" + WebViewAssetLoader.DEFAULT_DOMAIN + PATH_PREFIX + "index.html";
+
+    private static final String BUNDLE_DIR = "bundles";
+    private static final String POINTER_FILE = "current";
+    private static final String DROP_DIR = "bundle-drop";
+
+    private static ContentBundleStore instance;
+
+    private final File bundleDir;
+    private final File dropDir;
+    private volatile Bundle active;
+    // Kept open for one more swap so in-flight reads from the previous page don't fail
+    private Bundle previous;
+    // A version was installed over the active one; the next main-frame load swaps it in
+    private volatile boolean pending;
+    // Whether a bundle has been validated and activated; kept in memory so the main thread
+    // can choose the home URL without touching the disk
+    private volatile boolean available;
+
+    public static synchronized ContentBundleStore get(Context context) {
+        if (instance == null) {
+            // Normally loaded by KioskApplication's io warm-up; a main-thread caller that wins
+            // the race loads it here rather than failing StrictMode
+            KioskExecutors.permitDiskOnMain(() -> instance = new ContentBundleStore(context.getApplicationContext()));
+        }
+        return instance;
+    }
+
+    private ContentBundleStore(Context context) {
+        this(new File(context.getFilesDir(), BUNDLE_DIR), dropDirOf(context));
+    }
+
+    // Tests use their own directories
+    ContentBundleStore(File bundleDir, @Nullable File dropDir) {
+        this.bundleDir = bundleDir;
+        this.dropDir = dropDir;
+        if (!bundleDir.isDirectory() && !bundleDir.mkdirs()) {
+            Log.e(TAG, "Failed to create " + bundleDir);
+        }
+        importDropped();
+        activate();
+    }
+
+    @Nullable
+    private static File dropDirOf(Context context) {
+        File external = context.getExternalFilesDir(null);
+        return external != null ? new File(external, DROP_DIR) : null;
+    }
+
+    /**
+     * Whether a bundle is active, i.e. the kiosk should load HOME_URL instead of the network site.
+     * Archives that failed validation never count.
+     */
+    public boolean hasBundle() {
+        return available;
+    }
+
+    @Nullable
+    public String getActiveVersion() {
+        Bundle bundle = active;
+        return bundle != null ? bundle.version : null;
+    }
+
+    /**
+     * The version the pointer names, which may not have been activated yet
+     */
+    @Nullable
+    public synchronized String getInstalledVersion() {
+        return readPointer();
+    }
+
+    File getBundleDir() {
+        return bundleDir;
+    }
+
+    /**
+     * Install an archive as the next version. The pointer is swapped with a rename, so a crash
+     * leaves either the old or the new version current, never a partial one.
+     */
+    public synchronized void install(File archive, String version) throws IOException {
+        // Validate before making it current
+        new Bundle(archive, version).close();
+
+        File target = new File(bundleDir, version + ".zip");
+        if (!archive.equals(target) && !archive.renameTo(target)) {
+            copy(archive, target);
+        }
+        File tmpPointer = new File(bundleDir, POINTER_FILE + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmpPointer)) {
+            out.write(version.getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            ((FileOutputStream) out).getFD().sync();
+        }
+        if (!tmpPointer.renameTo(new File(bundleDir, POINTER_FILE))) {
+            throw new IOException("Failed to update bundle pointer");
+        }
+        Log.d(TAG, "Installed bundle " + version);
+        if (active == null) {
+            // Nothing is being served from a bundle yet, so no page can mix versions
+            activate();
+        } else {
+            pending = true;
+        }
+    }
+
+    /**
+     * Swap in a version installed since the last swap; called when a main-frame load starts.
+     * Costs one volatile read unless install() ran.
+     */
+    public void activatePending() {
+        if (pending) {
+            activate();
+        }
+    }
+
+    private synchronized void activate() {
+        pending = false;
+        String version = readPointer();
+        if (version == null) {
+            return;
+        }
+        Bundle current = active;
+        if (current != null && current.version.equals(version)) {
+            return;
+        }
+        try {
+            Bundle next = new Bundle(new File(bundleDir, version + ".zip"), version);
+            if (previous != null) {
+                previous.close();
+            }
+            previous = current;
+            active = next;
+            available = true;
+            Log.d(TAG, "Activated bundle " + version + " (" + next.entries.size() + " entries)");
+            deleteStaleArchives(version, current != null ? current.version : null);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open bundle " + version + ", keeping current", e);
+        }
+    }
+
+    @Nullable
+    @Override
+    public WebResourceResponse handle(@NonNull String path) {
+        Bundle bundle = active;
+        if (bundle == null) {
+            return null;
+        }
+        if (path.isEmpty() || path.endsWith("/")) {
+            path = path + "index.html";
+        }
+        Entry entry = bundle.entries.get(path);
+        if (entry == null) {
+            return new WebResourceResponse("text/plain", "utf-8", 404, "Not Found",
+                    Collections.emptyMap(), new ByteBufferInputStream(ByteBuffer.allocate(0)));
+        }
+        try {
+            return new WebResourceResponse(guessMimeType(path), null, bundle.open(entry));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read " + path + " from bundle " + bundle.version, e);
+            return null;
+        }
+    }
+
+    /**
+     * Pick up an archive pushed by a technician, e.g.
+     * adb push site-42.zip /sdcard/Android/data/<package>/files/bundle-drop/
+     * Runs at startup, on the service's bundle check and on any ConfigReceiver broadcast;
+     * disk I/O, so never on the main thread.
+     */
+    public synchronized void importDropped() {
+        File[] dropped = dropDir != null ? dropDir.listFiles((dir, name) -> name.endsWith(".zip")) : null;
+        if (dropped == null) {
+            return;
+        }
+        for (File archive : dropped) {
+            String version = archive.getName().substring(0, archive.getName().length() - 4);
+            try {
+                File staged = new File(bundleDir, version + ".zip.tmp");
+                copy(archive, staged);
+                install(staged, version);
+            } catch (IOException e) {
+                Log.e(TAG, "Rejected dropped bundle " + archive.getName(), e);
+            }
+            if (!archive.delete()) {
+                Log.w(TAG, "Failed to remove " + archive);
+            }
+        }
+    }
+
+    @Nullable
+    private String readPointer() {
+        File pointer = new File(bundleDir, POINTER_FILE);
+        if (!pointer.exists()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(pointer)) {
+            byte[] data = new byte[(int) pointer.length()];
+            int read = 0;
+            while (read < data.length) {
+                int n = in.read(data, read, data.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            return new String(data, 0, read, StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read bundle pointer", e);
+            return null;
+        }
+    }
+
+    private void deleteStaleArchives(String keep, @Nullable String keepPrevious) {
+        // Archives and their BundleUpdater hash index sidecars
+        File[] archives = bundleDir.listFiles((dir, name) -> name.endsWith(".zip") || name.endsWith(".idx"));
+        if (archives == null) {
+            return;
+        }
+        for (File archive : archives) {
+            String name = archive.getName();
+            String version = name.substring(0, name.length() - 4);
+            if (!version.equals(keep) && !version.equals(keepPrevious) && !archive.delete()) {
+                Log.w(TAG, "Failed to delete stale bundle " + name);
+            }
+        }
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        try (FileChannel in = new FileInputStream(from).getChannel();
+             FileChannel out = new FileOutputStream(to).getChannel()) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+            out.force(true);
+        }
+    }
+
+    private static String guessMimeType(String path) {
+        int dot = path.lastIndexOf('.');
+        String ext = dot >= 0 ? path.substring(dot + 1).toLowerCase(Locale.US) : "";
+        switch (ext) {
+            case "js":
+            case "mjs":
+                return "text/javascript";
+            case "css":
+                return "text/css";
+            case "json":
+                return "application/json";
+            case "wasm":
+                return "application/wasm";
+            case "svg":
+                return "image/svg+xml";
+            default:
+                String mime = MimeTypeMap.getSingleton().getMimeTypeFromExtension(ext);
+                return mime != null ? mime : "application/octet-stream";
+        }
+    }
+
+    static class Entry {
+        final int method;
+        final int dataOffset;
+        final int compressedSize;
+
+        Entry(int method, int dataOffset, int compressedSize) {
+            this.method = method;
+            this.dataOffset = dataOffset;
+            this.compressedSize = compressedSize;
+        }
+    }
+
+    /**
+     * One memory-mapped archive with its central directory parsed into a path index
+     */
+    static class Bundle {
+        private static final int EOCD_SIG = 0x06054b50;
+        private static final int CEN_SIG = 0x02014b50;
+        private static final int LOC_SIG = 0x04034b50;
+
+        final String version;
+        final Map<String, Entry> entries = new HashMap<>();
+        private final MappedByteBuffer mapped;
+
+        Bundle(File archive, String version) throws IOException {
+            this.version = version;
+            try (RandomAccessFile raf = new RandomAccessFile(archive, "r")) {
+                if (raf.length() > Integer.MAX_VALUE) {
+                    throw new IOException("Bundle too large: " + archive);
+                }
+                mapped = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            }
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            readCentralDirectory();
+        }
+
+        private void readCentralDirectory() throws IOException {
+            int eocd = -1;
+            for (int i = mapped.limit() - 22; i >= Math.max(0, mapped.limit() - 22 - 0xFFFF); i--) {
+                if (mapped.getInt(i) == EOCD_SIG) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd < 0) {
+                throw new IOException("Not a zip archive (no end of central directory)");
+            }
+            int count = mapped.getShort(eocd + 10) & 0xFFFF;
+            int offset = mapped.getInt(eocd + 16);
+
+            for (int i = 0; i < count; i++) {
+                if (mapped.getInt(offset) != CEN_SIG) {
+                    throw new IOException("Corrupt central directory");
+                }
+                int method = mapped.getShort(offset + 10) & 0xFFFF;
+                int compressedSize = mapped.getInt(offset + 20);
+                int nameLength = mapped.getShort(offset + 28) & 0xFFFF;
+                int extraLength = mapped.getShort(offset + 30) & 0xFFFF;
+                int commentLength = mapped.getShort(offset + 32) & 0xFFFF;
+                int localOffset = mapped.getInt(offset + 42);
+                String name = readName(offset + 46, nameLength);
+
+                if (mapped.getInt(localOffset) != LOC_SIG) {
+                    throw new IOException("Corrupt local header for " + name);
+                }
+                int localName = mapped.getShort(localOffset + 26) & 0xFFFF;
+                int localExtra = mapped.getShort(localOffset + 28) & 0xFFFF;
+                int dataOffset = localOffset + 30 + localName + localExtra;
+
+                if (!name.endsWith("/")) {
+                    if (method != 0 && method != 8) {
+                        throw new IOException("Unsupported compression for " + name);
+                    }
+                    entries.put(name, new Entry(method, dataOffset, compressedSize));
+                }
+                offset += 46 + nameLength + extraLength + commentLength;
+            }
+        }
+
+        private String readName(int offset, int length) {
+            byte[] bytes = new byte[length];
+            ByteBuffer view = mapped.duplicate();
+            view.position(offset);
+            view.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Stored entries are served as a view of the mapping (no copy); deflated ones are
+         * inflated straight out of it
+         */
+        InputStream open(Entry entry) throws IOException {
+            ByteBuffer slice = mapped.duplicate();
+            slice.position(entry.dataOffset);
+            slice.limit(entry.dataOffset + entry.compressedSize);
+            InputStream raw = new ByteBufferInputStream(slice.slice());
+            return entry.method == 0 ? raw : new RawInflaterInputStream(raw);
+        }
+
+        void close() {
+            // A MappedByteBuffer is unmapped when collected; just drop the index
+            entries.clear();
+        }
+    }
+
+    /**
+     * Raw deflate needs one trailing dummy byte at the end of input (as ZipFile supplies)
+     */
+    static class RawInflaterInputStream extends InflaterInputStream {
+        private boolean eof;
+
+        RawInflaterInputStream(InputStream in) {
+            super(in, new Inflater(true));
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new IOException("Unexpected end of deflated entry");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            inf.end();
+        }
+    }
+
+    static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.min(n, buffer.remaining());
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+    }
+}
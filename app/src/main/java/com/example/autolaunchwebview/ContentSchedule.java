@@ -0,0 +1,268 @@
+package com.example.autolaunchwebview;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Dayparting rules compiled into a flat, sorted interval index covering the next HORIZON_DAYS.
+ * Each index slot says which URL shows from its start until the next slot's start, so finding
+ * what to show is a binary search and the only timer needed is one for the next slot.
+ * <pre>
+ * {"default": "https://example.com",
+ *  "entries": [{"url": "https://example.com/breakfast", "days": "MON-FRI", "start": "07:00",
+ *               "end": "10:30", "priority": 1, "from": "2026-01-01", "until": "2026-12-31",
+ *               "except": ["2026-12-25"]}]}
+ * </pre>
+ * "days" is a comma list of days or ranges (default every day), "end" at or before "start"
+ * runs past midnight, and when entries overlap the highest priority wins (ties: listed first).
+ */
+public class ContentSchedule {
+    public static final int HORIZON_DAYS = 14;
+    private static final String[] DAY_NAMES = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+
+    private final long[] starts;
+    // Null where no entry applies and the default (or the normal home URL) shows
+    private final String[] urls;
+    private final long validUntil;
+    @Nullable
+    private final String defaultUrl;
+
+    private static class Rule {
+        String url;
+        boolean[] days = new boolean[7];
+        int startMinute;
+        int endMinute;
+        int priority;
+        int order;
+        String from;
+        String until;
+        Set<String> except = new HashSet<>();
+    }
+
+    private static class Interval {
+        final long start;
+        final long end;
+        final Rule rule;
+
+        Interval(long start, long end, Rule rule) {
+            this.start = start;
+            this.end = end;
+            this.rule = rule;
+        }
+    }
+
+    private ContentSchedule(long[] starts, String[] urls, long validUntil, @Nullable String defaultUrl) {
+        this.starts = starts;
+        this.urls = urls;
+        this.validUntil = validUntil;
+        this.defaultUrl = defaultUrl;
+    }
+
+    /**
+     * Compile rules for [now, now + HORIZON_DAYS) in the given time zone
+     */
+    public static ContentSchedule compile(JSONObject json, long now, TimeZone zone) throws JSONException {
+        List<Rule> rules = parseRules(json.optJSONArray("entries"));
+        String defaultUrl = json.optString("default", null);
+
+        Calendar day = Calendar.getInstance(zone, Locale.US);
+        day.setTimeInMillis(now);
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        // Start a day early so entries running past last midnight are covered
+        day.add(Calendar.DAY_OF_MONTH, -1);
+
+        // ...and end on the midnight after now + HORIZON_DAYS, so the whole horizon is covered
+        Calendar horizon = (Calendar) day.clone();
+        horizon.add(Calendar.DAY_OF_MONTH, HORIZON_DAYS + 2);
+        long validUntil = horizon.getTimeInMillis();
+
+        List<Interval> intervals = new ArrayList<>();
+        Calendar at = (Calendar) day.clone();
+        while (day.getTimeInMillis() < validUntil) {
+            String date = String.format(Locale.US, "%04d-%02d-%02d",
+                    day.get(Calendar.YEAR), day.get(Calendar.MONTH) + 1, day.get(Calendar.DAY_OF_MONTH));
+            int weekday = day.get(Calendar.DAY_OF_WEEK) - 1;
+            for (Rule rule : rules) {
+                if (!rule.days[weekday] || rule.except.contains(date)
+                        || (rule.from != null && date.compareTo(rule.from) < 0)
+                        || (rule.until != null && date.compareTo(rule.until) > 0)) {
+                    continue;
+                }
+                long start = wallTime(at, day, rule.startMinute, 0);
+                long end = wallTime(at, day, rule.endMinute, rule.endMinute <= rule.startMinute ? 1 : 0);
+                if (end > now && start < validUntil) {
+                    intervals.add(new Interval(Math.max(start, now), Math.min(end, validUntil), rule));
+                }
+            }
+            day.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return flatten(intervals, now, validUntil, defaultUrl);
+    }
+
+    /**
+     * Sweep the (possibly overlapping) intervals into non-overlapping slots, keeping the
+     * winning rule's URL for each and merging neighbours that show the same thing
+     */
+    private static ContentSchedule flatten(List<Interval> intervals, long now, long validUntil,
+                                           @Nullable String defaultUrl) {
+        intervals.sort((a, b) -> Long.compare(a.start, b.start));
+        // Active intervals, best rule first; ended ones are dropped lazily
+        PriorityQueue<Interval> active = new PriorityQueue<>(Math.max(1, intervals.size()), (a, b) ->
+                a.rule.priority != b.rule.priority ? b.rule.priority - a.rule.priority : a.rule.order - b.rule.order);
+        long[] starts = new long[intervals.size() * 2 + 1];
+        String[] urls = new String[starts.length];
+        int count = 0;
+
+        int next = 0;
+        long time = now;
+        while (time < validUntil) {
+            while (next < intervals.size() && intervals.get(next).start <= time) {
+                active.add(intervals.get(next++));
+            }
+            while (!active.isEmpty() && active.peek().end <= time) {
+                active.poll();
+            }
+            String url = active.isEmpty() ? null : active.peek().rule.url;
+            if (count == 0 || !equal(urls[count - 1], url)) {
+                starts[count] = time;
+                urls[count] = url;
+                count++;
+            }
+
+            // The winner can only change where some interval starts or ends
+            long boundary = next < intervals.size() ? intervals.get(next).start : validUntil;
+            for (Interval interval : active) {
+                if (interval.end > time && interval.end < boundary) {
+                    boundary = interval.end;
+                }
+            }
+            time = boundary;
+        }
+        return new ContentSchedule(Arrays.copyOf(starts, count), Arrays.copyOf(urls, count), validUntil, defaultUrl);
+    }
+
+    private static long wallTime(Calendar scratch, Calendar day, int minuteOfDay, int addDays) {
+        scratch.setTimeInMillis(day.getTimeInMillis());
+        scratch.add(Calendar.DAY_OF_MONTH, addDays);
+        scratch.set(Calendar.HOUR_OF_DAY, minuteOfDay / 60);
+        scratch.set(Calendar.MINUTE, minuteOfDay % 60);
+        return scratch.getTimeInMillis();
+    }
+
+    private static List<Rule> parseRules(@Nullable JSONArray entries) throws JSONException {
+        List<Rule> rules = new ArrayList<>();
+        if (entries == null) {
+            return rules;
+        }
+        for (int i = 0; i < entries.length(); i++) {
+            JSONObject entry = entries.getJSONObject(i);
+            Rule rule = new Rule();
+            rule.url = entry.getString("url");
+            rule.order = i;
+            rule.priority = entry.optInt("priority", 0);
+            rule.startMinute = parseTime(entry.optString("start", "00:00"));
+            rule.endMinute = parseTime(entry.optString("end", "24:00"));
+            rule.from = entry.optString("from", null);
+            rule.until = entry.optString("until", null);
+            parseDays(entry.optString("days", "SUN-SAT"), rule.days);
+            JSONArray except = entry.optJSONArray("except");
+            if (except != null) {
+                for (int j = 0; j < except.length(); j++) {
+                    rule.except.add(except.getString(j));
+                }
+            }
+            rules.add(rule);
+        }
+        return rules;
+    }
+
+    private static int parseTime(String time) throws JSONException {
+        int colon = time.indexOf(':');
+        try {
+            int hours = Integer.parseInt(time.substring(0, colon).trim());
+            int minutes = Integer.parseInt(time.substring(colon + 1).trim());
+            if (hours < 0 || minutes < 0 || minutes > 59 || hours * 60 + minutes > 24 * 60) {
+                throw new JSONException("Time out of range: " + time);
+            }
+            // "24:00" means the end of the day, i.e. the next midnight
+            return hours * 60 + minutes;
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw new JSONException("Bad time: " + time);
+        }
+    }
+
+    private static void parseDays(String spec, boolean[] days) throws JSONException {
+        for (String part : spec.toUpperCase(Locale.US).split(",")) {
+            String[] range = part.trim().split("-");
+            int first = dayIndex(range[0]);
+            int last = range.length > 1 ? dayIndex(range[1]) : first;
+            for (int d = first; ; d = (d + 1) % 7) {
+                days[d] = true;
+                if (d == last) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static int dayIndex(String name) throws JSONException {
+        String prefix = name.trim();
+        for (int i = 0; i < DAY_NAMES.length; i++) {
+            if (prefix.startsWith(DAY_NAMES[i])) {
+                return i;
+            }
+        }
+        throw new JSONException("Bad day: " + name);
+    }
+
+    private static boolean equal(@Nullable String a, @Nullable String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private int slotAt(long time) {
+        int index = Arrays.binarySearch(starts, time);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * URL to show at the given time: a matching entry's, else the schedule default, else null
+     */
+    @Nullable
+    public String urlAt(long time) {
+        int slot = slotAt(time);
+        String url = slot >= 0 && time < validUntil ? urls[slot] : null;
+        return url != null ? url : defaultUrl;
+    }
+
+    /**
+     * When what urlAt returns next changes, or when the index must be recompiled
+     */
+    public long nextTransition(long time) {
+        int slot = slotAt(time);
+        return slot + 1 < starts.length ? starts[slot + 1] : validUntil;
+    }
+
+    public long getValidUntil() {
+        return validUntil;
+    }
+
+    public int size() {
+        return starts.length;
+    }
+}
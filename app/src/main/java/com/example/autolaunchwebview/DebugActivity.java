@@ -9,25 +9,64 @@ import android.provider.Settings;
 import android.util.Log;
 import android.widget.Button;
 import android.widget.LinearLayout;
+import android.widget.ScrollView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class DebugActivity extends Activity {
     private static final String TAG = "DebugActivity";
+    private static final long REFRESH_INTERVAL_MS = 1000;
+    // Binder-backed sections are only re-read every N refreshes
+    private static final int PERMISSION_REFRESH_TICKS = 10;
+    private static final int MEMORY_SAMPLE_TICKS = 5;
+    private static final String SPARK = "\u2581\u2582\u2583\u2584\u2585\u2586\u2587\u2588";
+
+    private static final int SECTION_DEVICE = 0;
+    private static final int SECTION_PERMISSIONS = 1;
+    private static final int SECTION_RELAUNCH = 2;
+    private static final int SECTION_MEMORY = 3;
+    private static final int SECTION_WEBVIEW = 4;
+    private static final int SECTION_TIMERS = 5;
+    private static final int SECTION_JOURNAL = 6;
+    private static final int SECTION_AVAILABILITY = 7;
+    private static final int SECTION_COUNT = 8;
+    private static final int AVAILABILITY_DAYS = 7;
+    private static final int JOURNAL_TAIL = 15;
+
+    private final TaskScope scope = TaskScope.of(this);
+    private final TextView[] sectionViews = new TextView[SECTION_COUNT];
+    // Written on the io pool, read on the main thread when applied
+    private final String[] collected = new String[SECTION_COUNT];
+    private final String[] rendered = new String[SECTION_COUNT];
+    private final AtomicBoolean uiUpdatePending = new AtomicBoolean(false);
+    private final long[] memoryTrend = new long[60];
+    private final long[] powerHours = new long[PowerAccounting.HOURS];
+    private final Runnable applyUpdate = this::applyCollectedSections;
+    private ScheduledFuture<?> collector;
+    private int tick;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        EventJournal.open(this);
 
         LinearLayout layout = new LinearLayout(this);
         layout.setOrientation(LinearLayout.VERTICAL);
         layout.setPadding(50, 50, 50, 50);
 
-        // Status display
-        TextView statusText = new TextView(this);
-        statusText.setText(getStatusReport());
-        statusText.setTextSize(14);
-        layout.addView(statusText);
+        // Live status sections, filled in by the background collector
+        for (int i = 0; i < SECTION_COUNT; i++) {
+            TextView sectionText = new TextView(this);
+            sectionText.setTextSize(14);
+            sectionText.setText(i == 0 ? "=== AUTO-LAUNCH DEBUG STATUS ===\n\nCollecting..." : "");
+            sectionViews[i] = sectionText;
+            layout.addView(sectionText);
+        }
 
         // Test buttons
         Button testOverlayBtn = new Button(this);
@@ -43,24 +82,124 @@ public class DebugActivity extends Activity {
         Button refreshBtn = new Button(this);
         refreshBtn.setText("Refresh Status");
         refreshBtn.setOnClickListener(v -> {
-            statusText.setText(getStatusReport());
+            scope.submit(KioskExecutors.io(), () -> collect(true));
             Toast.makeText(this, "Status refreshed", Toast.LENGTH_SHORT).show();
         });
         layout.addView(refreshBtn);
 
-        setContentView(layout);
+        Button dumpJournalBtn = new Button(this);
+        dumpJournalBtn.setText("Dump Event Journal to Logcat");
+        dumpJournalBtn.setOnClickListener(v -> {
+            scope.submit(KioskExecutors.io(), () -> Log.i(TAG, "Event journal:\n" + EventJournal.decode(Integer.MAX_VALUE)));
+        });
+        layout.addView(dumpJournalBtn);
+
+        Button bundleUpdateBtn = new Button(this);
+        bundleUpdateBtn.setText("Check for Bundle Update");
+        bundleUpdateBtn.setOnClickListener(v -> {
+            scope.submit(KioskExecutors.io(), this::checkBundleUpdate);
+        });
+        layout.addView(bundleUpdateBtn);
+
+        Button retainedBtn = new Button(this);
+        retainedBtn.setText("Check Retained Activities");
+        retainedBtn.setOnClickListener(v -> {
+            scope.submit(KioskExecutors.io(), () -> {
+                // Forces a GC, so only on demand rather than on every refresh
+                int retained = TaskScope.getRetainedActivities(true);
+                scope.post(() -> Toast.makeText(this, "Destroyed activities still in memory: " + retained,
+                        Toast.LENGTH_LONG).show());
+            });
+        });
+        layout.addView(retainedBtn);
+
+        ScrollView scrollView = new ScrollView(this);
+        scrollView.addView(layout);
+        setContentView(scrollView);
     }
 
-    private String getStatusReport() {
+    @Override
+    protected void onStart() {
+        super.onStart();
+        tick = 0;
+        collector = KioskExecutors.scheduleIo(() -> collect(false), 0, REFRESH_INTERVAL_MS);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        collector.cancel(false);
+        collector = null;
+        scope.remove(applyUpdate);
+        uiUpdatePending.set(false);
+    }
+
+    /**
+     * Gather every section on the io pool and hand the result to the UI at most
+     * once per refresh interval
+     */
+    private synchronized void collect(boolean force) {
+        try {
+            boolean slowTick = force || tick % PERMISSION_REFRESH_TICKS == 0;
+            if (slowTick) {
+                setSection(SECTION_DEVICE, getDeviceReport());
+                setSection(SECTION_PERMISSIONS, getPermissionReport());
+                setSection(SECTION_JOURNAL, "\n--- RECENT EVENTS ---\n" + EventJournal.decode(JOURNAL_TAIL));
+                setSection(SECTION_AVAILABILITY, getAvailabilityReport());
+            }
+            if (force || tick % MEMORY_SAMPLE_TICKS == 0) {
+                KioskStats.sampleMemory();
+            }
+            setSection(SECTION_RELAUNCH, getRelaunchReport());
+            setSection(SECTION_MEMORY, getMemoryReport());
+            setSection(SECTION_WEBVIEW, getWebViewReport());
+            setSection(SECTION_TIMERS, getTimerReport());
+            tick++;
+
+            // Throttle: if the previous update hasn't been applied yet, it will pick this one up
+            if (uiUpdatePending.compareAndSet(false, true)) {
+                scope.post(applyUpdate);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to collect diagnostics", e);
+        }
+    }
+
+    private void setSection(int section, String text) {
+        synchronized (collected) {
+            collected[section] = text;
+        }
+    }
+
+    /**
+     * Apply only the sections whose text actually changed
+     */
+    private void applyCollectedSections() {
+        uiUpdatePending.set(false);
+        synchronized (collected) {
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                String text = collected[i];
+                if (text != null && !text.equals(rendered[i])) {
+                    sectionViews[i].setText(text);
+                    rendered[i] = text;
+                }
+            }
+        }
+    }
+
+    private String getDeviceReport() {
         StringBuilder status = new StringBuilder();
         status.append("=== AUTO-LAUNCH DEBUG STATUS ===\n\n");
 
         // Device info
         status.append("Device: ").append(Build.MANUFACTURER).append(" ").append(Build.MODEL).append("\n");
-        status.append("Android: ").append(Build.VERSION.RELEASE).append(" (API ").append(Build.VERSION.SDK_INT).append(")\n\n");
+        status.append("Android: ").append(Build.VERSION.RELEASE).append(" (API ").append(Build.VERSION.SDK_INT).append(")\n");
+        return status.toString();
+    }
 
-        // Permissions
-        status.append("--- PERMISSIONS ---\n");
+    private String getPermissionReport() {
+        StringBuilder status = new StringBuilder();
+        status.append("\n--- PERMISSIONS ---\n");
 
         // Overlay permission
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
@@ -100,15 +239,205 @@ public class DebugActivity extends Activity {
         return status.toString();
     }
 
+    private String getRelaunchReport() {
+        StringBuilder status = new StringBuilder();
+        status.append("\n--- RELAUNCHES ---\n");
+        status.append("Uptime: ").append(formatDuration(KioskStats.getUptimeMs())).append("\n");
+        for (KioskStats.Trigger trigger : KioskStats.Trigger.values()) {
+            status.append(trigger.name().toLowerCase()).append(": ")
+                    .append(KioskStats.getRelaunchCount(trigger)).append("\n");
+        }
+        for (int i = 0; i < KioskStats.OUTCOME_NAMES.length; i++) {
+            status.append(i == 0 ? "Outcomes: " : ", ").append(KioskStats.OUTCOME_NAMES[i]).append('=')
+                    .append(KioskStats.getLaunchOutcomeCount(i));
+        }
+        status.append("\n");
+        long lastLatency = KioskStats.getLastRelaunchLatencyMs();
+        status.append("Last relaunch latency: ").append(lastLatency < 0 ? "-" : lastLatency + "ms").append("\n");
+        return status.toString();
+    }
+
+    private String getMemoryReport() {
+        int n = KioskStats.getMemoryTrend(memoryTrend);
+        StringBuilder status = new StringBuilder();
+        status.append("\n--- MEMORY ---\n");
+        if (n == 0) {
+            status.append("No samples yet\n");
+            return status.toString();
+        }
+
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < n; i++) {
+            min = Math.min(min, memoryTrend[i]);
+            max = Math.max(max, memoryTrend[i]);
+        }
+        status.append("Heap used: ").append(memoryTrend[n - 1] / 1024).append("MB")
+                .append(" (trend ").append(memoryTrend[n - 1] - memoryTrend[0] >= 0 ? "+" : "")
+                .append((memoryTrend[n - 1] - memoryTrend[0]) / 1024).append("MB)\n");
+        for (int i = 0; i < n; i++) {
+            int level = max == min ? 0 : (int) ((memoryTrend[i] - min) * (SPARK.length() - 1) / (max - min));
+            status.append(SPARK.charAt(level));
+        }
+        status.append("\n");
+        return status.toString();
+    }
+
+    private String getWebViewReport() {
+        LatencyHistogram pageLoads = KioskStats.getPageLoadLatency();
+        StringBuilder status = new StringBuilder();
+        status.append("\n--- WEBVIEW ---\n");
+        status.append("Page loads: ").append(KioskStats.getPageLoads()).append("\n");
+        status.append("Load p50/p90/p99: ")
+                .append(formatPercentile(pageLoads.percentile(50))).append(" / ")
+                .append(formatPercentile(pageLoads.percentile(90))).append(" / ")
+                .append(formatPercentile(pageLoads.percentile(99))).append("\n");
+        LatencyHistogram sessionStarts = KioskStats.getSessionStartLatency();
+        if (sessionStarts.getCount() > 0) {
+            // With session profiles this includes loading home with a cold HTTP cache
+            status.append("New session p50/p90: ")
+                    .append(formatPercentile(sessionStarts.percentile(50))).append(" / ")
+                    .append(formatPercentile(sessionStarts.percentile(90))).append("\n");
+        }
+        status.append("Renderer crashes: ").append(KioskStats.getRendererCrashes()).append("\n");
+        status.append("Bridge batches/activity/events: ").append(KioskStats.getBridgeBatches())
+                .append(" / ").append(KioskStats.getPageActivityEvents())
+                .append(" / ").append(KioskStats.getPageEvents()).append("\n");
+        long visualChecks = KioskStats.getVisualChecks();
+        long visualCpuNs = KioskStats.getVisualCaptureCpuNs() + KioskStats.getVisualAnalyzeCpuNs();
+        status.append("Screen checks: ").append(visualChecks)
+                .append(" (blank ").append(KioskStats.getVisualBlankChecks())
+                .append(", ").append(visualChecks > 0 ? visualCpuNs / visualChecks / 1000 : 0).append(" us CPU each)")
+                .append(", reloads blank/frozen: ")
+                .append(KioskStats.getVisualRecoveries(VisualHealthMonitor.REASON_BLANK)).append(" / ")
+                .append(KioskStats.getVisualRecoveries(VisualHealthMonitor.REASON_FROZEN)).append("\n");
+        for (int i = 0; i < PageFrameStats.PAGES; i++) {
+            String page = PageFrameStats.getPage(i);
+            LatencyHistogram frames = PageFrameStats.getFrameTimes(i);
+            if (page == null || frames.getCount() == 0) {
+                continue;
+            }
+            LatencyHistogram touches = PageFrameStats.getInputLatency(i);
+            status.append("Frames ").append(page).append(": ").append(frames.getCount())
+                    .append(", janky ").append(PageFrameStats.getJankyFrames(i) * 100 / frames.getCount())
+                    .append("%, p90 ").append(formatBucket(frames, 90))
+                    .append(", touch p50/p90 ").append(formatBucket(touches, 50))
+                    .append(" / ").append(formatBucket(touches, 90)).append("\n");
+        }
+        ThermalGovernor thermal = ThermalGovernor.get(this);
+        long throttledMs = 0;
+        for (int i = 0; i < ThermalGovernor.STATUS_NAMES.length; i++) {
+            if (ThermalGovernor.stepFor(i) > 0) {
+                throttledMs += thermal.getTimeInStatusMs(i);
+            }
+        }
+        status.append("Thermal: ").append(ThermalGovernor.STATUS_NAMES[thermal.getStatus()])
+                .append(" (step ").append(thermal.getStep()).append("), throttled for ")
+                .append(formatDuration(throttledMs)).append("\n");
+        PowerAccounting.getHourlyEnergyMicrojoules(-1, powerHours);
+        long powerDay = 0;
+        for (long hour : powerHours) {
+            powerDay += hour;
+        }
+        status.append("Est. energy: ").append(powerHours[powerHours.length - 1] / 1000).append(" mJ this hour, ")
+                .append(powerDay / 1000).append(" mJ last 24h (watchdog ")
+                .append(PowerAccounting.getEnergyMicrojoules(PowerAccounting.SUBSYSTEM_WATCHDOG) / 1000)
+                .append(" mJ since start)\n");
+        status.append("Media cache: ").append(MediaCache.get(this).getSizeBytes() / (1024 * 1024))
+                .append(" MB, fetched ").append(KioskStats.getMediaBytesFetched() / (1024 * 1024))
+                .append(" MB, served ").append(KioskStats.getMediaBytesServed() / (1024 * 1024)).append(" MB\n");
+        status.append("Extra displays: ").append(KioskStats.getActivePresentations());
+        long presentationPss = KioskStats.getLastPresentationPssKb();
+        if (presentationPss >= 0) {
+            status.append(" (last added ~").append(presentationPss / 1024).append(" MB PSS)");
+        }
+        status.append("\n");
+        long refreshChecks = 0;
+        for (int i = 0; i < KioskStats.REFRESH_NAMES.length; i++) {
+            refreshChecks += KioskStats.getRefreshChecks(i);
+        }
+        status.append("Refresh checks: ").append(refreshChecks)
+                .append(" (changed ").append(KioskStats.getRefreshChecks(KioskStats.REFRESH_CHANGED))
+                .append(", failed ").append(KioskStats.getRefreshChecks(KioskStats.REFRESH_ERROR))
+                .append(", ~").append(refreshChecks > 0 ? KioskStats.getRefreshBytes() / refreshChecks : 0)
+                .append(" B each), reloads: ").append(KioskStats.getRefreshReloads()).append("\n");
+        String bundle = ContentBundleStore.get(this).getActiveVersion();
+        status.append("Bundle: ").append(bundle != null ? bundle : "none (network)")
+                .append(", delta updates: ").append(KioskStats.getBundleUpdates())
+                .append(" (").append(KioskStats.getBundleBytesFetched() / 1024).append(" of ")
+                .append(KioskStats.getBundleBytesFull() / 1024).append(" KB fetched)\n");
+        return status.toString();
+    }
+
+    private String getTimerReport() {
+        StringBuilder status = new StringBuilder();
+        status.append("\n--- TIMERS ---\n");
+        status.append("Inactivity resets/fires: ").append(KioskStats.getInactivityTimerResets())
+                .append(" / ").append(KioskStats.getInactivityTimerFires()).append("\n");
+        status.append("Watchdog arms/fires: ").append(KioskStats.getWatchdogTimerArms())
+                .append(" / ").append(KioskStats.getWatchdogTimerFires()).append("\n");
+        status.append("Foreground checks: ").append(KioskStats.getForegroundChecks()).append("\n");
+        status.append("Scoped tasks pending: ").append(TaskScope.getOutstandingTotal())
+                .append(" in ").append(TaskScope.getOpenScopes()).append(" scopes\n");
+        status.append("io pool active/queued: ").append(KioskExecutors.getIoActive())
+                .append(" / ").append(KioskExecutors.getIoQueued()).append("\n");
+        return status.toString();
+    }
+
+    private String getAvailabilityReport() {
+        AvailabilityLedger ledger = AvailabilityLedger.getIfOpen();
+        return "\n--- AVAILABILITY ---\n" +
+                (ledger != null ? ledger.getReport(AVAILABILITY_DAYS) : "Ledger not open in this process\n");
+    }
+
+    private static String formatPercentile(long valueMs) {
+        if (valueMs < 0) {
+            return "-";
+        }
+        return valueMs == Long.MAX_VALUE ? ">30s" : "≤" + valueMs + "ms";
+    }
+
+    /**
+     * Like formatPercentile, for histograms whose overflow bucket isn't above 30 s
+     */
+    private static String formatBucket(LatencyHistogram histogram, double p) {
+        long valueMs = histogram.percentile(p);
+        if (valueMs == Long.MAX_VALUE) {
+            long[] bounds = histogram.getBounds();
+            return ">" + bounds[bounds.length - 1] + "ms";
+        }
+        return formatPercentile(valueMs);
+    }
+
+    private static String formatDuration(long ms) {
+        long seconds = ms / 1000;
+        return String.format(Locale.US, "%dd %02d:%02d:%02d",
+                seconds / 86400, (seconds / 3600) % 24, (seconds / 60) % 60, seconds % 60);
+    }
+
+    private void checkBundleUpdate() {
+        String manifestUrl = KioskConfig.getBundleManifestUrl(this);
+        String message;
+        if (manifestUrl == null) {
+            message = "No bundle manifest URL configured";
+        } else {
+            try {
+                message = new BundleUpdater(ContentBundleStore.get(this), manifestUrl).update().toString();
+            } catch (IOException e) {
+                Log.e(TAG, "Bundle update failed", e);
+                message = "Bundle update failed: " + e.getMessage();
+            }
+        }
+        String toast = message;
+        scope.post(() -> Toast.makeText(this, toast, Toast.LENGTH_LONG).show());
+    }
+
     private void testOverlayLaunch() {
         Log.d(TAG, "Testing overlay launch...");
-        try {
-            OverlayLauncher.launchWithOverlay(this);
-            Toast.makeText(this, "Overlay launch triggered", Toast.LENGTH_SHORT).show();
-        } catch (Exception e) {
-            Log.e(TAG, "Overlay launch failed", e);
-            Toast.makeText(this, "Overlay launch failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
-        }
+        // Same path as every real trigger, so coalescing and the resumed check apply
+        boolean started = LaunchCoordinator.requestLaunch(this, KioskStats.Trigger.DEBUG);
+        Toast.makeText(this, started ? "Overlay launch triggered" : "Launch skipped or already under way",
+                Toast.LENGTH_SHORT).show();
     }
 
     private void testInactivityService() {
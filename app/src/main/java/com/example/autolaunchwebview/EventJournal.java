@@ -0,0 +1,220 @@
+package com.example.autolaunchwebview;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size binary event records in a memory-mapped ring file.
+ * Recording is allocation-free and the file outlives process death and reboots;
+ * records are only turned into text when someone asks for them.
+ */
+public class EventJournal {
+    private static final String TAG = "EventJournal";
+    private static final String FILE_NAME = "event_journal.bin";
+
+    private static final int MAGIC = 0x4B4A524E; // "KJRN"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 32;
+    private static final int CAPACITY = 4096;
+
+    // Record layout
+    private static final int OFF_SEQ = 0;
+    private static final int OFF_TIME = 8;
+    private static final int OFF_EVENT = 16;
+    private static final int OFF_ARG0 = 20;
+    private static final int OFF_ARG1 = 24;
+
+    public static final int PROCESS_START = 1;
+    public static final int ACTIVITY_CREATED = 2;
+    public static final int ACTIVITY_RESUMED = 3;
+    public static final int ACTIVITY_PAUSED = 4;
+    public static final int INACTIVITY_TIMEOUT = 5;
+    public static final int APP_FOREGROUND = 6;
+    public static final int APP_BACKGROUND = 7;
+    public static final int WATCHDOG_FIRED = 8;
+    public static final int FOREGROUND_CHECK = 9;
+    public static final int RELAUNCH_REQUESTED = 10;
+    public static final int LAUNCH_STRATEGY = 11;
+    public static final int PAGE_STARTED = 12;
+    public static final int PAGE_FINISHED = 13;
+    public static final int RENDERER_GONE = 14;
+    public static final int BOOT_RECEIVED = 15;
+    public static final int SERVICE_CREATED = 16;
+    public static final int SERVICE_DESTROYED = 17;
+    public static final int BUNDLE_UPDATED = 18;
+    public static final int SCHEDULE_TRANSITION = 19;
+    public static final int COMMAND_RECEIVED = 20;
+    public static final int COMMAND_CHANNEL = 21;
+    public static final int VISUAL_RECOVERY = 22;
+    public static final int THERMAL_STATUS = 23;
+
+    // Names and argument labels indexed by event id, used only when decoding
+    private static final String[][] EVENT_FORMATS = {
+            {"UNKNOWN", "arg0", "arg1"},
+            {"PROCESS_START", "pid", null},
+            {"ACTIVITY_CREATED", "restored", null},
+            {"ACTIVITY_RESUMED", null, null},
+            {"ACTIVITY_PAUSED", null, null},
+            {"INACTIVITY_TIMEOUT", null, null},
+            {"APP_FOREGROUND", null, null},
+            {"APP_BACKGROUND", null, null},
+            {"WATCHDOG_FIRED", null, null},
+            {"FOREGROUND_CHECK", "foreground", "importance"},
+            {"RELAUNCH_REQUESTED", "trigger", "outcome"},
+            {"LAUNCH_STRATEGY", "strategy", "success"},
+            {"PAGE_STARTED", null, null},
+            {"PAGE_FINISHED", null, "latencyMs"},
+            {"RENDERER_GONE", "crashed", null},
+            {"BOOT_RECEIVED", "delayMs", null},
+            {"SERVICE_CREATED", null, null},
+            {"SERVICE_DESTROYED", null, null},
+            {"BUNDLE_UPDATED", "filesFetched", "bytesFetched"},
+            {"SCHEDULE_TRANSITION", null, null},
+            {"COMMAND_RECEIVED", "command", null},
+            {"COMMAND_CHANNEL", "connected", null},
+            {"VISUAL_RECOVERY", "reason", "blankPercent"},
+            {"THERMAL_STATUS", "status", "step"},
+    };
+
+    private static volatile MappedByteBuffer buffer;
+    private static final AtomicLong nextSeq = new AtomicLong(1);
+    private static volatile long previousProcessLastSeen;
+
+    /**
+     * Map the journal file; safe to call from every entry point, only the first call opens it.
+     * Entry points run on the main thread, so the first call there maps the file in place:
+     * the journal has to be open before they record anything.
+     */
+    public static synchronized void open(Context context) {
+        if (buffer != null) {
+            return;
+        }
+        KioskExecutors.permitDiskOnMain(() -> map(context));
+    }
+
+    private static void map(Context context) {
+        File file = new File(context.getFilesDir(), FILE_NAME);
+        long size = HEADER_SIZE + (long) RECORD_SIZE * CAPACITY;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            boolean fresh = raf.length() != size;
+            if (fresh) {
+                raf.setLength(0);
+                raf.setLength(size);
+            }
+            MappedByteBuffer mapped = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (fresh || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+                for (int i = 0; i < size; i += 8) {
+                    mapped.putLong(i, 0);
+                }
+                mapped.putInt(0, MAGIC);
+                mapped.putInt(4, VERSION);
+                mapped.putInt(8, RECORD_SIZE);
+                mapped.putInt(12, CAPACITY);
+            }
+
+            // Resume the sequence after the newest record already in the ring
+            long maxSeq = 0;
+            for (int i = 0; i < CAPACITY; i++) {
+                int offset = HEADER_SIZE + i * RECORD_SIZE;
+                long seq = mapped.getLong(offset + OFF_SEQ);
+                if (seq > maxSeq) {
+                    maxSeq = seq;
+                    previousProcessLastSeen = mapped.getLong(offset + OFF_TIME);
+                }
+            }
+            nextSeq.set(maxSeq + 1);
+            buffer = mapped;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open event journal", e);
+            return;
+        }
+        record(PROCESS_START, Process.myPid(), 0);
+    }
+
+    public static void record(int event) {
+        record(event, 0, 0);
+    }
+
+    /**
+     * Append one record; no allocation, no locking
+     */
+    public static void record(int event, int arg0, long arg1) {
+        MappedByteBuffer buf = buffer;
+        if (buf == null) {
+            return;
+        }
+        long seq = nextSeq.getAndIncrement();
+        int offset = HEADER_SIZE + (int) (seq % CAPACITY) * RECORD_SIZE;
+        // Invalidate the slot first so a torn write is never decoded as a valid record
+        buf.putLong(offset + OFF_SEQ, 0);
+        buf.putLong(offset + OFF_TIME, System.currentTimeMillis());
+        buf.putInt(offset + OFF_EVENT, event);
+        buf.putInt(offset + OFF_ARG0, arg0);
+        buf.putLong(offset + OFF_ARG1, arg1);
+        buf.putLong(offset + OFF_SEQ, seq);
+    }
+
+    /**
+     * Push dirty pages to storage so records also survive a power cut, not just process death.
+     * The msync can block on storage, so it runs on KioskExecutors.serial(), never on the caller.
+     */
+    public static void flush() {
+        MappedByteBuffer buf = buffer;
+        if (buf != null) {
+            KioskExecutors.serial().execute(buf::force);
+        }
+    }
+
+    /**
+     * Wall time of the newest record written before this process opened the journal, or 0;
+     * a lower bound for when the previous process was last alive
+     */
+    public static long getPreviousProcessLastSeen() {
+        return previousProcessLastSeen;
+    }
+
+    /**
+     * Decode up to maxRecords of the newest records, oldest first, as text lines
+     */
+    public static String decode(int maxRecords) {
+        MappedByteBuffer buf = buffer;
+        if (buf == null) {
+            return "Event journal not open\n";
+        }
+        long newest = nextSeq.get() - 1;
+        long oldest = Math.max(1, newest - Math.min(maxRecords, CAPACITY) + 1);
+        SimpleDateFormat format = new SimpleDateFormat("MM-dd HH:mm:ss.SSS", Locale.US);
+        StringBuilder out = new StringBuilder();
+        for (long seq = oldest; seq <= newest; seq++) {
+            int offset = HEADER_SIZE + (int) (seq % CAPACITY) * RECORD_SIZE;
+            if (buf.getLong(offset + OFF_SEQ) != seq) {
+                continue; // overwritten or torn
+            }
+            int event = buf.getInt(offset + OFF_EVENT);
+            String[] fmt = event > 0 && event < EVENT_FORMATS.length ? EVENT_FORMATS[event] : EVENT_FORMATS[0];
+            out.append(format.format(new Date(buf.getLong(offset + OFF_TIME))))
+                    .append(" #").append(seq)
+                    .append(' ').append(fmt[0]);
+            if (fmt[1] != null) {
+                out.append(' ').append(fmt[1]).append('=').append(buf.getInt(offset + OFF_ARG0));
+            }
+            if (fmt[2] != null) {
+                out.append(' ').append(fmt[2]).append('=').append(buf.getLong(offset + OFF_ARG1));
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.autolaunchwebview;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
+import android.view.MotionEvent;
+import android.view.Window;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds PageFrameStats from a window: every rendered frame's duration via FrameMetrics
+ * (WebView content is drawn inside the window's frames, so slow page rendering shows up
+ * here), and for each touch the time until the end of the next frame. Frame metrics arrive
+ * on a background thread; nothing is allocated per frame.
+ */
+public class FrameMonitor {
+    // A frame that starts this long after a touch wasn't caused by it (the touch changed
+    // nothing on screen); drop the touch instead of recording a huge latency
+    private static final long MAX_INPUT_LATENCY_NS = 2_000_000_000L;
+
+    private final Window window;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Window.OnFrameMetricsAvailableListener metricsListener = this::onFrameMetrics;
+    // Before O, FrameMetrics has no vsync timestamp, so touches are measured to the start of
+    // the next frame on the main thread instead
+    private final Choreographer.FrameCallback touchFrameCallback = frameTimeNanos -> onTouchFrame();
+    // Event time of the first touch not yet followed by a frame, in uptime ns; 0 if none
+    private final AtomicLong pendingTouchNs = new AtomicLong();
+    private long frameIntervalNs;
+    private boolean running;
+
+    public FrameMonitor(Window window) {
+        this.window = window;
+        thread = new HandlerThread("FrameMonitor", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Begin collecting; call while the window is visible
+     */
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        float refreshRate = window.getWindowManager().getDefaultDisplay().getRefreshRate();
+        frameIntervalNs = (long) (1_000_000_000L / (refreshRate > 0 ? refreshRate : 60f));
+        window.addOnFrameMetricsAvailableListener(metricsListener, handler);
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            window.removeOnFrameMetricsAvailableListener(metricsListener);
+        } catch (IllegalArgumentException e) {
+            // Never registered: without hardware acceleration adding only logs a warning
+        }
+        pendingTouchNs.set(0);
+    }
+
+    public void release() {
+        stop();
+        thread.quitSafely();
+    }
+
+    /**
+     * Call from the view's touch listener
+     */
+    public void onTouch(MotionEvent event) {
+        if (!running || !pendingTouchNs.compareAndSet(0, event.getEventTime() * 1_000_000L)) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
+            Choreographer.getInstance().postFrameCallback(touchFrameCallback);
+        }
+    }
+
+    private void onFrameMetrics(Window window, FrameMetrics metrics, int dropCountSinceLastInvocation) {
+        long durationNs = metrics.getMetric(FrameMetrics.TOTAL_DURATION);
+        PageFrameStats.onFrame(durationNs, durationNs > frameIntervalNs);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            long touchNs = pendingTouchNs.get();
+            long vsyncNs = metrics.getMetric(FrameMetrics.INTENDED_VSYNC_TIMESTAMP);
+            if (touchNs != 0 && vsyncNs >= touchNs && pendingTouchNs.compareAndSet(touchNs, 0)) {
+                recordInputLatency(vsyncNs + durationNs - touchNs);
+            }
+        }
+    }
+
+    private void onTouchFrame() {
+        long touchNs = pendingTouchNs.getAndSet(0);
+        if (touchNs != 0) {
+            recordInputLatency(SystemClock.uptimeMillis() * 1_000_000L - touchNs);
+        }
+    }
+
+    private static void recordInputLatency(long latencyNs) {
+        if (latencyNs <= MAX_INPUT_LATENCY_NS) {
+            PageFrameStats.onInputLatency((latencyNs + 999_999) / 1_000_000);
+        }
+    }
+}
@@ -7,9 +7,7 @@ import android.content.ComponentName;
 import android.content.Intent;
 import android.content.pm.ServiceInfo;
 import android.os.Build;
-import android.os.Handler;
 import android.os.IBinder;
-import android.os.Looper;
 import androidx.core.app.NotificationCompat;
 import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.LifecycleObserver;
@@ -17,16 +15,32 @@ import androidx.lifecycle.OnLifecycleEvent;
 import androidx.lifecycle.ProcessLifecycleOwner;
 import android.util.Log;
 import androidx.annotation.Nullable;
+import com.example.autolaunchwebview.watchdog.ForegroundPolicy;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class InactivityMonitorService extends Service implements LifecycleObserver {
     private static final String TAG = "InactivityMonitor";
-    private final Handler handler = new Handler(Looper.getMainLooper());
+    // How long the app may stay in the background before the watchdog relaunches it
+    static final long WATCHDOG_DELAY_MS = 30_000;
+    private static final long BUNDLE_CHECK_DELAY_MIN = 1;
+    private static final long BUNDLE_CHECK_INTERVAL_MIN = 60;
+    private final TaskScope scope = new TaskScope("InactivityMonitorService");
     private final Runnable relaunchRunnable = this::triggerRelaunch;
+    private final MetricsServer metricsServer = new MetricsServer(MetricsServer.DEFAULT_PORT);
+    private ScheduledFuture<?> bundleChecker;
+    // Ticks of bundleChecker; while hot only every ThermalGovernor stretch factor-th one checks
+    private int bundleCheckTicks;
+    private CommandChannel commandChannel;
+    private String commandChannelConfig;
     @Override
     public void onCreate() {
         super.onCreate();
+        EventJournal.open(this);
+        EventJournal.record(EventJournal.SERVICE_CREATED);
         Log.d(TAG, "Service created");
 
         Notification notification = new NotificationCompat.Builder(this, "kiosk_watchdog")
@@ -46,80 +60,62 @@ public class InactivityMonitorService extends Service implements LifecycleObserv
         }
 
         ProcessLifecycleOwner.get().getLifecycle().addObserver(this);
+        metricsServer.start();
+        bundleChecker = KioskExecutors.scheduleIo(this::checkBundleUpdate,
+                TimeUnit.MINUTES.toMillis(BUNDLE_CHECK_DELAY_MIN), TimeUnit.MINUTES.toMillis(BUNDLE_CHECK_INTERVAL_MIN));
+        updateCommandChannel();
         Log.d(TAG, "Service started and observing app lifecycle");
     }
 
     @OnLifecycleEvent(Lifecycle.Event.ON_STOP)
     public void onAppBackgrounded() {
-        Log.d(TAG, "App went to background. Starting 30s timer...");
-        handler.removeCallbacks(relaunchRunnable);
-        handler.postDelayed(relaunchRunnable, 30_000);
+        KioskStats.onAppBackground();
+        scope.postDelayed(relaunchRunnable, WATCHDOG_DELAY_MS);
+        KioskStats.onWatchdogTimerArmed();
+        EventJournal.flush();
     }
 
     @OnLifecycleEvent(Lifecycle.Event.ON_START)
     public void onAppForegrounded() {
-        Log.d(TAG, "App came to foreground. Cancelling timer.");
-        handler.removeCallbacks(relaunchRunnable);
+        KioskStats.onAppForeground();
+        scope.remove(relaunchRunnable);
     }
 
     private void triggerRelaunch() {
-        Log.d(TAG, "30s timer expired. Checking if app needs to be relaunched...");
+        EventJournal.record(EventJournal.WATCHDOG_FIRED);
+        KioskStats.onWatchdogTimerFired();
+        PowerAccounting.onDispatch(PowerAccounting.SUBSYSTEM_WATCHDOG);
+
+        // Check if MainActivity is already in foreground; the process list is a binder call
+        scope.submit(KioskExecutors.io(), () -> {
+            if (!isAppInForeground()) {
+                scope.post(() -> LaunchCoordinator.requestLaunch(this, KioskStats.Trigger.SERVICE_WATCHDOG));
+            }
+        });
+    }
 
-        // Check if MainActivity is already in foreground
-        if (isAppInForeground()) {
-            Log.d(TAG, "App is already in foreground, no relaunch needed");
+    /**
+     * Pull the latest content bundle if an update manifest is configured
+     */
+    private void checkBundleUpdate() {
+        PowerAccounting.onDispatch(PowerAccounting.SUBSYSTEM_CONTENT);
+        ContentBundleStore.get(this).importDropped();
+        if (++bundleCheckTicks % ThermalGovernor.get(this).getStretchFactor() != 0) {
             return;
         }
-
-        Log.d(TAG, "App is in background, triggering relaunch...");
-
-        // Try multiple relaunch strategies
-        boolean success = false;
-
-        // Strategy 1: Use overlay launcher
-        try {
-            OverlayLauncher.launchWithOverlay(this);
-            success = true;
-        } catch (Exception e) {
-            Log.e(TAG, "Overlay launcher failed", e);
-        }
-
-        // Strategy 2: Direct intent launch
-        if (!success) {
-            try {
-                Intent intent = new Intent(this, MainActivity.class);
-                intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK |
-                        Intent.FLAG_ACTIVITY_CLEAR_TOP |
-                        Intent.FLAG_ACTIVITY_SINGLE_TOP);
-                startActivity(intent);
-                success = true;
-                Log.d(TAG, "Direct intent launch successful");
-            } catch (Exception e) {
-                Log.e(TAG, "Direct intent launch failed", e);
-            }
-        }
-
-        // Strategy 3: Launch via LaunchActivity
-        if (!success) {
-            try {
-                Intent intent = new Intent(this, LaunchActivity.class);
-                intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
-                startActivity(intent);
-                success = true;
-                Log.d(TAG, "LaunchActivity launch successful");
-            } catch (Exception e) {
-                Log.e(TAG, "LaunchActivity launch failed", e);
-            }
+        String manifestUrl = KioskConfig.getBundleManifestUrl(this);
+        if (manifestUrl == null) {
+            return;
         }
-
-        if (success) {
-            Log.d(TAG, "Relaunch triggered successfully");
-        } else {
-            Log.e(TAG, "All relaunch strategies failed");
+        try {
+            new BundleUpdater(ContentBundleStore.get(this), manifestUrl).update();
+        } catch (IOException e) {
+            Log.w(TAG, "Bundle update failed", e);
         }
     }
 
     private boolean isAppInForeground() {
+        KioskStats.onForegroundCheck();
         try {
             ActivityManager activityManager = (ActivityManager) getSystemService(ACTIVITY_SERVICE);
             if (activityManager == null) return false;
@@ -131,22 +127,21 @@ public class InactivityMonitorService extends Service implements LifecycleObserv
                     ComponentName topActivity = tasks.get(0).topActivity;
                     if (topActivity != null) {
                         boolean isForeground = getPackageName().equals(topActivity.getPackageName());
-                        Log.d(TAG, "Foreground check (RunningTasks): " + isForeground);
+                        EventJournal.record(EventJournal.FOREGROUND_CHECK, isForeground ? 1 : 0, -1);
                         return isForeground;
                     }
                 }
             }
 
             // Method 2: Check app processes
+            PowerAccounting.onBinder(PowerAccounting.SUBSYSTEM_WATCHDOG);
             List<ActivityManager.RunningAppProcessInfo> processes = activityManager.getRunningAppProcesses();
-            if (processes != null) {
-                for (ActivityManager.RunningAppProcessInfo process : processes) {
-                    if (getPackageName().equals(process.processName)) {
-                        boolean isForeground = process.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
-                        Log.d(TAG, "Foreground check (Process importance): " + isForeground + " (importance: " + process.importance + ")");
-                        return isForeground;
-                    }
-                }
+            int importance = ForegroundPolicy.importanceOf(getPackageName(), processes,
+                    process -> process.processName, process -> process.importance);
+            if (importance != ForegroundPolicy.IMPORTANCE_NOT_RUNNING) {
+                boolean isForeground = ForegroundPolicy.isForeground(importance);
+                EventJournal.record(EventJournal.FOREGROUND_CHECK, isForeground ? 1 : 0, importance);
+                return isForeground;
             }
 
             return false;
@@ -159,6 +154,7 @@ public class InactivityMonitorService extends Service implements LifecycleObserv
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
         Log.d(TAG, "onStartCommand called");
+        updateCommandChannel();
         return START_STICKY; // Restart service if killed
     }
 
@@ -166,7 +162,14 @@ public class InactivityMonitorService extends Service implements LifecycleObserv
     public void onDestroy() {
         super.onDestroy();
         Log.d(TAG, "Service destroyed");
-        handler.removeCallbacks(relaunchRunnable);
+        EventJournal.record(EventJournal.SERVICE_DESTROYED);
+        EventJournal.flush();
+        scope.close();
+        metricsServer.stop();
+        bundleChecker.cancel(true);
+        if (commandChannel != null) {
+            commandChannel.stop();
+        }
 
         // Try to restart the service
         Intent restartIntent = new Intent(this, InactivityMonitorService.class);
@@ -177,6 +180,31 @@ public class InactivityMonitorService extends Service implements LifecycleObserv
         }
     }
 
+    /**
+     * (Re)connect the command channel if its configured endpoint changed since the last call
+     */
+    private void updateCommandChannel() {
+        String url = KioskConfig.getCommandUrl(this);
+        String token = KioskConfig.getCommandToken(this);
+        String config = url + "\n" + token;
+        if (config.equals(commandChannelConfig)) {
+            return;
+        }
+        commandChannelConfig = config;
+        if (commandChannel != null) {
+            commandChannel.stop();
+            commandChannel = null;
+        }
+        if (url != null && !CommandChannel.isAllowedEndpoint(url)) {
+            // The token would go out in the clear
+            Log.e(TAG, "Command channel needs a wss:// URL (ws:// only to 127.0.0.1), not " + url);
+        } else if (url != null) {
+            commandChannel = new CommandChannel(this, url, token);
+            commandChannel.start();
+            Log.d(TAG, "Command channel started for " + url);
+        }
+    }
+
     @Nullable
     @Override
     public IBinder onBind(Intent intent) {
@@ -0,0 +1,41 @@
+package com.example.autolaunchwebview;
+
+import android.app.Application;
+import android.os.UserManager;
+
+/**
+ * Process-wide setup that has to happen before any activity, service or receiver runs
+ */
+public class KioskApplication extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if (BuildConfig.DEBUG) {
+            KioskExecutors.enableStrictMode();
+        }
+        TaskScope.install(this);
+        ThermalGovernor.get(this);
+        KioskExecutors.io().execute(MiuiAutoPermissionManager::isMiui);
+        if (!isUserUnlocked()) {
+            // Started for LOCKED_BOOT_COMPLETED: credential-encrypted storage (preferences,
+            // files) can't be touched until the user unlocks, and SharedPreferences throws
+            return;
+        }
+        // Mapped right away so PROCESS_START is the first record of this process
+        EventJournal.open(this);
+        // Warm what the first activity needs; anything not loaded by then loads on first use
+        KioskExecutors.io().execute(() -> {
+            KioskConfig.getHomeUrl(this);
+            AvailabilityLedger.get(this);
+            ContentBundleStore.get(this);
+            MediaCache.get(this);
+            ResumeSnapshot.get(this);
+        });
+        SettingsIntentResolver.warmUp(this);
+    }
+
+    private boolean isUserUnlocked() {
+        UserManager userManager = getSystemService(UserManager.class);
+        return userManager == null || userManager.isUserUnlocked();
+    }
+}
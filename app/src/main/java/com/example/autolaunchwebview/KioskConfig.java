@@ -0,0 +1,144 @@
+package com.example.autolaunchwebview;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.view.Display;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Device-level kiosk settings kept in SharedPreferences. Technicians set them through
+ * ConfigReceiver broadcast extras, e.g.
+ * adb shell am broadcast -n <package>/.ConfigReceiver --es home_url https://example.com --ez multi_display true
+ */
+public class KioskConfig {
+    private static final String PREFS_NAME = "kiosk_config";
+    public static final String DEFAULT_HOME_URL = "https://techstern.com";
+
+    public static final String KEY_HOME_URL = "home_url";
+    public static final String KEY_MULTI_DISPLAY = "multi_display";
+    // URL for every extra display, unless one is set for that display by name
+    public static final String KEY_SECONDARY_URL = "secondary_url";
+    // Prefix for per-display URLs, keyed by Display.getName(), e.g. "display_url.HDMI Screen"
+    public static final String KEY_DISPLAY_URL_PREFIX = "display_url.";
+    public static final String KEY_BUNDLE_MANIFEST_URL = "bundle_manifest_url";
+    // Dayparting rules as JSON, see ContentSchedule
+    public static final String KEY_SCHEDULE = "schedule";
+    // WebSocket endpoint for remote commands, see CommandChannel
+    public static final String KEY_COMMAND_URL = "command_url";
+    public static final String KEY_COMMAND_TOKEN = "command_token";
+    // Reload when the screen hasn't changed for this many minutes; 0 (default) disables it
+    public static final String KEY_FROZEN_AFTER_MIN = "frozen_after_min";
+    // Reload after this many blank screen checks in a row; 0 disables it (e.g. dark slides)
+    public static final String KEY_BLANK_CHECKS = "blank_checks";
+    private static final int DEFAULT_BLANK_CHECKS = 3;
+    // Give every visitor session its own WebView storage, see SessionIsolation
+    public static final String KEY_SESSION_ISOLATION = "session_isolation";
+    // Check the shown page for server-side changes this often, see RefreshScheduler; 0 = off
+    public static final String KEY_REFRESH_INTERVAL_MIN = "refresh_interval_min";
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Configured home URL, or null to use the installed bundle or the built-in default
+     */
+    @Nullable
+    public static String getHomeUrl(Context context) {
+        return prefs(context).getString(KEY_HOME_URL, null);
+    }
+
+    public static void setHomeUrl(Context context, String url) {
+        prefs(context).edit().putString(KEY_HOME_URL, url).apply();
+    }
+
+    public static boolean isMultiDisplayEnabled(Context context) {
+        return prefs(context).getBoolean(KEY_MULTI_DISPLAY, false);
+    }
+
+    /**
+     * URL for an extra display: its own if configured, else the shared secondary URL, else null
+     */
+    @Nullable
+    public static String getDisplayUrl(Context context, Display display) {
+        SharedPreferences prefs = prefs(context);
+        String url = prefs.getString(KEY_DISPLAY_URL_PREFIX + display.getName(), null);
+        return url != null ? url : prefs.getString(KEY_SECONDARY_URL, null);
+    }
+
+    @Nullable
+    public static String getBundleManifestUrl(Context context) {
+        return prefs(context).getString(KEY_BUNDLE_MANIFEST_URL, null);
+    }
+
+    @Nullable
+    public static String getSchedule(Context context) {
+        return prefs(context).getString(KEY_SCHEDULE, null);
+    }
+
+    @Nullable
+    public static String getCommandUrl(Context context) {
+        return prefs(context).getString(KEY_COMMAND_URL, null);
+    }
+
+    @Nullable
+    public static String getCommandToken(Context context) {
+        return prefs(context).getString(KEY_COMMAND_TOKEN, null);
+    }
+
+    public static boolean isSessionIsolationEnabled(Context context) {
+        return prefs(context).getBoolean(KEY_SESSION_ISOLATION, false);
+    }
+
+    public static int getFrozenAfterMinutes(Context context) {
+        return prefs(context).getInt(KEY_FROZEN_AFTER_MIN, 0);
+    }
+
+    public static int getBlankChecks(Context context) {
+        return prefs(context).getInt(KEY_BLANK_CHECKS, DEFAULT_BLANK_CHECKS);
+    }
+
+    public static int getRefreshIntervalMinutes(Context context) {
+        return prefs(context).getInt(KEY_REFRESH_INTERVAL_MIN, 0);
+    }
+
+    /**
+     * Store any recognised settings passed as intent extras; an empty string clears a setting.
+     * Returns true if anything changed.
+     */
+    public static boolean applyExtras(Context context, Intent intent) {
+        Bundle extras = intent.getExtras();
+        if (extras == null) {
+            return false;
+        }
+        SharedPreferences.Editor editor = prefs(context).edit();
+        boolean changed = false;
+        for (String key : extras.keySet()) {
+            if (KEY_MULTI_DISPLAY.equals(key) || KEY_SESSION_ISOLATION.equals(key)) {
+                editor.putBoolean(key, extras.getBoolean(key));
+                changed = true;
+            } else if (KEY_FROZEN_AFTER_MIN.equals(key) || KEY_BLANK_CHECKS.equals(key)
+                    || KEY_REFRESH_INTERVAL_MIN.equals(key)) {
+                editor.putInt(key, extras.getInt(key));
+                changed = true;
+            } else if (KEY_HOME_URL.equals(key) || KEY_SECONDARY_URL.equals(key)
+                    || KEY_BUNDLE_MANIFEST_URL.equals(key) || KEY_SCHEDULE.equals(key)
+                    || KEY_COMMAND_URL.equals(key) || KEY_COMMAND_TOKEN.equals(key) || key.startsWith(KEY_DISPLAY_URL_PREFIX)) {
+                String value = extras.getString(key);
+                if (value == null || value.isEmpty()) {
+                    editor.remove(key);
+                } else {
+                    editor.putString(key, value);
+                }
+                changed = true;
+            }
+        }
+        if (changed) {
+            editor.apply();
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.autolaunchwebview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.StrictMode;
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The app's shared threads. Blocking work (binder calls, reflection, disk, network) goes to
+ * io(); changes that must happen one at a time and in order go to serial(); results come back
+ * through main() or a TaskScope. Long-lived loops with their own lifetime (MetricsServer's
+ * accept loop, media fills, BundleUpdater's hashing pool) keep dedicated threads.
+ */
+public final class KioskExecutors {
+    private static final String TAG = "KioskExecutors";
+    private static final int IO_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final int IO_QUEUE = 256;
+
+    private static final ThreadPoolExecutor io = new ThreadPoolExecutor(IO_THREADS, IO_THREADS,
+            30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(IO_QUEUE), factory("KioskIo"));
+    private static final ExecutorService serial = Executors.newSingleThreadExecutor(factory("KioskSerial"));
+    // Only measures time; scheduled work is handed to io() so it never blocks the next tick
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, factory("KioskTimer"));
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static final Executor main = mainHandler::post;
+
+    static {
+        io.allowCoreThreadTimeOut(true);
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private KioskExecutors() {
+    }
+
+    private static ThreadFactory factory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, name + "-" + count.incrementAndGet());
+    }
+
+    /**
+     * Bounded pool for blocking calls; rejects (RejectedExecutionException) when badly backed up
+     */
+    public static ExecutorService io() {
+        return io;
+    }
+
+    /**
+     * One thread, tasks run in submission order
+     */
+    public static ExecutorService serial() {
+        return serial;
+    }
+
+    public static Executor main() {
+        return main;
+    }
+
+    /**
+     * For platform callbacks that must be given a Handler (PixelCopy). The callback should
+     * only hand work on; anything that touches an activity goes through its TaskScope.
+     */
+    public static Handler mainHandler() {
+        return mainHandler;
+    }
+
+    /**
+     * Run task on io() every periodMs after initialDelayMs. A tick is skipped while the
+     * previous run is still going, so slow runs never pile up. Cancel the returned future to stop.
+     */
+    public static ScheduledFuture<?> scheduleIo(Runnable task, long initialDelayMs, long periodMs) {
+        AtomicBoolean running = new AtomicBoolean(false);
+        Runnable guarded = () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Scheduled task failed", e);
+            } finally {
+                running.set(false);
+            }
+        };
+        return timer.scheduleWithFixedDelay(() -> {
+            if (running.compareAndSet(false, true)) {
+                try {
+                    io.execute(guarded);
+                } catch (RuntimeException e) {
+                    running.set(false);
+                    Log.w(TAG, "io() saturated, skipping scheduled run", e);
+                }
+            }
+        }, initialDelayMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static int getIoActive() {
+        return io.getActiveCount();
+    }
+
+    public static int getIoQueued() {
+        return io.getQueue().size();
+    }
+
+    /**
+     * Debug builds: any disk or network access on the main thread crashes the app, so new
+     * blocking calls there are caught the first time they run. Process-lifetime leaks of
+     * activities and closeables are logged.
+     */
+    public static void enableStrictMode() {
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .detectNetwork()
+                .penaltyLog()
+                .penaltyDeath()
+                .build());
+        StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                .detectActivityLeaks()
+                .detectLeakedClosableObjects()
+                .detectLeakedRegistrationObjects()
+                .penaltyLog()
+                .build());
+    }
+
+    /**
+     * Run a main-thread step whose disk access can't be moved, such as creating a WebView
+     * (the provider loads its own files), without tripping the StrictMode policy
+     */
+    public static void permitDiskOnMain(Runnable step) {
+        StrictMode.ThreadPolicy policy = StrictMode.allowThreadDiskWrites();
+        try {
+            step.run();
+        } finally {
+            StrictMode.setThreadPolicy(policy);
+        }
+    }
+}
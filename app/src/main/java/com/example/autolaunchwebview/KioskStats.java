@@ -0,0 +1,496 @@
+package com.example.autolaunchwebview;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide counters for the watchdog, readable from any thread.
+ * Everything here is lock-free so recording never blocks a caller.
+ */
+public class KioskStats {
+
+    public enum Trigger {
+        INACTIVITY,
+        SERVICE_WATCHDOG,
+        BOOT,
+        INCOMING_CALL,
+        SECRET_CODE,
+        DEBUG
+    }
+
+    // What LaunchCoordinator did with a launch request
+    public static final int OUTCOME_LAUNCHED = 0;
+    public static final int OUTCOME_SKIPPED_RESUMED = 1;
+    public static final int OUTCOME_COALESCED = 2;
+    public static final String[] OUTCOME_NAMES = {"launched", "skipped_resumed", "coalesced"};
+
+    // How MainActivity got back to its home page on an inactivity soft reset
+    public static final int SOFT_RESET_IN_PLACE = 0;
+    public static final int SOFT_RESET_HISTORY = 1;
+    public static final int SOFT_RESET_LOAD = 2;
+    // The visitor's session was discarded and the page loaded in a fresh one, see SessionIsolation
+    public static final int SOFT_RESET_NEW_SESSION = 3;
+    public static final String[] SOFT_RESET_NAMES = {"in_place", "history", "load", "new_session"};
+
+    private static final int MEMORY_SAMPLES = 60;
+
+    private static final AtomicLongArray relaunchRequests = new AtomicLongArray(Trigger.values().length);
+    private static final AtomicLongArray launchOutcomes = new AtomicLongArray(OUTCOME_NAMES.length);
+    private static final AtomicLong pendingRelaunchAt = new AtomicLong();
+    private static final AtomicLong lastRelaunchLatencyMs = new AtomicLong(-1);
+    private static final LatencyHistogram relaunchLatency = new LatencyHistogram();
+
+    // Indexed by OverlayLauncher.STRATEGY_* id
+    private static final AtomicLongArray strategySuccesses = new AtomicLongArray(OverlayLauncher.STRATEGY_NAMES.length);
+    private static final AtomicLongArray strategyFailures = new AtomicLongArray(OverlayLauncher.STRATEGY_NAMES.length);
+    private static final AtomicLong foregroundTransitions = new AtomicLong();
+    private static final AtomicLong backgroundTransitions = new AtomicLong();
+
+    private static final AtomicLong pageStartedAt = new AtomicLong();
+    private static final LatencyHistogram pageLoadLatency = new LatencyHistogram();
+    private static final AtomicLong pageLoads = new AtomicLong();
+    private static final AtomicLong rendererCrashes = new AtomicLong();
+    private static final AtomicLong bridgeBatches = new AtomicLong();
+    private static final AtomicLong pageActivityEvents = new AtomicLong();
+    private static final AtomicLong pageEvents = new AtomicLong();
+
+    private static final AtomicLong inactivityTimerResets = new AtomicLong();
+    private static final AtomicLong inactivityTimerFires = new AtomicLong();
+    private static final AtomicLong watchdogTimerArms = new AtomicLong();
+    private static final AtomicLong watchdogTimerFires = new AtomicLong();
+    private static final AtomicLong foregroundChecks = new AtomicLong();
+    private static final AtomicLongArray softResets = new AtomicLongArray(SOFT_RESET_NAMES.length);
+    private static final LatencyHistogram softResetLatency = new LatencyHistogram();
+    // NEW_SESSION resets alone: with profiles they load into a cold HTTP cache
+    private static final LatencyHistogram sessionStartLatency = new LatencyHistogram();
+
+    public static final int REFRESH_UNCHANGED = 0;
+    public static final int REFRESH_CHANGED = 1;
+    public static final int REFRESH_ERROR = 2;
+    public static final String[] REFRESH_NAMES = {"unchanged", "changed", "error"};
+    private static final AtomicLongArray refreshChecks = new AtomicLongArray(REFRESH_NAMES.length);
+    private static final AtomicLong refreshBytes = new AtomicLong();
+    private static final AtomicLong refreshReloads = new AtomicLong();
+
+    private static final AtomicLong bundleUpdates = new AtomicLong();
+    private static final AtomicLong bundleBytesFetched = new AtomicLong();
+    private static final AtomicLong bundleBytesFull = new AtomicLong();
+
+    private static final AtomicLong mediaBytesFetched = new AtomicLong();
+    private static final AtomicLong mediaBytesServed = new AtomicLong();
+
+    private static final AtomicLong activePresentations = new AtomicLong();
+    private static final AtomicLong lastPresentationPssKb = new AtomicLong(-1);
+
+    private static final AtomicLongArray commands = new AtomicLongArray(CommandChannel.COMMANDS.length);
+    private static final AtomicLong commandChannelConnects = new AtomicLong();
+    private static volatile boolean commandChannelConnected;
+
+    private static final AtomicLong visualChecks = new AtomicLong();
+    private static final AtomicLong visualBlankChecks = new AtomicLong();
+    private static final AtomicLong visualCaptureCpuNs = new AtomicLong();
+    private static final AtomicLong visualAnalyzeCpuNs = new AtomicLong();
+    private static final AtomicLongArray visualRecoveries = new AtomicLongArray(VisualHealthMonitor.REASON_NAMES.length);
+
+    private static final AtomicLongArray memorySamplesKb = new AtomicLongArray(MEMORY_SAMPLES);
+    private static final AtomicLong memorySampleCount = new AtomicLong();
+
+    /**
+     * Milliseconds since this process was started
+     */
+    public static long getUptimeMs() {
+        return SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+    }
+
+    // --- Relaunches ---
+
+    public static void onLaunchRequest(Trigger trigger, int outcome) {
+        relaunchRequests.incrementAndGet(trigger.ordinal());
+        launchOutcomes.incrementAndGet(outcome);
+        EventJournal.record(EventJournal.RELAUNCH_REQUESTED, trigger.ordinal(), outcome);
+        if (outcome == OUTCOME_LAUNCHED) {
+            pendingRelaunchAt.set(SystemClock.elapsedRealtime());
+        }
+    }
+
+    /**
+     * Called when MainActivity resumes; closes out any pending relaunch latency
+     */
+    public static void onMainActivityResumed() {
+        long requestedAt = pendingRelaunchAt.getAndSet(0);
+        if (requestedAt != 0) {
+            long latency = SystemClock.elapsedRealtime() - requestedAt;
+            lastRelaunchLatencyMs.set(latency);
+            relaunchLatency.record(latency);
+        }
+    }
+
+    public static long getRelaunchCount(Trigger trigger) {
+        return relaunchRequests.get(trigger.ordinal());
+    }
+
+    public static long getLaunchOutcomeCount(int outcome) {
+        return launchOutcomes.get(outcome);
+    }
+
+    public static long getLastRelaunchLatencyMs() {
+        return lastRelaunchLatencyMs.get();
+    }
+
+    public static LatencyHistogram getRelaunchLatency() {
+        return relaunchLatency;
+    }
+
+    public static void onLaunchStrategy(int strategy, boolean success) {
+        (success ? strategySuccesses : strategyFailures).incrementAndGet(strategy);
+        EventJournal.record(EventJournal.LAUNCH_STRATEGY, strategy, success ? 1 : 0);
+    }
+
+    public static long getStrategyCount(int strategy, boolean success) {
+        return (success ? strategySuccesses : strategyFailures).get(strategy);
+    }
+
+    public static void onAppForeground() {
+        foregroundTransitions.incrementAndGet();
+        EventJournal.record(EventJournal.APP_FOREGROUND);
+    }
+
+    public static void onAppBackground() {
+        backgroundTransitions.incrementAndGet();
+        EventJournal.record(EventJournal.APP_BACKGROUND);
+    }
+
+    public static long getForegroundTransitions() {
+        return foregroundTransitions.get();
+    }
+
+    public static long getBackgroundTransitions() {
+        return backgroundTransitions.get();
+    }
+
+    // --- WebView ---
+
+    public static void onPageStarted() {
+        pageStartedAt.set(SystemClock.elapsedRealtime());
+        EventJournal.record(EventJournal.PAGE_STARTED);
+    }
+
+    public static void onPageFinished() {
+        // onPageFinished can fire more than once per load; only the first one counts
+        long startedAt = pageStartedAt.getAndSet(0);
+        if (startedAt != 0) {
+            long latency = SystemClock.elapsedRealtime() - startedAt;
+            pageLoadLatency.record(latency);
+            pageLoads.incrementAndGet();
+            EventJournal.record(EventJournal.PAGE_FINISHED, 0, latency);
+        }
+    }
+
+    public static void onRendererCrash(boolean crashed) {
+        rendererCrashes.incrementAndGet();
+        EventJournal.record(EventJournal.RENDERER_GONE, crashed ? 1 : 0, 0);
+    }
+
+    public static void onBridgeBatch() {
+        bridgeBatches.incrementAndGet();
+    }
+
+    public static void onPageActivity(int count) {
+        pageActivityEvents.addAndGet(count);
+    }
+
+    public static void onPageEvent() {
+        pageEvents.incrementAndGet();
+    }
+
+    public static long getBridgeBatches() {
+        return bridgeBatches.get();
+    }
+
+    public static long getPageActivityEvents() {
+        return pageActivityEvents.get();
+    }
+
+    public static long getPageEvents() {
+        return pageEvents.get();
+    }
+
+    public static LatencyHistogram getPageLoadLatency() {
+        return pageLoadLatency;
+    }
+
+    public static long getPageLoads() {
+        return pageLoads.get();
+    }
+
+    public static long getRendererCrashes() {
+        return rendererCrashes.get();
+    }
+
+    // --- Timers ---
+
+    public static void onInactivityTimerReset() {
+        inactivityTimerResets.incrementAndGet();
+    }
+
+    public static void onInactivityTimerFired() {
+        inactivityTimerFires.incrementAndGet();
+    }
+
+    public static void onWatchdogTimerArmed() {
+        watchdogTimerArms.incrementAndGet();
+    }
+
+    public static void onWatchdogTimerFired() {
+        watchdogTimerFires.incrementAndGet();
+    }
+
+    public static void onForegroundCheck() {
+        foregroundChecks.incrementAndGet();
+    }
+
+    public static long getInactivityTimerResets() {
+        return inactivityTimerResets.get();
+    }
+
+    public static long getInactivityTimerFires() {
+        return inactivityTimerFires.get();
+    }
+
+    public static long getWatchdogTimerArms() {
+        return watchdogTimerArms.get();
+    }
+
+    public static long getWatchdogTimerFires() {
+        return watchdogTimerFires.get();
+    }
+
+    public static long getForegroundChecks() {
+        return foregroundChecks.get();
+    }
+
+    /**
+     * A soft reset finished, latencyMs after the inactivity timer fired
+     */
+    public static void onSoftReset(int path, long latencyMs) {
+        softResets.incrementAndGet(path);
+        softResetLatency.record(latencyMs);
+        if (path == SOFT_RESET_NEW_SESSION) {
+            sessionStartLatency.record(latencyMs);
+        }
+    }
+
+    public static long getSoftResets(int path) {
+        return softResets.get(path);
+    }
+
+    public static LatencyHistogram getSoftResetLatency() {
+        return softResetLatency;
+    }
+
+    public static LatencyHistogram getSessionStartLatency() {
+        return sessionStartLatency;
+    }
+
+    // --- Content bundles ---
+
+    /**
+     * A delta update installed a new bundle, fetching bytesFetched of the bytesFull a full download needs
+     */
+    public static void onBundleUpdate(int filesFetched, long bytesFetched, long bytesFull) {
+        bundleUpdates.incrementAndGet();
+        bundleBytesFetched.addAndGet(bytesFetched);
+        bundleBytesFull.addAndGet(bytesFull);
+        EventJournal.record(EventJournal.BUNDLE_UPDATED, filesFetched, bytesFetched);
+    }
+
+    public static long getBundleUpdates() {
+        return bundleUpdates.get();
+    }
+
+    public static long getBundleBytesFetched() {
+        return bundleBytesFetched.get();
+    }
+
+    public static long getBundleBytesFull() {
+        return bundleBytesFull.get();
+    }
+
+    // --- Background refresh ---
+
+    /**
+     * RefreshScheduler checked one URL, exchanging about bytes of HTTP headers
+     */
+    public static void onRefreshCheck(int result, long bytes) {
+        refreshChecks.incrementAndGet(result);
+        refreshBytes.addAndGet(bytes);
+    }
+
+    public static long getRefreshChecks(int result) {
+        return refreshChecks.get(result);
+    }
+
+    public static long getRefreshBytes() {
+        return refreshBytes.get();
+    }
+
+    /**
+     * The page was reloaded because RefreshScheduler found a change
+     */
+    public static void onRefreshReload() {
+        refreshReloads.incrementAndGet();
+    }
+
+    public static long getRefreshReloads() {
+        return refreshReloads.get();
+    }
+
+    // --- Media cache ---
+
+    /**
+     * Bytes MediaCache downloaded into the cache
+     */
+    public static void onMediaFetched(long bytes) {
+        mediaBytesFetched.addAndGet(bytes);
+    }
+
+    /**
+     * Bytes MediaCache served to the WebView from disk
+     */
+    public static void onMediaServed(long bytes) {
+        mediaBytesServed.addAndGet(bytes);
+    }
+
+    public static long getMediaBytesFetched() {
+        return mediaBytesFetched.get();
+    }
+
+    public static long getMediaBytesServed() {
+        return mediaBytesServed.get();
+    }
+
+    // --- Extra displays ---
+
+    public static void onPresentationCount(int count) {
+        activePresentations.set(count);
+    }
+
+    /**
+     * App-process PSS added by the most recently attached extra display
+     */
+    public static void onPresentationMemory(long pssDeltaKb) {
+        lastPresentationPssKb.set(pssDeltaKb);
+    }
+
+    public static long getActivePresentations() {
+        return activePresentations.get();
+    }
+
+    public static long getLastPresentationPssKb() {
+        return lastPresentationPssKb.get();
+    }
+
+    // --- Command channel ---
+
+    /**
+     * A command was accepted; index into CommandChannel.COMMANDS
+     */
+    public static void onCommand(int command) {
+        commands.incrementAndGet(command);
+    }
+
+    public static void onCommandChannelState(boolean connected) {
+        if (connected) {
+            commandChannelConnects.incrementAndGet();
+        }
+        commandChannelConnected = connected;
+    }
+
+    public static long getCommandCount(int command) {
+        return commands.get(command);
+    }
+
+    public static long getCommandChannelConnects() {
+        return commandChannelConnects.get();
+    }
+
+    public static boolean isCommandChannelConnected() {
+        return commandChannelConnected;
+    }
+
+    // --- Visual health ---
+
+    public static void onVisualCheck(boolean blank) {
+        visualChecks.incrementAndGet();
+        if (blank) {
+            visualBlankChecks.incrementAndGet();
+        }
+    }
+
+    /**
+     * Thread CPU time spent getting a snapshot onto the bitmap (main thread, pre-O only)
+     */
+    public static void onVisualCaptureCpu(long nanos) {
+        visualCaptureCpuNs.addAndGet(nanos);
+    }
+
+    /**
+     * Thread CPU time spent hashing a snapshot on the worker thread
+     */
+    public static void onVisualAnalyzeCpu(long nanos) {
+        visualAnalyzeCpuNs.addAndGet(nanos);
+    }
+
+    public static void onVisualRecovery(int reason) {
+        visualRecoveries.incrementAndGet(reason);
+    }
+
+    public static long getVisualChecks() {
+        return visualChecks.get();
+    }
+
+    public static long getVisualBlankChecks() {
+        return visualBlankChecks.get();
+    }
+
+    public static long getVisualCaptureCpuNs() {
+        return visualCaptureCpuNs.get();
+    }
+
+    public static long getVisualAnalyzeCpuNs() {
+        return visualAnalyzeCpuNs.get();
+    }
+
+    public static long getVisualRecoveries(int reason) {
+        return visualRecoveries.get(reason);
+    }
+
+    // --- Memory ---
+
+    /**
+     * Record the current Java heap usage into the fixed-size trend ring
+     */
+    public static long sampleMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long usedKb = (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+        long index = memorySampleCount.getAndIncrement();
+        memorySamplesKb.set((int) (index % MEMORY_SAMPLES), usedKb);
+        return usedKb;
+    }
+
+    /**
+     * Copy the memory trend, oldest first, into out; returns the number of samples copied
+     */
+    public static int getMemoryTrend(long[] out) {
+        long total = memorySampleCount.get();
+        int n = (int) Math.min(Math.min(total, MEMORY_SAMPLES), out.length);
+        for (int i = 0; i < n; i++) {
+            long index = total - n + i;
+            out[i] = memorySamplesKb.get((int) (index % MEMORY_SAMPLES));
+        }
+        return n;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.autolaunchwebview;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import androidx.webkit.WebViewAssetLoader;
+
+/**
+ * Request path shared by every kiosk WebView, on any display. All of them live in this
+ * process, so they also share the WebView network stack, HTTP cache and cookies.
+ */
+public class KioskWebViewClient extends WebViewClient {
+    private final ContentBundleStore bundleStore;
+    private final WebViewAssetLoader assetLoader;
+    private final MediaCache mediaCache;
+
+    public KioskWebViewClient(Context context) {
+        bundleStore = ContentBundleStore.get(context);
+        assetLoader = new WebViewAssetLoader.Builder()
+                .addPathHandler(ContentBundleStore.PATH_PREFIX, bundleStore)
+                .build();
+        mediaCache = MediaCache.get(context);
+    }
+
+    @SuppressLint("SetJavaScriptEnabled")
+    public static void applySettings(WebView webView) {
+        WebSettings settings = webView.getSettings();
+        settings.setJavaScriptEnabled(true);
+        settings.setDomStorageEnabled(true);
+        settings.setLoadWithOverviewMode(true);
+        settings.setUseWideViewPort(true);
+        settings.setBuiltInZoomControls(false);
+        settings.setSupportZoom(false);
+    }
+
+    /**
+     * The configured home URL, else the locally installed content bundle, else the network site
+     */
+    public static String getHomeUrl(Context context) {
+        String configured = KioskConfig.getHomeUrl(context);
+        if (configured != null) {
+            return configured;
+        }
+        return ContentBundleStore.get(context).hasBundle() ? ContentBundleStore.HOME_URL : KioskConfig.DEFAULT_HOME_URL;
+    }
+
+    @Override
+    public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+        if (request.isForMainFrame()) {
+            // New page load: the only point where a newer bundle may replace the active one
+            bundleStore.activatePending();
+        }
+        WebResourceResponse response = assetLoader.shouldInterceptRequest(request.getUrl());
+        if (response == null && MediaCache.isMediaUrl(request.getUrl())) {
+            response = mediaCache.intercept(request);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.autolaunchwebview;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-bucket latency histogram that can be recorded from any thread without locking
+ */
+public class LatencyHistogram {
+    // Upper bounds in milliseconds; the last bucket catches everything above
+    private static final long[] DEFAULT_BOUNDS_MS = {
+            10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000
+    };
+
+    private final long[] bounds;
+    private final AtomicLongArray counts;
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong count = new AtomicLong();
+
+    public LatencyHistogram() {
+        this(DEFAULT_BOUNDS_MS);
+    }
+
+    public LatencyHistogram(long[] bounds) {
+        this.bounds = bounds;
+        this.counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    public void record(long valueMs) {
+        if (valueMs < 0) {
+            return;
+        }
+        int i = 0;
+        while (i < bounds.length && valueMs > bounds[i]) {
+            i++;
+        }
+        counts.incrementAndGet(i);
+        sum.addAndGet(valueMs);
+        count.incrementAndGet();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long[] getBounds() {
+        return bounds;
+    }
+
+    /**
+     * Count of samples in bucket i (i == bounds.length is the overflow bucket)
+     */
+    public long getBucketCount(int i) {
+        return counts.get(i);
+    }
+
+    /**
+     * Estimate the given percentile (0-100) as the upper bound of the bucket it falls in,
+     * or -1 when nothing was recorded
+     */
+    public long percentile(double p) {
+        long total = count.get();
+        if (total == 0) {
+            return -1;
+        }
+        long rank = (long) Math.ceil(total * p / 100.0);
+        long seen = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return bounds[i];
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        sum.set(0);
+        count.set(0);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.autolaunchwebview;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Single entry point for bringing MainActivity to the front. Every trigger goes through
+ * here so concurrent requests collapse into one launch instead of a launch storm.
+ */
+public class LaunchCoordinator {
+    private static final String TAG = "LaunchCoordinator";
+    // How long a launch counts as in flight if MainActivity never reports back
+    private static final long IN_FLIGHT_TIMEOUT_MS = 5000;
+
+    private static boolean mainActivityResumed;
+    private static long inFlightSince;
+
+    public static synchronized void onMainActivityResumed() {
+        mainActivityResumed = true;
+        inFlightSince = 0;
+    }
+
+    public static synchronized void onMainActivityPaused() {
+        mainActivityResumed = false;
+    }
+
+    /**
+     * Forget launch state, as a process restart would; used by the simulation harness
+     */
+    static synchronized void reset() {
+        mainActivityResumed = false;
+        inFlightSince = 0;
+    }
+
+    public static synchronized boolean isMainActivityResumed() {
+        return mainActivityResumed;
+    }
+
+    /**
+     * Launch MainActivity unless it is already resumed or a launch is already under way.
+     * Returns true if a launch was actually started; the strategies themselves run on the io pool.
+     */
+    public static boolean requestLaunch(Context context, KioskStats.Trigger trigger) {
+        synchronized (LaunchCoordinator.class) {
+            if (mainActivityResumed) {
+                KioskStats.onLaunchRequest(trigger, KioskStats.OUTCOME_SKIPPED_RESUMED);
+                return false;
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (inFlightSince != 0 && now - inFlightSince < IN_FLIGHT_TIMEOUT_MS) {
+                KioskStats.onLaunchRequest(trigger, KioskStats.OUTCOME_COALESCED);
+                return false;
+            }
+            inFlightSince = now;
+            KioskStats.onLaunchRequest(trigger, KioskStats.OUTCOME_LAUNCHED);
+        }
+
+        // The strategies probe permissions and task state over binder, so run them off the
+        // caller's (usually main) thread
+        Context appContext = context.getApplicationContext();
+        KioskExecutors.io().execute(() -> {
+            try {
+                OverlayLauncher.launchWithOverlay(appContext);
+            } catch (Exception e) {
+                Log.e(TAG, "Overlay launcher failed, falling back to LaunchActivity", e);
+                try {
+                    Intent intent = new Intent(appContext, LaunchActivity.class);
+                    intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+                    appContext.startActivity(intent);
+                    KioskStats.onLaunchStrategy(OverlayLauncher.STRATEGY_LAUNCH_ACTIVITY, true);
+                } catch (Exception ex) {
+                    Log.e(TAG, "All launch strategies failed", ex);
+                    KioskStats.onLaunchStrategy(OverlayLauncher.STRATEGY_LAUNCH_ACTIVITY, false);
+                }
+            }
+            EventJournal.flush();
+        });
+        return true;
+    }
+}
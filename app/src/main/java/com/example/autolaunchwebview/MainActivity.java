@@ -5,45 +5,136 @@ import android.app.Activity;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.provider.Settings;
+import android.content.ComponentCallbacks2;
+import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.RenderProcessGoneDetail;
+import android.webkit.WebBackForwardList;
+import android.webkit.WebResourceError;
+import android.webkit.WebResourceRequest;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
-import android.webkit.WebViewClient;
 import android.Manifest;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import android.content.pm.PackageManager;
 import androidx.annotation.NonNull;
 import android.app.AlertDialog;
+import android.widget.ImageView;
 import android.widget.Toast;
 import android.util.Log;
 
+import com.example.autolaunchwebview.watchdog.InactivityDeadline;
+
 public class MainActivity extends Activity {
     private static final String TAG = "MainActivity";
     private static final int REQUEST_CALL_PHONE = 1001;
     private static final int REQUEST_OVERLAY_PERMISSION = 1002;
     private static final int REQUEST_IGNORE_BATTERY_OPTIMIZATION = 1003;
+    static final long INACTIVITY_TIMEOUT_MS = 30_000;
+    // Upper bound on how long a page reporting itself busy can hold off the inactivity reset
+    private static final long BUSY_HOLD_MAX_MS = 10 * 60_000;
+    // Give a finished page time to paint before its frame is saved for the next cold start
+    private static final long SNAPSHOT_DELAY_MS = 1000;
+    // Drop the last-frame placeholder even if the restored page never reports a frame
+    private static final long PLACEHOLDER_TIMEOUT_MS = 10_000;
+    private static final long PLACEHOLDER_FADE_MS = 300;
+    // Give a retired session's WebView time to be torn down before deleting its profile
+    private static final long SESSION_DISCARD_DELAY_MS = 5000;
+    // Run on the home page after a soft reset: drop what the last visitor typed, leave the top.
+    // The bridge is told to ignore the scroll this causes, so it doesn't count as a visitor.
+    private static final String SOFT_RESET_SCRIPT = "(function() {"
+            + "document.querySelectorAll('form').forEach(function(f) { f.reset(); });"
+            + "var active = document.activeElement; if (active && active.blur) { active.blur(); }"
+            + "if (window.kioskBridge && window.kioskBridge.quiet) { window.kioskBridge.quiet(); }"
+            + "window.scrollTo({top: 0, left: 0, behavior: 'instant'});"
+            + "})()";
     private WebView webView;
-    private final Handler handler = new Handler();
+    private final TaskScope scope = TaskScope.of(this);
     private Runnable inactivityRunnable;
     private MiuiAutoPermissionManager miuiPermissionManager;
+    private AvailabilityLedger availabilityLedger;
+    private PageBridge pageBridge;
+    private final InactivityDeadline inactivityDeadline = new InactivityDeadline(INACTIVITY_TIMEOUT_MS, BUSY_HOLD_MAX_MS);
+    private MultiDisplayController multiDisplayController;
+    private ScheduleRunner scheduleRunner;
+    private VisualHealthMonitor visualHealthMonitor;
+    private FrameMonitor frameMonitor;
+    private RefreshScheduler refreshScheduler;
+    // uptimeMillis of the last touch or page activity, 0 if none yet
+    private long lastInteractionAt;
+    // Changed content found while someone was using the page; shown at the next soft reset
+    private boolean refreshPending;
+    private boolean refreshPendingAssets;
+    // Set while a refresh reload bypasses the HTTP cache, so changed assets are fetched too
+    private boolean refreshBypassingCache;
+    private final ThermalGovernor.Listener thermalListener = step -> applyThermalStep();
+    // Shown over the live WebView until its page has drawn: the last frame after a cold
+    // start, or the previous session's WebView after a session change
+    private View cover;
+    private final Runnable hideCoverRunnable = this::hideCover;
+    private SessionIsolation sessionIsolation;
+    // Someone interacted since the last soft reset: nothing is saved for resuming, and with
+    // session isolation the next soft reset starts a new session
+    private boolean sessionDirty;
+    private boolean clearHistoryOnFinish;
+    private final Runnable discardSessionsRunnable = () -> sessionIsolation.discardOldSessions();
+    private final Runnable saveSnapshotRunnable = () -> saveSnapshot(true);
+    // Set while a soft reset waits for the home page to finish loading
+    private long softResetStartedAt;
+    private int softResetPath;
+    // Held here because CommandChannel only keeps a weak reference
+    private final CommandChannel.Target commandTarget = new CommandChannel.Target() {
+        @Override
+        public void reload() {
+            webView.reload();
+        }
+
+        @Override
+        public void loadUrl(String url) {
+            webView.loadUrl(url);
+        }
+
+        @Override
+        public void clearCache() {
+            webView.clearCache(true);
+            webView.reload();
+        }
+    };
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_main);
+        // Inflating the WebView loads the WebView provider from disk; nothing to move off-thread
+        KioskExecutors.permitDiskOnMain(() -> setContentView(R.layout.activity_main));
 
-        Log.d(TAG, "MainActivity created");
+        EventJournal.open(this);
+        EventJournal.record(EventJournal.ACTIVITY_CREATED, savedInstanceState != null ? 1 : 0, 0);
+        availabilityLedger = AvailabilityLedger.get(this);
         webView = findViewById(R.id.webView);
 
         // Initialize MIUI permission manager
         miuiPermissionManager = new MiuiAutoPermissionManager(this);
+        if (KioskConfig.isSessionIsolationEnabled(this)) {
+            sessionIsolation = new SessionIsolation();
+            sessionIsolation.beginSession(webView);
+            sessionIsolation.discardOldSessions();
+        }
+        scheduleRunner = new ScheduleRunner(this, url -> webView.loadUrl(url != null ? url : KioskWebViewClient.getHomeUrl(this)));
+        scheduleRunner.start();
 
+        frameMonitor = new FrameMonitor(getWindow());
+        refreshScheduler = new RefreshScheduler(this, scope, this::onContentChanged);
+        ThermalGovernor.get(this).addListener(thermalListener);
         setupWebView();
+        visualHealthMonitor = new VisualHealthMonitor(this, webView, reason -> webView.reload());
+        CommandChannel.setTarget(commandTarget);
         startInactivityMonitor();
         createNotificationChannel();
 
@@ -55,45 +146,377 @@ public class MainActivity extends Activity {
         }
 
         startInactivityService();
+
+        if (KioskConfig.isMultiDisplayEnabled(this)) {
+            // Extra displays share this activity's inactivity timer and the service watchdog
+            multiDisplayController = new MultiDisplayController(this, this::resetTimer);
+            multiDisplayController.start();
+        }
     }
-    @SuppressLint("SetJavaScriptEnabled")
-    private void setupWebView() {
-        WebSettings settings = webView.getSettings();
-        settings.setJavaScriptEnabled(true);
-        settings.setDomStorageEnabled(true);
-        settings.setLoadWithOverviewMode(true);
-        settings.setUseWideViewPort(true);
-        settings.setBuiltInZoomControls(false);
-        settings.setSupportZoom(false);
+    /**
+     * Attach settings, the page bridge, the client and the touch listener to webView
+     */
+    @SuppressLint("ClickableViewAccessibility")
+    private void bindWebView() {
+        KioskWebViewClient.applySettings(webView);
+        webView.setOnTouchListener((v, event) -> {
+            frameMonitor.onTouch(event);
+            onVisitorActivity();
+            resetTimer();
+            return false;
+        });
+
+        pageBridge = new PageBridge(webView, new PageBridge.Listener() {
+            @Override
+            public void onPageActivity(int count) {
+                KioskStats.onPageActivity(count);
+                onVisitorActivity();
+                resetTimer();
+            }
+
+            @Override
+            public void onPageBusy(boolean busy) {
+                inactivityDeadline.setBusy(busy, SystemClock.uptimeMillis());
+                resetTimer();
+            }
+
+            @Override
+            public void onPageEvent(String name) {
+                KioskStats.onPageEvent();
+                Log.d(TAG, "Page event: " + name);
+            }
+
+            @Override
+            public void onPageWatch(String url) {
+                refreshScheduler.watch(url);
+            }
+        });
+
+        webView.setWebViewClient(new KioskWebViewClient(this) {
+            @Override
+            public void onPageStarted(WebView view, String url, Bitmap favicon) {
+                super.onPageStarted(view, url, favicon);
+                KioskStats.onPageStarted();
+                availabilityLedger.onPageStarted();
+                PageFrameStats.setPage(url);
+                if (inactivityDeadline.isBusy()) {
+                    inactivityDeadline.clearBusy();
+                    // An armed timer was set for the busy hold; pull it in to the idle deadline.
+                    // A disarmed one stays disarmed, a page load alone doesn't arm it.
+                    if (scope.isPending(inactivityRunnable)) {
+                        scope.postDelayed(inactivityRunnable,
+                                inactivityDeadline.getRemainingMs(SystemClock.uptimeMillis()));
+                    }
+                }
+                if (visualHealthMonitor != null) {
+                    visualHealthMonitor.reset();
+                }
+            }
 
-        webView.setWebViewClient(new WebViewClient() {
             @Override
             public void onPageFinished(WebView view, String url) {
                 super.onPageFinished(view, url);
-                Log.d(TAG, "Page loaded: " + url);
+                KioskStats.onPageFinished();
+                availabilityLedger.onPageFinished();
+                pageBridge.attach();
+                refreshScheduler.setPage(url);
+                if (refreshBypassingCache) {
+                    view.getSettings().setCacheMode(WebSettings.LOAD_DEFAULT);
+                    refreshBypassingCache = false;
+                }
+                scope.postDelayed(saveSnapshotRunnable, SNAPSHOT_DELAY_MS);
+                if (clearHistoryOnFinish) {
+                    // The wiped session's pages must not be reachable with Back
+                    view.clearHistory();
+                    clearHistoryOnFinish = false;
+                }
+                if (softResetStartedAt != 0) {
+                    finishSoftReset(softResetPath, softResetStartedAt);
+                    softResetStartedAt = 0;
+                }
+            }
+
+            @Override
+            public void onPageCommitVisible(WebView view, String url) {
+                super.onPageCommitVisible(view, url);
+                if (cover != null && view == webView) {
+                    // Fade once the new content has actually been drawn, not just committed
+                    view.postVisualStateCallback(0, new WebView.VisualStateCallback() {
+                        @Override
+                        public void onComplete(long requestId) {
+                            hideCover();
+                        }
+                    });
+                }
+            }
+
+            @Override
+            public void onReceivedError(WebView view, WebResourceRequest request, WebResourceError error) {
+                super.onReceivedError(view, request, error);
+                if (request.isForMainFrame()) {
+                    availabilityLedger.onPageError();
+                }
             }
-        });
 
-        webView.loadUrl("https://techstern.com");
+            @Override
+            public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail) {
+                // Without handling this the whole app process is killed along with the renderer
+                KioskStats.onRendererCrash(detail.didCrash());
+                if (view == cover) {
+                    // The retiring session's renderer; the live page is unaffected
+                    scope.remove(hideCoverRunnable);
+                    cover = null;
+                    removeCover(view);
+                    return true;
+                }
+                availabilityLedger.onRendererGone();
+                Log.e(TAG, "WebView renderer gone (crashed: " + detail.didCrash() + ") - recreating");
+                pageBridge.detach();
+                if (view.getParent() instanceof ViewGroup) {
+                    ((ViewGroup) view.getParent()).removeView(view);
+                }
+                view.destroy();
+                recreate();
+                return true;
+            }
+        });
+        applyThermalStep();
+    }
+    /**
+     * Match webView's renderer priority and the page's hint to ThermalGovernor's step. From
+     * step 2 the renderer loses its foreground importance, so the system may trim it first.
+     */
+    private void applyThermalStep() {
+        int step = ThermalGovernor.get(this).getStep();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            webView.setRendererPriorityPolicy(step >= 2 ? WebView.RENDERER_PRIORITY_BOUND
+                    : WebView.RENDERER_PRIORITY_IMPORTANT, false);
+        }
+        pageBridge.setThermalStep(step);
+    }
+    private void setupWebView() {
+        bindWebView();
+        String targetUrl = getTargetUrl();
+        // After process death, pick up where the last process left off and cover the reload
+        // with its last frame instead of a blank screen
+        ResumeSnapshot snapshot = ResumeSnapshot.get(this);
+        Bundle state = snapshot.takeState(targetUrl);
+        if (state != null && webView.restoreState(state) != null) {
+            Log.d(TAG, "Restored WebView state from the previous process");
+            showFrame(snapshot.takeFrame());
+        } else {
+            webView.loadUrl(targetUrl);
+        }
+    }
+    /**
+     * The page the kiosk should be showing now: the scheduled one, else home
+     */
+    private String getTargetUrl() {
+        String scheduledUrl = scheduleRunner.getCurrentUrl();
+        return scheduledUrl != null ? scheduledUrl : KioskWebViewClient.getHomeUrl(this);
+    }
+    /**
+     * Someone is using the kiosk. The first activity of a session drops the resume snapshot,
+     * so a visitor's pages never come back after process death.
+     */
+    private void onVisitorActivity() {
+        lastInteractionAt = SystemClock.uptimeMillis();
+        if (!sessionDirty) {
+            sessionDirty = true;
+            scope.remove(saveSnapshotRunnable);
+            ResumeSnapshot.get(this).clear();
+        }
+    }
+    private void saveSnapshot(boolean withFrame) {
+        // Only the untouched target page is resumed, never a visitor's session
+        String targetUrl = getTargetUrl();
+        if (webView.getParent() != null && !sessionDirty && isSameUrl(targetUrl, webView.getUrl())) {
+            ResumeSnapshot.get(this).save(this, webView, targetUrl, withFrame);
+        }
+    }
+    private void showFrame(Bitmap frame) {
+        if (frame == null) {
+            return;
+        }
+        ImageView image = new ImageView(this);
+        image.setScaleType(ImageView.ScaleType.FIT_XY);
+        image.setImageBitmap(frame);
+        ((ViewGroup) webView.getParent()).addView(image, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        cover = image;
+        scope.postDelayed(hideCoverRunnable, PLACEHOLDER_TIMEOUT_MS);
+    }
+    private void hideCover() {
+        if (cover == null) {
+            return;
+        }
+        scope.remove(hideCoverRunnable);
+        View view = cover;
+        cover = null;
+        view.animate().alpha(0f).setDuration(PLACEHOLDER_FADE_MS).withEndAction(() -> removeCover(view));
+    }
+    private void removeCover(View view) {
+        if (view.getParent() instanceof ViewGroup) {
+            ((ViewGroup) view.getParent()).removeView(view);
+        }
+        if (view instanceof WebView) {
+            ((WebView) view).destroy();
+            scope.postDelayed(discardSessionsRunnable, SESSION_DISCARD_DELAY_MS);
+        }
+    }
+    /**
+     * End the visitor's session and show targetUrl in a fresh one. With profiles a new WebView
+     * loads underneath while the old one stays on screen as the cover; without, the current
+     * WebView is wiped and reloaded.
+     */
+    private void startNewSession(String targetUrl) {
+        if (!sessionIsolation.usesProfiles()) {
+            sessionIsolation.wipeDefaultProfile(webView);
+            sessionIsolation.beginSession(webView);
+            clearHistoryOnFinish = true;
+            webView.loadUrl(targetUrl);
+            return;
+        }
+        if (cover != null) {
+            // Still fading the last change out; finish that first
+            scope.remove(hideCoverRunnable);
+            cover.animate().cancel();
+            removeCover(cover);
+            cover = null;
+        }
+        WebView previous = webView;
+        ViewGroup parent = (ViewGroup) previous.getParent();
+        pageBridge.detach();
+        previous.stopLoading();
+        previous.setOnTouchListener(null);
+        previous.setId(View.NO_ID);
+        KioskExecutors.permitDiskOnMain(() -> webView = new WebView(this));
+        webView.setId(R.id.webView);
+        sessionIsolation.beginSession(webView);
+        parent.addView(webView, parent.indexOfChild(previous), previous.getLayoutParams());
+        bindWebView();
+        visualHealthMonitor.setView(webView);
+        cover = previous;
+        scope.postDelayed(hideCoverRunnable, PLACEHOLDER_TIMEOUT_MS);
+        webView.loadUrl(targetUrl);
     }
-    @SuppressLint("ClickableViewAccessibility")
     private void startInactivityMonitor() {
         inactivityRunnable = () -> {
-            Log.d(TAG, "Inactivity timeout - relaunching");
-            Intent i = new Intent(this, MainActivity.class);
-            i.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
-            startActivity(i);
+            EventJournal.record(EventJournal.INACTIVITY_TIMEOUT);
+            KioskStats.onInactivityTimerFired();
+            PowerAccounting.onDispatch(PowerAccounting.SUBSYSTEM_INACTIVITY);
+            // LaunchCoordinator skips requests while we are resumed, so the return to home
+            // must happen here; routing this case through it leaves a visitor's page up forever
+            if (LaunchCoordinator.isMainActivityResumed()) {
+                softReset();
+            } else {
+                LaunchCoordinator.requestLaunch(this, KioskStats.Trigger.INACTIVITY);
+            }
         };
 
         resetTimer();
-        webView.setOnTouchListener((v, event) -> {
-            resetTimer();
-            return false;
+    }
+    /**
+     * Return to the home page without leaving the activity: step back through history if home
+     * is in it (served from the back-forward cache), otherwise load it (HTTP cache or the local
+     * bundle), then reset forms and scroll position
+     */
+    private void softReset() {
+        long start = SystemClock.elapsedRealtime();
+        String targetUrl = getTargetUrl();
+        if (sessionIsolation != null && sessionDirty) {
+            sessionDirty = false;
+            softResetStartedAt = start;
+            softResetPath = KioskStats.SOFT_RESET_NEW_SESSION;
+            startNewSession(targetUrl);
+            inactivityDeadline.clearBusy();
+            inactivityDeadline.onActivity(SystemClock.uptimeMillis());
+            return;
+        }
+        WebBackForwardList history = webView.copyBackForwardList();
+        int current = history.getCurrentIndex();
+        int home = -1;
+        for (int i = current; i >= 0; i--) {
+            if (isSameUrl(targetUrl, history.getItemAtIndex(i).getUrl())
+                    || isSameUrl(targetUrl, history.getItemAtIndex(i).getOriginalUrl())) {
+                home = i;
+                break;
+            }
+        }
+        webView.clearFormData();
+        if (refreshPending) {
+            // The server has newer content than anything in history; fetch it now
+            softResetStartedAt = start;
+            softResetPath = KioskStats.SOFT_RESET_LOAD;
+            prepareRefresh();
+            webView.loadUrl(targetUrl);
+        } else if (home >= 0 && home == current) {
+            finishSoftReset(KioskStats.SOFT_RESET_IN_PLACE, start);
+        } else {
+            softResetStartedAt = start;
+            if (home >= 0) {
+                softResetPath = KioskStats.SOFT_RESET_HISTORY;
+                webView.goBackOrForward(home - current);
+            } else {
+                softResetPath = KioskStats.SOFT_RESET_LOAD;
+                webView.loadUrl(targetUrl);
+            }
+        }
+        // Start the next visitor's idle period fresh; the next touch arms the timer again.
+        // Re-arming here would wake an untouched kiosk every 30 s for nothing.
+        inactivityDeadline.clearBusy();
+        inactivityDeadline.onActivity(SystemClock.uptimeMillis());
+    }
+    /**
+     * RefreshScheduler found a change. Reload right away if nobody is using the kiosk,
+     * otherwise leave the page alone until the next soft reset.
+     */
+    private void onContentChanged(boolean assetsChanged) {
+        refreshPendingAssets |= assetsChanged;
+        if (lastInteractionAt != 0 && SystemClock.uptimeMillis() - lastInteractionAt < INACTIVITY_TIMEOUT_MS) {
+            Log.d(TAG, "Content changed, reloading at the next soft reset");
+            refreshPending = true;
+            return;
+        }
+        prepareRefresh();
+        webView.reload();
+    }
+    private void prepareRefresh() {
+        KioskStats.onRefreshReload();
+        if (refreshPendingAssets) {
+            // A reload only revalidates the document; cached assets could still be fresh by
+            // their max-age, so skip the cache until this load finishes
+            webView.getSettings().setCacheMode(WebSettings.LOAD_NO_CACHE);
+            refreshBypassingCache = true;
+        }
+        refreshPending = false;
+        refreshPendingAssets = false;
+    }
+    private void finishSoftReset(int path, long startedAt) {
+        webView.evaluateJavascript(SOFT_RESET_SCRIPT, result -> {
+            // The session is over: drop its pages from Back/Forward and make home resumable again
+            sessionDirty = false;
+            webView.clearHistory();
+            scope.postDelayed(saveSnapshotRunnable, SNAPSHOT_DELAY_MS);
+            long latency = SystemClock.elapsedRealtime() - startedAt;
+            KioskStats.onSoftReset(path, latency);
+            Log.d(TAG, "Soft reset (" + KioskStats.SOFT_RESET_NAMES[path] + ") in " + latency + " ms");
         });
     }
+    private static boolean isSameUrl(String a, String b) {
+        if (b == null) {
+            return false;
+        }
+        // "https://host" and "https://host/" are the same page
+        int length = a.endsWith("/") ? a.length() - 1 : a.length();
+        int otherLength = b.endsWith("/") ? b.length() - 1 : b.length();
+        return length == otherLength && a.regionMatches(0, b, 0, length);
+    }
     private void resetTimer() {
-        handler.removeCallbacks(inactivityRunnable);
-        handler.postDelayed(inactivityRunnable, 30_000);
+        long now = SystemClock.uptimeMillis();
+        inactivityDeadline.onActivity(now);
+        scope.postDelayed(inactivityRunnable, inactivityDeadline.getRemainingMs(now));
+        KioskStats.onInactivityTimerReset();
     }
     private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -183,25 +606,38 @@ public class MainActivity extends Activity {
         }
     }
     private void requestOverlayPermission() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && !Settings.canDrawOverlays(this)) {
-            Intent intent = new Intent(Settings.ACTION_MANAGE_OVERLAY_PERMISSION,
-                    Uri.parse("package:" + getPackageName()));
-            startActivityForResult(intent, REQUEST_OVERLAY_PERMISSION);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return;
         }
+        // Permission checks are binder calls: ask on the io pool, act on the main thread
+        scope.submit(KioskExecutors.io(), () -> {
+            if (!Settings.canDrawOverlays(this)) {
+                scope.post(() -> {
+                    Intent intent = new Intent(Settings.ACTION_MANAGE_OVERLAY_PERMISSION,
+                            Uri.parse("package:" + getPackageName()));
+                    startActivityForResult(intent, REQUEST_OVERLAY_PERMISSION);
+                });
+            }
+        });
     }
     private void requestBatteryOptimizationExemption() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return;
+        }
+        scope.submit(KioskExecutors.io(), () -> {
             PowerManager pm = (PowerManager) getSystemService(POWER_SERVICE);
             if (pm != null && !pm.isIgnoringBatteryOptimizations(getPackageName())) {
-                Intent intent = new Intent(Settings.ACTION_REQUEST_IGNORE_BATTERY_OPTIMIZATIONS);
-                intent.setData(Uri.parse("package:" + getPackageName()));
-                try {
-                    startActivityForResult(intent, REQUEST_IGNORE_BATTERY_OPTIMIZATION);
-                } catch (Exception e) {
-                    Log.e(TAG, "Failed to request battery optimization exemption", e);
-                }
+                scope.post(() -> {
+                    Intent intent = new Intent(Settings.ACTION_REQUEST_IGNORE_BATTERY_OPTIMIZATIONS);
+                    intent.setData(Uri.parse("package:" + getPackageName()));
+                    try {
+                        startActivityForResult(intent, REQUEST_IGNORE_BATTERY_OPTIMIZATION);
+                    } catch (Exception e) {
+                        Log.e(TAG, "Failed to request battery optimization exemption", e);
+                    }
+                });
             }
-        }
+        });
     }
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
@@ -210,11 +646,16 @@ public class MainActivity extends Activity {
         switch (requestCode) {
             case REQUEST_OVERLAY_PERMISSION:
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                    if (Settings.canDrawOverlays(this)) {
-                        Toast.makeText(this, "Overlay permission granted", Toast.LENGTH_SHORT).show();
-                    } else {
-                        Toast.makeText(this, "Overlay permission denied - auto-launch may not work", Toast.LENGTH_LONG).show();
-                    }
+                    scope.submit(KioskExecutors.io(), () -> {
+                        boolean granted = Settings.canDrawOverlays(this);
+                        scope.post(() -> {
+                            if (granted) {
+                                Toast.makeText(this, "Overlay permission granted", Toast.LENGTH_SHORT).show();
+                            } else {
+                                Toast.makeText(this, "Overlay permission denied - auto-launch may not work", Toast.LENGTH_LONG).show();
+                            }
+                        });
+                    });
                 }
                 break;
             case REQUEST_IGNORE_BATTERY_OPTIMIZATION:
@@ -244,19 +685,61 @@ public class MainActivity extends Activity {
     @Override
     protected void onResume() {
         super.onResume();
-        Log.d(TAG, "MainActivity resumed");
+        EventJournal.record(EventJournal.ACTIVITY_RESUMED);
+        KioskStats.onMainActivityResumed();
+        LaunchCoordinator.onMainActivityResumed();
         resetTimer();
+        scheduleRunner.refreshIfChanged();
+        visualHealthMonitor.start();
+        frameMonitor.start();
+        refreshScheduler.start();
 
         // Check permission status when app resumes
         if (MiuiAutoPermissionManager.isMiui()) {
-            boolean allGranted = miuiPermissionManager.areAllCriticalPermissionsGranted();
-            Log.d(TAG, "Critical permissions status: " + (allGranted ? "All granted" : "Some missing"));
+            scope.submit(KioskExecutors.io(), () -> {
+                boolean allGranted = miuiPermissionManager.areAllCriticalPermissionsGranted();
+                Log.d(TAG, "Critical permissions status: " + (allGranted ? "All granted" : "Some missing"));
+            });
         }
     }
     @Override
     protected void onPause() {
         super.onPause();
-        Log.d(TAG, "MainActivity paused");
+        LaunchCoordinator.onMainActivityPaused();
+        visualHealthMonitor.stop();
+        frameMonitor.stop();
+        refreshScheduler.stop();
+        EventJournal.record(EventJournal.ACTIVITY_PAUSED);
+        EventJournal.flush();
+    }
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // We may be killed next; below UI_HIDDEN the page is still on screen to capture
+        saveSnapshot(level < ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+    }
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        CommandChannel.clearTarget(commandTarget);
+        scheduleRunner.stop();
+        visualHealthMonitor.release();
+        frameMonitor.release();
+        ThermalGovernor.get(this).removeListener(thermalListener);
+        if (cover instanceof WebView) {
+            // A previous session's WebView still fading out
+            ((ViewGroup) cover.getParent()).removeView(cover);
+            ((WebView) cover).destroy();
+        }
+        // Renderer-gone recovery already detached and destroyed the WebView
+        if (webView.getParent() instanceof ViewGroup) {
+            pageBridge.detach();
+            ((ViewGroup) webView.getParent()).removeView(webView);
+            webView.destroy();
+        }
+        if (multiDisplayController != null) {
+            multiDisplayController.stop();
+        }
     }
     @Override
     public void onBackPressed() {
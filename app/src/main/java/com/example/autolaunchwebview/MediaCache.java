@@ -0,0 +1,662 @@
+package com.example.autolaunchwebview;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.MimeTypeMap;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Disk cache for looping signage media. The first request for a video or audio URL starts one
+ * sequential download into the cache and is answered from the growing file as it fills, so
+ * playback starts immediately; every later request, including the Range requests a looping
+ * player makes, is served from disk. Entries survive relaunches and are evicted LRU by size;
+ * downloads in progress count against the size limit with their full length from the moment
+ * the server announces it. On first use each
+ * run an entry is still served from disk while a conditional request checks it in the
+ * background; if the server has a new version, the entry is dropped and refetched once no
+ * response is reading it.
+ */
+public class MediaCache {
+    private static final String TAG = "MediaCache";
+    private static final String DIR = "media";
+    private static final long MAX_CACHE_BYTES = 512L * 1024 * 1024;
+    private static final int MAX_CONCURRENT_FILLS = 2;
+    // Seeks further ahead of the fill than this go to the network instead of waiting
+    private static final long MAX_WAIT_AHEAD_BYTES = 4L * 1024 * 1024;
+    private static final long FILL_STALL_TIMEOUT_MS = 30_000;
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 30_000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Backoff for URLs the server answered with an error, doubling per failure
+    private static final long RETRY_MIN_MS = 60_000;
+    private static final long RETRY_MAX_MS = 60 * 60_000;
+
+    private static final List<String> MEDIA_EXTENSIONS = Arrays.asList(
+            "mp4", "m4v", "mov", "webm", "mkv", "ogv", "mp3", "m4a", "aac", "oga", "ogg", "opus", "wav", "flac");
+
+    private static MediaCache instance;
+
+    private final File dir;
+    private final long maxBytes;
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Keys left to the network until the given elapsedRealtime: unsuitable (no length, too
+    // large) for the rest of the run, error responses for a backoff
+    private final Map<String, Long> uncacheable = new HashMap<>();
+    private final Map<String, Integer> failures = new HashMap<>();
+    private long totalBytes;
+    private int activeFills;
+
+    /**
+     * One cached URL. Fill progress is guarded by the entry's monitor; readers wait on it.
+     */
+    static class Entry {
+        final String key;
+        final String url;
+        final File data;
+        final File part;
+        final File meta;
+        String mimeType;
+        // Validators of the cached version, null if the server sent none
+        String etag;
+        String lastModified;
+        long length = -1;
+        long filled;
+        boolean complete;
+        IOException failure;
+        // Open responses; an entry in use is never evicted
+        int readers;
+        // Guarded by the cache: checked against the server this run, and found outdated
+        boolean revalidated;
+        boolean stale;
+
+        Entry(File dir, String key, String url) {
+            this.key = key;
+            this.url = url;
+            this.data = new File(dir, key + ".data");
+            this.part = new File(dir, key + ".part");
+            this.meta = new File(dir, key + ".meta");
+        }
+
+        /**
+         * Wait until the download knows the resource length; false if it never will
+         */
+        synchronized boolean awaitHeaders() throws InterruptedException {
+            long deadline = System.currentTimeMillis() + FILL_STALL_TIMEOUT_MS;
+            while (length < 0 && failure == null) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return failure == null;
+        }
+    }
+
+    public static synchronized MediaCache get(Context context) {
+        if (instance == null) {
+            // Normally loaded by KioskApplication's io warm-up; a main-thread caller that wins
+            // the race loads it here rather than failing StrictMode
+            KioskExecutors.permitDiskOnMain(() -> instance = new MediaCache(context.getApplicationContext()));
+        }
+        return instance;
+    }
+
+    private MediaCache(Context context) {
+        this(new File(context.getCacheDir(), DIR), MAX_CACHE_BYTES);
+    }
+
+    // Tests use their own directory and a small limit
+    MediaCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(TAG, "Failed to create " + dir);
+        }
+        loadIndex();
+    }
+
+    /**
+     * Whether a URL looks like video or audio, judged by its file extension
+     */
+    public static boolean isMediaUrl(Uri url) {
+        String scheme = url.getScheme();
+        String path = url.getPath();
+        if (path == null || !("http".equals(scheme) || "https".equals(scheme))) {
+            return false;
+        }
+        int dot = path.lastIndexOf('.');
+        return dot >= 0 && MEDIA_EXTENSIONS.contains(path.substring(dot + 1).toLowerCase(Locale.US));
+    }
+
+    public synchronized long getSizeBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Drop every cached file not currently being served or filled
+     */
+    public synchronized void clear() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.complete && entry.readers == 0) {
+                it.remove();
+                totalBytes -= entry.length;
+                deleteFiles(entry);
+            }
+        }
+        uncacheable.clear();
+        failures.clear();
+    }
+
+    /**
+     * Answer a media request from the cache, starting the download on first use. Returns null
+     * to let the WebView go to the network itself (uncacheable, too many fills, far seek).
+     * Blocks until the download has response headers; WebView calls this off the UI thread.
+     */
+    @Nullable
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return null;
+        }
+        String url = request.getUrl().buildUpon().fragment(null).build().toString();
+        String key = keyFor(url);
+        Entry entry;
+        synchronized (this) {
+            Long retryAt = uncacheable.get(key);
+            if (retryAt != null) {
+                if (SystemClock.elapsedRealtime() < retryAt) {
+                    return null;
+                }
+                uncacheable.remove(key);
+            }
+            entry = entries.get(key);
+            if (entry != null && entry.complete && !entry.data.exists()) {
+                // The system cleared our cache directory behind our back
+                entries.remove(key);
+                totalBytes -= entry.length;
+                entry = null;
+            }
+            if (entry != null && entry.stale && entry.readers == 0) {
+                // The server has a newer version; nothing reads the old one any more
+                entries.remove(key);
+                totalBytes -= entry.length;
+                deleteFiles(entry);
+                entry = null;
+            }
+            if (entry == null) {
+                if (activeFills >= MAX_CONCURRENT_FILLS) {
+                    return null;
+                }
+                entry = new Entry(dir, key, url);
+                entry.revalidated = true;
+                entries.put(key, entry);
+                activeFills++;
+                startFill(entry, request.getRequestHeaders());
+            } else if (entry.complete && !entry.revalidated) {
+                entry.revalidated = true;
+                Entry cached = entry;
+                Map<String, String> headers = request.getRequestHeaders();
+                KioskExecutors.io().execute(() -> revalidate(cached, headers));
+            }
+            entry.readers++;
+        }
+
+        boolean handedOff = false;
+        try {
+            if (!entry.awaitHeaders()) {
+                return null;
+            }
+            Map<String, String> headers = request.getRequestHeaders();
+            String range = headers.containsKey("Range") ? headers.get("Range") : headers.get("range");
+            WebResourceResponse response = respond(entry, range);
+            handedOff = response != null && response.getData() instanceof TailInputStream;
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            if (!handedOff) {
+                release(entry);
+            }
+        }
+    }
+
+    @Nullable
+    private WebResourceResponse respond(Entry entry, @Nullable String range) {
+        long length;
+        long filled;
+        boolean complete;
+        synchronized (entry) {
+            length = entry.length;
+            filled = entry.filled;
+            complete = entry.complete;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Ranges", "bytes");
+        ByteRange span = ByteRange.parse(range, length);
+        if (span == null) {
+            headers.put("Content-Range", "bytes */" + length);
+            return new WebResourceResponse(entry.mimeType, null, 416, "Range Not Satisfiable", headers,
+                    new ByteArrayInputStream(new byte[0]));
+        }
+        if (!complete && span.start > filled + MAX_WAIT_AHEAD_BYTES) {
+            return null;
+        }
+        headers.put("Content-Length", String.valueOf(span.length()));
+        InputStream data = new TailInputStream(entry, span.start, span.end);
+        if (!span.partial) {
+            return new WebResourceResponse(entry.mimeType, null, 200, "OK", headers, data);
+        }
+        headers.put("Content-Range", "bytes " + span.start + "-" + span.end + "/" + length);
+        return new WebResourceResponse(entry.mimeType, null, 206, "Partial Content", headers, data);
+    }
+
+    private void startFill(Entry entry, Map<String, String> requestHeaders) {
+        // Copy what the page would have sent, minus anything that changes the body
+        Map<String, String> headers = new HashMap<>(requestHeaders);
+        headers.remove("Range");
+        headers.remove("range");
+        Thread thread = new Thread(() -> fill(entry, headers), "MediaCacheFill");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private HttpURLConnection open(Entry entry, Map<String, String> headers) throws IOException {
+        PowerAccounting.onNetwork(PowerAccounting.SUBSYSTEM_CONTENT);
+        HttpURLConnection connection = (HttpURLConnection) new URL(entry.url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        String cookies = SessionIsolation.getCookieManager().getCookie(entry.url);
+        if (cookies != null) {
+            connection.setRequestProperty("Cookie", cookies);
+        }
+        return connection;
+    }
+
+    private void fill(Entry entry, Map<String, String> headers) {
+        HttpURLConnection connection = null;
+        long fetched = 0;
+        long reserved = 0;
+        // Elapsed time until which the URL is left to the network after a failure; 0 retries right away
+        long retryAt = 0;
+        try {
+            connection = open(entry, headers);
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                retryAt = backoff(entry.key);
+                throw new IOException("HTTP " + status);
+            }
+            long length = connection.getContentLengthLong();
+            // A single file may use at most half the cache
+            if (length < 0 || length > maxBytes / 2) {
+                retryAt = Long.MAX_VALUE;
+                throw new IOException("Uncacheable length " + length);
+            }
+            synchronized (this) {
+                // Count the whole file now, so concurrent fills can't overrun the cache
+                reserved = length;
+                totalBytes += length;
+                evict();
+            }
+            synchronized (entry) {
+                entry.length = length;
+                entry.mimeType = mimeTypeFor(entry.url, connection.getContentType());
+                entry.etag = connection.getHeaderField("ETag");
+                entry.lastModified = connection.getHeaderField("Last-Modified");
+                entry.notifyAll();
+            }
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try (InputStream in = connection.getInputStream();
+                 FileOutputStream out = new FileOutputStream(entry.part)) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                    fetched += n;
+                    synchronized (entry) {
+                        entry.filled += n;
+                        entry.notifyAll();
+                    }
+                }
+            }
+            if (fetched != length) {
+                throw new IOException("Truncated: " + fetched + " of " + length + " bytes");
+            }
+            writeMeta(entry);
+            synchronized (entry) {
+                // Under the entry lock so no reader opens the .part file mid-rename
+                if (!entry.part.renameTo(entry.data)) {
+                    throw new IOException("Failed to commit " + entry.data);
+                }
+                entry.complete = true;
+                entry.notifyAll();
+            }
+            synchronized (this) {
+                activeFills--;
+                failures.remove(entry.key);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Not caching " + entry.url, e);
+            synchronized (entry) {
+                entry.failure = e;
+                entry.notifyAll();
+            }
+            synchronized (this) {
+                activeFills--;
+                totalBytes -= reserved;
+                if (entries.get(entry.key) == entry) {
+                    entries.remove(entry.key);
+                }
+                if (retryAt != 0) {
+                    uncacheable.put(entry.key, retryAt);
+                }
+            }
+            deleteFiles(entry);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+            KioskStats.onMediaFetched(fetched);
+        }
+    }
+
+    /**
+     * Record another error response for key; returns when to try caching it again
+     */
+    private synchronized long backoff(String key) {
+        int count = failures.containsKey(key) ? failures.get(key) + 1 : 1;
+        failures.put(key, count);
+        long delay = Math.min(RETRY_MAX_MS, RETRY_MIN_MS << Math.min(count - 1, 6));
+        return SystemClock.elapsedRealtime() + delay;
+    }
+
+    /**
+     * Ask the server whether a cached entry is still current; on io(). Network trouble keeps
+     * the cached copy, a signage loop is better stale than black.
+     */
+    private void revalidate(Entry entry, Map<String, String> requestHeaders) {
+        if (entry.etag == null && entry.lastModified == null) {
+            // Nothing to compare against; the entry ages out through eviction
+            return;
+        }
+        Map<String, String> headers = new HashMap<>(requestHeaders);
+        headers.remove("Range");
+        headers.remove("range");
+        if (entry.etag != null) {
+            headers.put("If-None-Match", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            headers.put("If-Modified-Since", entry.lastModified);
+        }
+        HttpURLConnection connection = null;
+        try {
+            connection = open(entry, headers);
+            connection.setRequestMethod("HEAD");
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                Log.w(TAG, "HTTP " + status + " revalidating " + entry.url + ", keeping cached copy");
+                return;
+            }
+            // A server that ignores conditions on HEAD answers 200 for an unchanged file too
+            if (Objects.equals(entry.etag, connection.getHeaderField("ETag"))
+                    && Objects.equals(entry.lastModified, connection.getHeaderField("Last-Modified"))) {
+                return;
+            }
+            Log.i(TAG, "Changed on the server, refetching: " + entry.url);
+            synchronized (this) {
+                // Unless it was evicted meanwhile and the key already refilled
+                if (entries.get(entry.key) == entry) {
+                    entry.stale = true;
+                    // Next run must not load the old version; its data goes once nobody reads it
+                    if (entry.meta.exists() && !entry.meta.delete()) {
+                        Log.w(TAG, "Failed to remove " + entry.meta);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to revalidate " + entry.url + ", keeping cached copy", e);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.readers--;
+    }
+
+    /**
+     * Drop least recently used, idle, complete entries until the cache fits
+     */
+    private void evict() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.complete && entry.readers == 0) {
+                it.remove();
+                totalBytes -= entry.length;
+                deleteFiles(entry);
+                Log.d(TAG, "Evicted " + entry.url);
+            }
+        }
+    }
+
+    private void loadIndex() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<Entry> loaded = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(".part")) {
+                // Left by a process that died mid-download
+                if (!file.delete()) {
+                    Log.w(TAG, "Failed to remove " + file);
+                }
+            } else if (name.endsWith(".meta")) {
+                Entry entry = readMeta(file, name.substring(0, name.length() - 5));
+                if (entry != null) {
+                    loaded.add(entry);
+                }
+            }
+        }
+        // Oldest access first, so the map's LRU order carries over between runs
+        loaded.sort((a, b) -> Long.compare(a.data.lastModified(), b.data.lastModified()));
+        for (Entry entry : loaded) {
+            entries.put(entry.key, entry);
+            totalBytes += entry.length;
+        }
+    }
+
+    @Nullable
+    private Entry readMeta(File metaFile, String key) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(metaFile))) {
+            long length = Long.parseLong(reader.readLine());
+            String mimeType = reader.readLine();
+            String url = reader.readLine();
+            // Validators, absent in entries written before they were kept
+            String etag = reader.readLine();
+            String lastModified = reader.readLine();
+            Entry entry = new Entry(dir, key, url);
+            if (url != null && mimeType != null && entry.data.length() == length) {
+                entry.length = length;
+                entry.filled = length;
+                entry.mimeType = mimeType;
+                entry.etag = etag == null || etag.isEmpty() ? null : etag;
+                entry.lastModified = lastModified == null || lastModified.isEmpty() ? null : lastModified;
+                entry.complete = true;
+                return entry;
+            }
+            deleteFiles(entry);
+        } catch (IOException | NumberFormatException e) {
+            Log.w(TAG, "Dropping unreadable cache entry " + key, e);
+            deleteFiles(new Entry(dir, key, null));
+        }
+        return null;
+    }
+
+    private static void writeMeta(Entry entry) throws IOException {
+        try (Writer writer = new FileWriter(entry.meta)) {
+            writer.write(entry.length + "\n" + entry.mimeType + "\n" + entry.url + "\n"
+                    + (entry.etag != null ? entry.etag : "") + "\n"
+                    + (entry.lastModified != null ? entry.lastModified : "") + "\n");
+        }
+    }
+
+    private static void deleteFiles(Entry entry) {
+        for (File file : new File[]{entry.data, entry.part, entry.meta}) {
+            if (file.exists() && !file.delete()) {
+                Log.w(TAG, "Failed to remove " + file);
+            }
+        }
+    }
+
+    private static String keyFor(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(40);
+            // 20 bytes is plenty to keep URLs apart
+            for (int i = 0; i < 20; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String mimeTypeFor(String url, @Nullable String contentType) {
+        if (contentType != null) {
+            int semicolon = contentType.indexOf(';');
+            String type = (semicolon >= 0 ? contentType.substring(0, semicolon) : contentType).trim();
+            if (!type.isEmpty() && !"application/octet-stream".equals(type)) {
+                return type;
+            }
+        }
+        String mime = MimeTypeMap.getSingleton().getMimeTypeFromExtension(
+                MimeTypeMap.getFileExtensionFromUrl(url));
+        return mime != null ? mime : "application/octet-stream";
+    }
+
+    /**
+     * Reads [start, end] of an entry, waiting for the download where it hasn't got that far yet
+     */
+    private class TailInputStream extends InputStream {
+        private final Entry entry;
+        private final long end;
+        private long position;
+        private long served;
+        private RandomAccessFile file;
+        private boolean closed;
+
+        TailInputStream(Entry entry, long start, long end) {
+            this.entry = entry;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == 1 ? one[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            if (position > end) {
+                return -1;
+            }
+            long available;
+            synchronized (entry) {
+                long deadline = System.currentTimeMillis() + FILL_STALL_TIMEOUT_MS;
+                while (!entry.complete && entry.filled <= position) {
+                    if (entry.failure != null) {
+                        throw new IOException("Download failed", entry.failure);
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        throw new IOException("Download stalled");
+                    }
+                    try {
+                        entry.wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted", e);
+                    }
+                }
+                available = (entry.complete ? entry.length : entry.filled) - position;
+                if (file == null) {
+                    file = new RandomAccessFile(entry.complete ? entry.data : entry.part, "r");
+                }
+            }
+            int n = (int) Math.min(len, Math.min(available, end + 1 - position));
+            file.seek(position);
+            n = file.read(b, off, n);
+            if (n > 0) {
+                position += n;
+                served += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (file != null) {
+                file.close();
+            }
+            if (entry.complete && !entry.data.setLastModified(System.currentTimeMillis())) {
+                Log.w(TAG, "Failed to touch " + entry.data);
+            }
+            KioskStats.onMediaServed(served);
+            release(entry);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.autolaunchwebview;
+
+import android.os.Debug;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Minimal HTTP server on 127.0.0.1 that serves KioskStats in Prometheus text format.
+ * Reach it from a laptop with: adb forward tcp:9464 tcp:9464 && curl localhost:9464/metrics
+ */
+public class MetricsServer {
+    private static final String TAG = "MetricsServer";
+    public static final int DEFAULT_PORT = 9464;
+    private static final int SOCKET_TIMEOUT_MS = 2000;
+
+    private final int port;
+    private volatile ServerSocket serverSocket;
+    private Thread thread;
+
+    public MetricsServer(int port) {
+        this.port = port;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::serve, "MetricsServer");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        thread.interrupt();
+        thread = null;
+        ServerSocket socket = serverSocket;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close metrics socket", e);
+            }
+        }
+    }
+
+    private void serve() {
+        try (ServerSocket socket = new ServerSocket(port, 4, InetAddress.getLoopbackAddress())) {
+            serverSocket = socket;
+            // stop() interrupts before it reads serverSocket: if it ran before the assignment
+            // above it found nothing to close, but the interrupt is visible here
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            Log.d(TAG, "Serving metrics on 127.0.0.1:" + port);
+            while (!Thread.currentThread().isInterrupted()) {
+                // Scrapes are rare; handle them one at a time on this thread
+                try (Socket client = socket.accept()) {
+                    client.setSoTimeout(SOCKET_TIMEOUT_MS);
+                    handle(client);
+                } catch (IOException e) {
+                    if (socket.isClosed()) {
+                        break;
+                    }
+                    Log.w(TAG, "Metrics request failed", e);
+                }
+            }
+        } catch (IOException e) {
+            if (!Thread.currentThread().isInterrupted()) {
+                Log.e(TAG, "Metrics server stopped", e);
+            }
+        }
+        // serverSocket is left as is: after a restart it may already be the new thread's
+    }
+
+    private void handle(Socket client) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.US_ASCII));
+        String requestLine = reader.readLine();
+        if (requestLine == null) {
+            return;
+        }
+        // Drain the request headers
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            // ignored
+        }
+
+        String[] parts = requestLine.split(" ");
+        String status;
+        String body;
+        if (parts.length >= 2 && "GET".equals(parts[0]) && ("/metrics".equals(parts[1]) || "/".equals(parts[1]))) {
+            status = "200 OK";
+            body = render();
+        } else {
+            status = "404 Not Found";
+            body = "Not found\n";
+        }
+
+        byte[] payload = body.getBytes(StandardCharsets.UTF_8);
+        String headers = "HTTP/1.1 " + status + "\r\n" +
+                "Content-Type: text/plain; version=0.0.4; charset=utf-8\r\n" +
+                "Content-Length: " + payload.length + "\r\n" +
+                "Connection: close\r\n\r\n";
+        OutputStream out = client.getOutputStream();
+        out.write(headers.getBytes(StandardCharsets.US_ASCII));
+        out.write(payload);
+        out.flush();
+    }
+
+    /**
+     * Render every metric in Prometheus exposition format
+     */
+    static String render() {
+        StringBuilder out = new StringBuilder(4096);
+
+        header(out, "kiosk_uptime_seconds", "gauge", "Time since the app process started");
+        sample(out, "kiosk_uptime_seconds", null, KioskStats.getUptimeMs() / 1000.0);
+
+        header(out, "kiosk_relaunch_requests_total", "counter", "Relaunch requests by trigger");
+        for (KioskStats.Trigger trigger : KioskStats.Trigger.values()) {
+            sample(out, "kiosk_relaunch_requests_total",
+                    "trigger=\"" + trigger.name().toLowerCase(Locale.US) + "\"", KioskStats.getRelaunchCount(trigger));
+        }
+
+        header(out, "kiosk_launch_request_outcomes_total", "counter", "What LaunchCoordinator did with launch requests");
+        for (int i = 0; i < KioskStats.OUTCOME_NAMES.length; i++) {
+            sample(out, "kiosk_launch_request_outcomes_total",
+                    "outcome=\"" + KioskStats.OUTCOME_NAMES[i] + "\"", KioskStats.getLaunchOutcomeCount(i));
+        }
+
+        header(out, "kiosk_launch_strategy_total", "counter", "Launch attempts by OverlayLauncher strategy and result");
+        for (int i = 1; i < OverlayLauncher.STRATEGY_NAMES.length; i++) {
+            String strategy = "strategy=\"" + OverlayLauncher.STRATEGY_NAMES[i] + "\"";
+            sample(out, "kiosk_launch_strategy_total", strategy + ",result=\"success\"", KioskStats.getStrategyCount(i, true));
+            sample(out, "kiosk_launch_strategy_total", strategy + ",result=\"failure\"", KioskStats.getStrategyCount(i, false));
+        }
+
+        header(out, "kiosk_app_transitions_total", "counter", "Process foreground/background transitions");
+        sample(out, "kiosk_app_transitions_total", "to=\"foreground\"", KioskStats.getForegroundTransitions());
+        sample(out, "kiosk_app_transitions_total", "to=\"background\"", KioskStats.getBackgroundTransitions());
+
+        histogram(out, "kiosk_relaunch_latency_seconds", "Time from relaunch request to MainActivity resume",
+                KioskStats.getRelaunchLatency());
+        histogram(out, "kiosk_page_load_seconds", "Main document load time", KioskStats.getPageLoadLatency());
+
+        header(out, "kiosk_renderer_crashes_total", "counter", "WebView renderer process terminations");
+        sample(out, "kiosk_renderer_crashes_total", null, KioskStats.getRendererCrashes());
+
+        header(out, "kiosk_timer_events_total", "counter", "Inactivity and watchdog timer activity");
+        sample(out, "kiosk_timer_events_total", "timer=\"inactivity\",event=\"reset\"", KioskStats.getInactivityTimerResets());
+        sample(out, "kiosk_timer_events_total", "timer=\"inactivity\",event=\"fire\"", KioskStats.getInactivityTimerFires());
+        sample(out, "kiosk_timer_events_total", "timer=\"watchdog\",event=\"arm\"", KioskStats.getWatchdogTimerArms());
+        sample(out, "kiosk_timer_events_total", "timer=\"watchdog\",event=\"fire\"", KioskStats.getWatchdogTimerFires());
+
+        header(out, "kiosk_soft_resets_total", "counter", "Inactivity resets done inside MainActivity, by how home was reached");
+        for (int i = 0; i < KioskStats.SOFT_RESET_NAMES.length; i++) {
+            sample(out, "kiosk_soft_resets_total", "path=\"" + KioskStats.SOFT_RESET_NAMES[i] + "\"",
+                    KioskStats.getSoftResets(i));
+        }
+        histogram(out, "kiosk_soft_reset_seconds", "Time from inactivity timeout to the home page reset",
+                KioskStats.getSoftResetLatency());
+        histogram(out, "kiosk_session_start_seconds", "Time from inactivity timeout to the home page drawn in a new visitor session",
+                KioskStats.getSessionStartLatency());
+
+        header(out, "kiosk_bundle_updates_total", "counter", "Content bundle versions installed by delta update");
+        sample(out, "kiosk_bundle_updates_total", null, KioskStats.getBundleUpdates());
+        header(out, "kiosk_bundle_update_bytes_total", "counter", "Bytes fetched by delta updates vs. full downloads of the same versions");
+        sample(out, "kiosk_bundle_update_bytes_total", "kind=\"fetched\"", KioskStats.getBundleBytesFetched());
+        sample(out, "kiosk_bundle_update_bytes_total", "kind=\"full\"", KioskStats.getBundleBytesFull());
+
+        header(out, "kiosk_refresh_checks_total", "counter", "Conditional requests sent to see whether the shown page changed");
+        for (int i = 0; i < KioskStats.REFRESH_NAMES.length; i++) {
+            sample(out, "kiosk_refresh_checks_total", "result=\"" + KioskStats.REFRESH_NAMES[i] + "\"",
+                    KioskStats.getRefreshChecks(i));
+        }
+        header(out, "kiosk_refresh_bytes_total", "counter", "Estimated HTTP header bytes exchanged by those checks");
+        sample(out, "kiosk_refresh_bytes_total", null, KioskStats.getRefreshBytes());
+        header(out, "kiosk_refresh_reloads_total", "counter", "Page reloads because the server had new content");
+        sample(out, "kiosk_refresh_reloads_total", null, KioskStats.getRefreshReloads());
+
+        AvailabilityLedger ledger = AvailabilityLedger.getIfOpen();
+        if (ledger != null) {
+            long[] today = ledger.getDay(0);
+            header(out, "kiosk_availability_today_seconds", "gauge", "Time spent today per content state or downtime cause");
+            for (int i = 0; i < today.length; i++) {
+                sample(out, "kiosk_availability_today_seconds",
+                        "cause=\"" + AvailabilityLedger.CAUSE_NAMES[i] + "\"", today[i] / 1000.0);
+            }
+            header(out, "kiosk_availability_today_ratio", "gauge", "Fraction of today's tracked time with content visible");
+            sample(out, "kiosk_availability_today_ratio", null, Math.max(0, AvailabilityLedger.availability(today)));
+        }
+
+        header(out, "kiosk_media_cache_bytes_total", "counter", "Media bytes downloaded into the cache vs. served from it");
+        sample(out, "kiosk_media_cache_bytes_total", "direction=\"fetched\"", KioskStats.getMediaBytesFetched());
+        sample(out, "kiosk_media_cache_bytes_total", "direction=\"served\"", KioskStats.getMediaBytesServed());
+
+        header(out, "kiosk_presentations_active", "gauge", "Extra displays currently showing content");
+        sample(out, "kiosk_presentations_active", null, KioskStats.getActivePresentations());
+        if (KioskStats.getLastPresentationPssKb() >= 0) {
+            header(out, "kiosk_presentation_pss_bytes", "gauge", "App-process PSS added by the last attached extra display");
+            sample(out, "kiosk_presentation_pss_bytes", null, KioskStats.getLastPresentationPssKb() * 1024.0);
+        }
+
+        header(out, "kiosk_commands_total", "counter", "Remote commands accepted over the command channel");
+        for (int i = 0; i < CommandChannel.COMMANDS.length; i++) {
+            sample(out, "kiosk_commands_total", "command=\"" + CommandChannel.COMMANDS[i] + "\"", KioskStats.getCommandCount(i));
+        }
+        header(out, "kiosk_command_channel_connected", "gauge", "1 while the command channel is connected");
+        sample(out, "kiosk_command_channel_connected", null, KioskStats.isCommandChannelConnected() ? 1 : 0);
+        header(out, "kiosk_command_channel_connects_total", "counter", "Command channel connections opened");
+        sample(out, "kiosk_command_channel_connects_total", null, KioskStats.getCommandChannelConnects());
+
+        header(out, "kiosk_visual_checks_total", "counter", "Screen snapshots analysed, and how many looked blank");
+        sample(out, "kiosk_visual_checks_total", "result=\"any\"", KioskStats.getVisualChecks());
+        sample(out, "kiosk_visual_checks_total", "result=\"blank\"", KioskStats.getVisualBlankChecks());
+        header(out, "kiosk_visual_check_cpu_seconds_total", "counter", "Thread CPU time spent on screen checks");
+        sample(out, "kiosk_visual_check_cpu_seconds_total", "stage=\"capture\"", KioskStats.getVisualCaptureCpuNs() / 1e9);
+        sample(out, "kiosk_visual_check_cpu_seconds_total", "stage=\"analyze\"", KioskStats.getVisualAnalyzeCpuNs() / 1e9);
+        header(out, "kiosk_visual_recoveries_total", "counter", "Reloads triggered by a blank or frozen screen");
+        for (int i = 0; i < VisualHealthMonitor.REASON_NAMES.length; i++) {
+            sample(out, "kiosk_visual_recoveries_total", "reason=\"" + VisualHealthMonitor.REASON_NAMES[i] + "\"",
+                    KioskStats.getVisualRecoveries(i));
+        }
+
+        header(out, "kiosk_page_frames_total", "counter",
+                "Frames rendered in the kiosk window by page, and how many took longer than one refresh");
+        for (int i = 0; i < PageFrameStats.PAGES; i++) {
+            String page = PageFrameStats.getPage(i);
+            if (page != null) {
+                String label = "page=\"" + escape(page) + "\"";
+                sample(out, "kiosk_page_frames_total", label + ",result=\"any\"", PageFrameStats.getFrameTimes(i).getCount());
+                sample(out, "kiosk_page_frames_total", label + ",result=\"janky\"", PageFrameStats.getJankyFrames(i));
+            }
+        }
+        header(out, "kiosk_page_frame_seconds", "histogram", "Frame duration by page");
+        for (int i = 0; i < PageFrameStats.PAGES; i++) {
+            String page = PageFrameStats.getPage(i);
+            if (page != null) {
+                histogramSamples(out, "kiosk_page_frame_seconds", "page=\"" + escape(page) + "\"",
+                        PageFrameStats.getFrameTimes(i));
+            }
+        }
+        header(out, "kiosk_page_input_latency_seconds", "histogram", "Time from a touch to the end of the next frame, by page");
+        for (int i = 0; i < PageFrameStats.PAGES; i++) {
+            String page = PageFrameStats.getPage(i);
+            if (page != null) {
+                histogramSamples(out, "kiosk_page_input_latency_seconds", "page=\"" + escape(page) + "\"",
+                        PageFrameStats.getInputLatency(i));
+            }
+        }
+
+        ThermalGovernor thermal = ThermalGovernor.getIfCreated();
+        if (thermal != null) {
+            header(out, "kiosk_thermal_status", "gauge", "Current PowerManager thermal status (0 none .. 6 shutdown)");
+            sample(out, "kiosk_thermal_status", null, thermal.getStatus());
+            header(out, "kiosk_thermal_step", "gauge", "Current throttling step (0 normal .. 3)");
+            sample(out, "kiosk_thermal_step", null, thermal.getStep());
+            header(out, "kiosk_thermal_seconds_total", "counter", "Time spent in each thermal status");
+            for (int i = 0; i < ThermalGovernor.STATUS_NAMES.length; i++) {
+                sample(out, "kiosk_thermal_seconds_total", "status=\"" + ThermalGovernor.STATUS_NAMES[i] + "\"",
+                        thermal.getTimeInStatusMs(i) / 1000.0);
+            }
+        }
+
+        header(out, "kiosk_power_events_total", "counter",
+                "Timer dispatches, alarms, wake-lock ms, binder calls and network exchanges by subsystem");
+        for (int s = 0; s < PowerAccounting.SUBSYSTEM_NAMES.length; s++) {
+            String subsystem = "subsystem=\"" + PowerAccounting.SUBSYSTEM_NAMES[s] + "\"";
+            for (int k = 0; k < PowerAccounting.KIND_NAMES.length; k++) {
+                sample(out, "kiosk_power_events_total", subsystem + ",kind=\"" + PowerAccounting.KIND_NAMES[k] + "\"",
+                        PowerAccounting.getCount(s, k));
+            }
+        }
+        header(out, "kiosk_power_estimated_joules_total", "counter", "Estimated energy of the events above by subsystem");
+        for (int s = 0; s < PowerAccounting.SUBSYSTEM_NAMES.length; s++) {
+            sample(out, "kiosk_power_estimated_joules_total", "subsystem=\"" + PowerAccounting.SUBSYSTEM_NAMES[s] + "\"",
+                    PowerAccounting.getEnergyMicrojoules(s) / 1e6);
+        }
+
+        header(out, "kiosk_scoped_tasks_pending", "gauge", "Posted runnables and background tasks owned by open task scopes");
+        sample(out, "kiosk_scoped_tasks_pending", null, TaskScope.getOutstandingTotal());
+        header(out, "kiosk_task_scopes_open", "gauge", "Task scopes of live activities and services");
+        sample(out, "kiosk_task_scopes_open", null, TaskScope.getOpenScopes());
+        header(out, "kiosk_io_pool_tasks", "gauge", "Tasks on the shared io pool");
+        sample(out, "kiosk_io_pool_tasks", "state=\"active\"", KioskExecutors.getIoActive());
+        sample(out, "kiosk_io_pool_tasks", "state=\"queued\"", KioskExecutors.getIoQueued());
+        header(out, "kiosk_destroyed_activities_uncollected", "gauge",
+                "Destroyed activities not yet garbage collected; staying above zero means a leak");
+        sample(out, "kiosk_destroyed_activities_uncollected", null, TaskScope.getRetainedActivities(false));
+
+        Runtime runtime = Runtime.getRuntime();
+        header(out, "kiosk_memory_bytes", "gauge", "Process memory usage");
+        sample(out, "kiosk_memory_bytes", "area=\"java_heap\"", runtime.totalMemory() - runtime.freeMemory());
+        sample(out, "kiosk_memory_bytes", "area=\"java_heap_max\"", runtime.maxMemory());
+        sample(out, "kiosk_memory_bytes", "area=\"native_heap\"", Debug.getNativeHeapAllocatedSize());
+
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static void histogram(StringBuilder out, String name, String help, LatencyHistogram histogram) {
+        header(out, name, "histogram", help);
+        histogramSamples(out, name, null, histogram);
+    }
+
+    /**
+     * One labelled series of a histogram whose header was already written
+     */
+    private static void histogramSamples(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        String prefix = labels != null ? labels + "," : "";
+        long[] bounds = histogram.getBounds();
+        long cumulative = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            cumulative += histogram.getBucketCount(i);
+            sample(out, name + "_bucket", prefix + "le=\"" + (bounds[i] / 1000.0) + "\"", cumulative);
+        }
+        cumulative += histogram.getBucketCount(bounds.length);
+        sample(out, name + "_bucket", prefix + "le=\"+Inf\"", cumulative);
+        sample(out, name + "_sum", labels, histogram.getSum() / 1000.0);
+        sample(out, name + "_count", labels, cumulative);
+    }
+
+    /**
+     * Escape a label value, e.g. a page URL
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -1,26 +1,31 @@
 package com.example.autolaunchwebview;
 
 import android.annotation.SuppressLint;
-import android.content.ComponentName;
+import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Build;
-import android.os.Handler;
-import android.os.Looper;
 import android.provider.Settings;
 import android.util.Log;
 import android.widget.Toast;
+
+import androidx.annotation.Nullable;
+
+import com.example.autolaunchwebview.watchdog.OemDetector;
+
 import java.lang.reflect.Method;
 
 public class MiuiAutoPermissionManager {
     private static final String TAG = "MiuiAutoPermissionManager";
+    private static volatile Boolean isMiui;
     private final Context context;
-    private final Handler handler;
+    // The step sequence below spans 10 s; the scope drops it if the activity goes away first
+    private final TaskScope scope;
 
-    public MiuiAutoPermissionManager(Context context) {
-        this.context = context;
-        this.handler = new Handler(Looper.getMainLooper());
+    public MiuiAutoPermissionManager(Activity activity) {
+        this.context = activity;
+        this.scope = TaskScope.of(activity);
     }
 
     /**
@@ -35,82 +40,85 @@ public class MiuiAutoPermissionManager {
         Log.d(TAG, "Starting MIUI auto-permission configuration...");
 
         // Execute permissions in sequence with delays
-        handler.post(this::enableAutostartPermission);
-        handler.postDelayed(this::disableBatteryOptimization, 1000);
-        handler.postDelayed(this::enableBackgroundAppRefresh, 2000);
-        handler.postDelayed(this::enablePopupPermission, 3000);
-        handler.postDelayed(this::enableModifySystemSettings, 4000);
-        handler.postDelayed(this::enableOverlayPermission, 5000);
-        handler.postDelayed(this::disableMiuiOptimization, 6000);
-        handler.postDelayed(this::enableDisplayOverOtherApps, 7000);
-        handler.postDelayed(this::setAppAsProtected, 8000);
+        runStep(this::enableAutostartPermission, 0);
+        runStep(this::disableBatteryOptimization, 1000);
+        runStep(this::enableBackgroundAppRefresh, 2000);
+        runStep(this::enablePopupPermission, 3000);
+        runStep(this::enableModifySystemSettings, 4000);
+        runStep(this::enableOverlayPermission, 5000);
+        runStep(this::disableMiuiOptimization, 6000);
+        runStep(this::enableDisplayOverOtherApps, 7000);
+        runStep(this::setAppAsProtected, 8000);
     }
 
     /**
-     * Enable autostart permission (Most Critical for boot launch)
+     * Steps do reflection and binder calls, so they run on the io pool; the settings screens
+     * they open are started back on the main thread through startSettings
      */
-    private void enableAutostartPermission() {
-        try {
-            Log.d(TAG, "Attempting to enable autostart permission...");
-
-            // Method 1: Direct autostart activity
-            Intent intent = new Intent();
-            intent.setComponent(new ComponentName("com.miui.securitycenter",
-                    "com.miui.permcenter.autostart.AutoStartManagementActivity"));
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+    private void runStep(Runnable step, long delayMs) {
+        scope.postDelayed(() -> scope.submit(KioskExecutors.io(), step), delayMs);
+    }
 
-            // Try to auto-enable via reflection
+    private void startSettings(Intent intent, @Nullable Intent fallback) {
+        scope.post(() -> {
             try {
-                enablePermissionViaReflection("autostart", true);
+                context.startActivity(intent);
             } catch (Exception e) {
-                Log.w(TAG, "Reflection method failed for autostart", e);
+                if (fallback == null) {
+                    Log.e(TAG, "Failed to open " + intent.getAction(), e);
+                    return;
+                }
+                Log.w(TAG, "Failed to open " + intent.getAction() + ", trying fallback", e);
+                try {
+                    context.startActivity(fallback);
+                } catch (Exception ex) {
+                    Log.e(TAG, "Fallback " + fallback.getAction() + " also failed", ex);
+                }
             }
+        });
+    }
+
+    /**
+     * Enable autostart permission (Most Critical for boot launch)
+     */
+    private void enableAutostartPermission() {
+        Log.d(TAG, "Attempting to enable autostart permission...");
 
-            context.startActivity(intent);
-            Log.d(TAG, "Autostart settings opened");
+        // Method 1: Autostart activity resolved for this device
+        Intent intent = SettingsIntentResolver.getIntent(context, SettingsIntentResolver.Target.AUTOSTART);
 
+        // Try to auto-enable via reflection
+        try {
+            enablePermissionViaReflection("autostart", true);
         } catch (Exception e) {
-            Log.e(TAG, "Failed to open autostart settings", e);
-            // Fallback: Open general app settings
-            openAppSettings();
+            Log.w(TAG, "Reflection method failed for autostart", e);
         }
+
+        // Fallback: Open general app settings
+        startSettings(intent, appSettingsIntent());
     }
 
     /**
      * Disable battery optimization
      */
     private void disableBatteryOptimization() {
-        try {
-            Log.d(TAG, "Attempting to disable battery optimization...");
-
-            // Method 1: MIUI specific battery settings
-            Intent intent = new Intent();
-            intent.setComponent(new ComponentName("com.miui.powerkeeper",
-                    "com.miui.powerkeeper.ui.HiddenAppsContainerManagementActivity"));
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-
-            // Try reflection method
-            try {
-                enablePermissionViaReflection("battery_optimization", false);
-            } catch (Exception e) {
-                Log.w(TAG, "Reflection method failed for battery optimization", e);
-            }
+        Log.d(TAG, "Attempting to disable battery optimization...");
 
-            context.startActivity(intent);
-            Log.d(TAG, "Battery optimization settings opened");
+        // Method 1: OEM battery settings, or the battery optimization list when absent
+        Intent intent = SettingsIntentResolver.getIntent(context, SettingsIntentResolver.Target.BATTERY);
 
+        // Try reflection method
+        try {
+            enablePermissionViaReflection("battery_optimization", false);
         } catch (Exception e) {
-            Log.e(TAG, "Failed to open battery optimization settings", e);
-            // Fallback: Standard Android battery optimization
-            try {
-                Intent intent = new Intent(Settings.ACTION_REQUEST_IGNORE_BATTERY_OPTIMIZATIONS);
-                intent.setData(Uri.parse("package:" + context.getPackageName()));
-                intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                context.startActivity(intent);
-            } catch (Exception ex) {
-                Log.e(TAG, "Fallback battery optimization also failed", ex);
-            }
+            Log.w(TAG, "Reflection method failed for battery optimization", e);
         }
+
+        // Fallback: Standard Android battery optimization
+        Intent fallback = new Intent(Settings.ACTION_REQUEST_IGNORE_BATTERY_OPTIMIZATIONS);
+        fallback.setData(Uri.parse("package:" + context.getPackageName()));
+        fallback.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        startSettings(intent, fallback);
     }
 
     /**
@@ -132,7 +140,7 @@ public class MiuiAutoPermissionManager {
             intent.setAction(Settings.ACTION_APPLICATION_DETAILS_SETTINGS);
             intent.setData(Uri.parse("package:" + context.getPackageName()));
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            context.startActivity(intent);
+            startSettings(intent, null);
 
         } catch (Exception e) {
             Log.e(TAG, "Failed to configure background app refresh", e);
@@ -146,11 +154,7 @@ public class MiuiAutoPermissionManager {
         try {
             Log.d(TAG, "Attempting to enable popup permission...");
 
-            Intent intent = new Intent();
-            intent.setComponent(new ComponentName("com.miui.securitycenter",
-                    "com.miui.permcenter.permissions.PermissionsEditorActivity"));
-            intent.putExtra("extra_pkgname", context.getPackageName());
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            Intent intent = SettingsIntentResolver.getIntent(context, SettingsIntentResolver.Target.OTHER_PERMISSIONS);
 
             // Try reflection method
             try {
@@ -159,8 +163,7 @@ public class MiuiAutoPermissionManager {
                 Log.w(TAG, "Reflection method failed for popup permission", e);
             }
 
-            context.startActivity(intent);
-            Log.d(TAG, "Popup permission settings opened");
+            startSettings(intent, null);
 
         } catch (Exception e) {
             Log.e(TAG, "Failed to open popup permission settings", e);
@@ -179,7 +182,7 @@ public class MiuiAutoPermissionManager {
                     Intent intent = new Intent(Settings.ACTION_MANAGE_WRITE_SETTINGS);
                     intent.setData(Uri.parse("package:" + context.getPackageName()));
                     intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                    context.startActivity(intent);
+                    startSettings(intent, null);
                 }
             }
 
@@ -207,7 +210,7 @@ public class MiuiAutoPermissionManager {
                     Intent intent = new Intent(Settings.ACTION_MANAGE_OVERLAY_PERMISSION);
                     intent.setData(Uri.parse("package:" + context.getPackageName()));
                     intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                    context.startActivity(intent);
+                    startSettings(intent, null);
                 }
             }
 
@@ -243,7 +246,7 @@ public class MiuiAutoPermissionManager {
             // Open developer options
             Intent intent = new Intent(Settings.ACTION_APPLICATION_DEVELOPMENT_SETTINGS);
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            context.startActivity(intent);
+            startSettings(intent, null);
 
         } catch (Exception e) {
             Log.e(TAG, "Failed to open developer options", e);
@@ -257,11 +260,7 @@ public class MiuiAutoPermissionManager {
         try {
             Log.d(TAG, "Attempting to enable display over other apps...");
 
-            Intent intent = new Intent();
-            intent.setComponent(new ComponentName("com.miui.securitycenter",
-                    "com.miui.permcenter.permissions.AppPermissionsEditorActivity"));
-            intent.putExtra("extra_pkgname", context.getPackageName());
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            Intent intent = SettingsIntentResolver.getIntent(context, SettingsIntentResolver.Target.APP_PERMISSIONS);
 
             // Try reflection method
             try {
@@ -270,7 +269,7 @@ public class MiuiAutoPermissionManager {
                 Log.w(TAG, "Reflection method failed for display over other apps", e);
             }
 
-            context.startActivity(intent);
+            startSettings(intent, null);
 
         } catch (Exception e) {
             Log.e(TAG, "Failed to configure display over other apps", e);
@@ -292,11 +291,8 @@ public class MiuiAutoPermissionManager {
             }
 
             // Open security center
-            Intent intent = new Intent();
-            intent.setComponent(new ComponentName("com.miui.securitycenter",
-                    "com.miui.securitycenter.MainActivity"));
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            context.startActivity(intent);
+            Intent intent = SettingsIntentResolver.getIntent(context, SettingsIntentResolver.Target.SECURITY_CENTER);
+            startSettings(intent, null);
 
         } catch (Exception e) {
             Log.e(TAG, "Failed to open security center", e);
@@ -358,28 +354,27 @@ public class MiuiAutoPermissionManager {
     }
 
     /**
-     * Open general app settings as fallback
+     * General app settings, the fallback when a specific screen can't be opened
      */
-    private void openAppSettings() {
-        try {
-            Intent intent = new Intent(Settings.ACTION_APPLICATION_DETAILS_SETTINGS);
-            intent.setData(Uri.parse("package:" + context.getPackageName()));
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            context.startActivity(intent);
-            Log.d(TAG, "App settings opened");
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to open app settings", e);
-        }
+    private Intent appSettingsIntent() {
+        Intent intent = new Intent(Settings.ACTION_APPLICATION_DETAILS_SETTINGS);
+        intent.setData(Uri.parse("package:" + context.getPackageName()));
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        return intent;
     }
 
     /**
-     * Check if device is MIUI
+     * Check if device is MIUI. The property lookup is reflection, so the answer is computed
+     * once (KioskApplication does it on the io pool at startup) and cached.
      */
     public static boolean isMiui() {
-        return Build.MANUFACTURER.equalsIgnoreCase("xiaomi") ||
-                Build.BRAND.equalsIgnoreCase("xiaomi") ||
-                Build.BRAND.equalsIgnoreCase("redmi") ||
-                hasProperty("ro.miui.ui.version.name");
+        Boolean miui = isMiui;
+        if (miui == null) {
+            miui = OemDetector.isXiaomiBrand(Build.MANUFACTURER, Build.BRAND) ||
+                    hasProperty("ro.miui.ui.version.name");
+            isMiui = miui;
+        }
+        return miui;
     }
 
     /**
@@ -448,7 +443,7 @@ public class MiuiAutoPermissionManager {
      * Show toast message to user
      */
     private void showToast(String message) {
-        handler.post(() -> Toast.makeText(context, message, Toast.LENGTH_LONG).show());
+        scope.post(() -> Toast.makeText(context, message, Toast.LENGTH_LONG).show());
     }
 
     /**
@@ -466,7 +461,7 @@ public class MiuiAutoPermissionManager {
         enableAllMiuiPermissions();
 
         // Show completion message after all permissions are processed
-        handler.postDelayed(() -> {
+        scope.postDelayed(() -> {
             showToast("MIUI permission configuration completed. Please restart your device to test auto-launch.");
             Log.d(TAG, "MIUI permission configuration process completed");
         }, 10000);
@@ -1,6 +1,5 @@
 package com.example.autolaunchwebview;
 
-import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
@@ -10,54 +9,19 @@ import android.util.Log;
 public class MiuiPermissionHelper {
     private static final String TAG = "MiuiPermissionHelper";
     public static void openAutostartSettings(Context context) {
-        try {
-            Intent intent = new Intent();
-            intent.setComponent(new ComponentName("com.miui.securitycenter",
-                    "com.miui.permcenter.autostart.AutoStartManagementActivity"));
-            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            context.startActivity(intent);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to open Autostart settings", e);
-            openAppSettings(context);
-        }
+        openSettings(context, SettingsIntentResolver.Target.AUTOSTART);
     }
 
     public static void openBatteryOptimizationSettings(Context context) {
-        try {
-            Intent intent = new Intent();
-            intent.setComponent(new ComponentName("com.miui.powerkeeper",
-                    "com.miui.powerkeeper.ui.HiddenAppsContainerManagementActivity"));
-            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            context.startActivity(intent);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to open Battery Optimization settings", e);
-            openAppSettings(context);
-        }
+        openSettings(context, SettingsIntentResolver.Target.BATTERY);
     }
 
     public static void openOtherPermissionsSettings(Context context) {
-        try {
-            Intent intent = new Intent();
-            intent.setComponent(new ComponentName("com.miui.securitycenter",
-                    "com.miui.permcenter.permissions.PermissionsEditorActivity"));
-            intent.putExtra("extra_pkgname", context.getPackageName());
-            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            context.startActivity(intent);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to open Other Permissions", e);
-            openAppSettings(context);
-        }
+        openSettings(context, SettingsIntentResolver.Target.OTHER_PERMISSIONS);
     }
 
     public static void openOverlayPermissionSettings(Context context) {
-        try {
-            Intent intent = new Intent("android.settings.action.MANAGE_OVERLAY_PERMISSION");
-            intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            context.startActivity(intent);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to open Overlay Permission settings", e);
-            openAppSettings(context);
-        }
+        openSettings(context, SettingsIntentResolver.Target.OVERLAY);
     }
 
     public static void openAppSettings(Context context) {
@@ -67,6 +31,15 @@ public class MiuiPermissionHelper {
         context.startActivity(intent);
     }
 
+    private static void openSettings(Context context, SettingsIntentResolver.Target target) {
+        try {
+            context.startActivity(SettingsIntentResolver.getIntent(context, target));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to open " + target + " settings", e);
+            openAppSettings(context);
+        }
+    }
+
     public static boolean isMiui() {
         String manufacturer = Build.MANUFACTURER;
         return !TextUtils.isEmpty(manufacturer) && manufacturer.toLowerCase().contains("xiaomi");
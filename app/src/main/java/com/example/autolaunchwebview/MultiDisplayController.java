@@ -0,0 +1,173 @@
+package com.example.autolaunchwebview;
+
+import android.app.Activity;
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseLongArray;
+import android.view.Display;
+import android.view.WindowManager;
+
+/**
+ * Multi-display mode: puts a SignagePresentation on every presentation display and follows
+ * hot-plug through DisplayManager, without restarting MainActivity.
+ */
+public class MultiDisplayController implements DisplayManager.DisplayListener {
+    private static final String TAG = "MultiDisplay";
+    // Let the first page settle before reading memory use
+    private static final long MEMORY_SETTLE_MS = 3000;
+
+    private final Activity activity;
+    private final DisplayManager displayManager;
+    private final SignagePresentation.Listener presentationListener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final SparseArray<SignagePresentation> presentations = new SparseArray<>();
+    // PSS before each presentation was created, to attribute the increase to it
+    private final SparseLongArray pssBeforeKb = new SparseLongArray();
+    // Displays whose baseline PSS is being read; Debug.getPss walks /proc and takes tens of ms
+    private final SparseBooleanArray starting = new SparseBooleanArray();
+    // Bumped by stop(), so reads that finish after it are dropped
+    private int generation;
+    private boolean started;
+
+    public MultiDisplayController(Activity activity, Runnable onUserActivity) {
+        this.activity = activity;
+        this.displayManager = (DisplayManager) activity.getSystemService(Context.DISPLAY_SERVICE);
+        this.presentationListener = new SignagePresentation.Listener() {
+            @Override
+            public void onUserActivity() {
+                onUserActivity.run();
+            }
+
+            @Override
+            public void onFirstPageFinished(SignagePresentation presentation) {
+                int displayId = presentation.getDisplay().getDisplayId();
+                handler.postDelayed(() -> measureMemory(displayId), MEMORY_SETTLE_MS);
+            }
+        };
+    }
+
+    public void start() {
+        if (started || displayManager == null) {
+            return;
+        }
+        started = true;
+        displayManager.registerDisplayListener(this, handler);
+        for (Display display : displayManager.getDisplays(DisplayManager.DISPLAY_CATEGORY_PRESENTATION)) {
+            show(display);
+        }
+    }
+
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        generation++;
+        displayManager.unregisterDisplayListener(this);
+        handler.removeCallbacksAndMessages(null);
+        for (int i = 0; i < presentations.size(); i++) {
+            presentations.valueAt(i).dismiss();
+        }
+        presentations.clear();
+        pssBeforeKb.clear();
+        starting.clear();
+        KioskStats.onPresentationCount(0);
+    }
+
+    @Override
+    public void onDisplayAdded(int displayId) {
+        Display display = displayManager.getDisplay(displayId);
+        if (display != null && (display.getFlags() & Display.FLAG_PRESENTATION) != 0) {
+            show(display);
+        }
+    }
+
+    @Override
+    public void onDisplayRemoved(int displayId) {
+        starting.delete(displayId);
+        SignagePresentation presentation = presentations.get(displayId);
+        if (presentation != null) {
+            // Usually already cancelled by the framework; dismiss is safe either way
+            presentation.dismiss();
+            presentations.remove(displayId);
+            pssBeforeKb.delete(displayId);
+            KioskStats.onPresentationCount(presentations.size());
+            Log.d(TAG, "Display " + displayId + " removed");
+        }
+    }
+
+    @Override
+    public void onDisplayChanged(int displayId) {
+        // Size and state changes are handled by the presentation's own window
+    }
+
+    private void show(Display display) {
+        int displayId = display.getDisplayId();
+        if (presentations.get(displayId) != null || starting.get(displayId)) {
+            return;
+        }
+        // Read the baseline before the presentation exists, off the main thread
+        starting.put(displayId, true);
+        int startGeneration = generation;
+        KioskExecutors.io().execute(() -> {
+            long pssKb = Debug.getPss();
+            handler.post(() -> {
+                if (generation != startGeneration || !starting.get(displayId)) {
+                    return;
+                }
+                starting.delete(displayId);
+                // The display may have gone while PSS was read
+                if (displayManager.getDisplay(displayId) != null) {
+                    pssBeforeKb.put(displayId, pssKb);
+                    showPresentation(display);
+                }
+            });
+        });
+    }
+
+    private void showPresentation(Display display) {
+        int displayId = display.getDisplayId();
+        String url = KioskConfig.getDisplayUrl(activity, display);
+        if (url == null) {
+            url = KioskWebViewClient.getHomeUrl(activity);
+        }
+        SignagePresentation presentation = new SignagePresentation(activity, display, url, presentationListener);
+        try {
+            presentation.show();
+        } catch (WindowManager.InvalidDisplayException e) {
+            Log.w(TAG, "Display " + displayId + " went away before the presentation was shown", e);
+            pssBeforeKb.delete(displayId);
+            return;
+        }
+        presentations.put(displayId, presentation);
+        KioskStats.onPresentationCount(presentations.size());
+        Log.d(TAG, "Showing " + url + " on display " + displayId + " (" + display.getName() + ")");
+    }
+
+    private void measureMemory(int displayId) {
+        int index = pssBeforeKb.indexOfKey(displayId);
+        if (index < 0 || presentations.get(displayId) == null) {
+            return;
+        }
+        long beforeKb = pssBeforeKb.valueAt(index);
+        pssBeforeKb.removeAt(index);
+        int measureGeneration = generation;
+        KioskExecutors.io().execute(() -> {
+            // Covers this process only; the WebView renderer runs in its own process
+            long deltaKb = Debug.getPss() - beforeKb;
+            handler.post(() -> {
+                if (generation != measureGeneration || presentations.get(displayId) == null) {
+                    return;
+                }
+                KioskStats.onPresentationMemory(deltaKb);
+                Log.d(TAG, "Display " + displayId + " costs ~" + deltaKb + " KB PSS in the app process");
+            });
+        });
+    }
+}
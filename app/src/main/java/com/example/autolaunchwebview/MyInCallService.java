@@ -1,6 +1,5 @@
 package com.example.autolaunchwebview;
 
-import android.content.Intent;
 import android.telecom.Call;
 import android.telecom.InCallService;
 
@@ -8,9 +7,8 @@ public class MyInCallService extends InCallService {
     @Override
     public void onCallAdded(Call call) {
         super.onCallAdded(call);
-        Intent intent = new Intent(this, MainActivity.class);
-        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-        startActivity(intent);
+        EventJournal.open(this);
+        LaunchCoordinator.requestLaunch(this, KioskStats.Trigger.INCOMING_CALL);
     }
 }
 
@@ -5,76 +5,95 @@ import android.content.Context;
 import android.content.Intent;
 import android.graphics.PixelFormat;
 import android.os.Build;
-import android.os.Handler;
-import android.os.Looper;
 import android.provider.Settings;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.View;
 import android.view.WindowManager;
 
+import com.example.autolaunchwebview.watchdog.LaunchStrategyOrder;
+import com.example.autolaunchwebview.watchdog.OemDetector;
+
 import java.util.List;
 
 public class OverlayLauncher {
     private static final String TAG = "OverlayLauncher";
 
-    public static void launchWithOverlay(Context context) {
-        Log.d(TAG, "Starting overlay launch process...");
-
-        // Try multiple launch strategies
-        boolean success = false;
-
-        // Strategy 1: Direct launch (works on most devices)
-        if (!success) {
-            success = tryDirectLaunch(context);
-        }
+    // Strategy ids recorded in KioskStats and the event journal
+    public static final int STRATEGY_DIRECT = LaunchStrategyOrder.DIRECT;
+    public static final int STRATEGY_OVERLAY = LaunchStrategyOrder.OVERLAY;
+    public static final int STRATEGY_BRING_TO_FRONT = LaunchStrategyOrder.BRING_TO_FRONT;
+    public static final int STRATEGY_FORCE = LaunchStrategyOrder.FORCE;
+    public static final int STRATEGY_LAUNCH_ACTIVITY = LaunchStrategyOrder.LAUNCH_ACTIVITY;
+    public static final String[] STRATEGY_NAMES = {
+            "none", "direct", "overlay", "bring_to_front", "force", "launch_activity"
+    };
 
-        // Strategy 2: Overlay launch (for system restrictions)
-        if (!success && canUseOverlay(context)) {
-            success = tryOverlayLaunch(context);
-        }
+    // Process-wide: overlay steps only hold the application context
+    private static final TaskScope scope = new TaskScope("OverlayLauncher");
 
-        // Strategy 3: Bring existing task to front
-        if (!success) {
-            success = tryBringToFront(context);
+    public static void launchWithOverlay(Context context) {
+        // Try each strategy in LaunchStrategyOrder until one succeeds
+        for (int strategy = LaunchStrategyOrder.first(); strategy != LaunchStrategyOrder.NONE;
+             strategy = LaunchStrategyOrder.next(strategy)) {
+            if (LaunchStrategyOrder.needsOverlayPermission(strategy) && !canUseOverlay(context)) {
+                continue;
+            }
+            if (tryStrategy(context, strategy)) {
+                return;
+            }
         }
+    }
 
-        // Strategy 4: Force launch with different flags
-        if (!success) {
-            success = tryForceLaunch(context);
+    private static boolean tryStrategy(Context context, int strategy) {
+        // Every strategy ends in at least one startActivity or WindowManager call
+        PowerAccounting.onBinder(PowerAccounting.SUBSYSTEM_LAUNCH);
+        switch (strategy) {
+            case STRATEGY_DIRECT:
+                // Works on most devices
+                return tryDirectLaunch(context);
+            case STRATEGY_OVERLAY:
+                // For system restrictions on background starts
+                return tryOverlayLaunch(context);
+            case STRATEGY_BRING_TO_FRONT:
+                return tryBringToFront(context);
+            case STRATEGY_FORCE:
+                // Different flags
+                return tryForceLaunch(context);
+            default:
+                return false;
         }
-
-        Log.d(TAG, "Launch attempt completed. Success: " + success);
     }
 
     private static boolean tryDirectLaunch(Context context) {
         try {
-            Log.d(TAG, "Attempting direct launch...");
             Intent intent = new Intent(context, MainActivity.class);
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK |
                     Intent.FLAG_ACTIVITY_CLEAR_TOP |
                     Intent.FLAG_ACTIVITY_SINGLE_TOP |
                     Intent.FLAG_ACTIVITY_REORDER_TO_FRONT);
             context.startActivity(intent);
-            Log.d(TAG, "Direct launch successful");
+            KioskStats.onLaunchStrategy(STRATEGY_DIRECT, true);
             return true;
         } catch (Exception e) {
             Log.e(TAG, "Direct launch failed", e);
+            KioskStats.onLaunchStrategy(STRATEGY_DIRECT, false);
             return false;
         }
     }
 
     private static boolean tryOverlayLaunch(Context context) {
         try {
-            Log.d(TAG, "Attempting overlay launch...");
-            WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+            // The steps below outlive this call; give them nothing that pins an activity
+            Context appContext = context.getApplicationContext();
+            WindowManager wm = (WindowManager) appContext.getSystemService(Context.WINDOW_SERVICE);
             if (wm == null) {
                 Log.e(TAG, "WindowManager is null");
                 return false;
             }
 
             // Create minimal overlay view
-            View overlayView = new View(context);
+            View overlayView = new View(appContext);
 
             // Use appropriate window type based on Android version
             int windowType;
@@ -98,43 +117,7 @@ public class OverlayLauncher {
             params.y = 0;
 
             // Add overlay with delay for MIUI
-            Handler handler = new Handler(Looper.getMainLooper());
-            handler.postDelayed(() -> {
-                try {
-                    wm.addView(overlayView, params);
-                    Log.d(TAG, "Overlay added successfully");
-
-                    // Launch activity after overlay is added
-                    handler.postDelayed(() -> {
-                        Intent intent = new Intent(context, MainActivity.class);
-                        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK |
-                                Intent.FLAG_ACTIVITY_CLEAR_TOP);
-                        try {
-                            context.startActivity(intent);
-                            Log.d(TAG, "Activity launched from overlay");
-                        } catch (Exception e) {
-                            Log.e(TAG, "Failed to launch activity from overlay", e);
-                        }
-
-                        // Remove overlay after launch
-                        handler.postDelayed(() -> {
-                            try {
-                                wm.removeView(overlayView);
-                                Log.d(TAG, "Overlay removed");
-                            } catch (Exception e) {
-                                Log.e(TAG, "Failed to remove overlay", e);
-                            }
-                        }, 1000);
-                    }, 100);
-
-                } catch (Exception e) {
-                    Log.e(TAG, "Failed to add overlay view", e);
-                    // This is where the MIUI NPE might occur - catch and ignore
-                    if (e.getMessage() != null && e.getMessage().contains("null object reference")) {
-                        Log.w(TAG, "MIUI system error detected - continuing with fallback");
-                    }
-                }
-            }, isMIUI() ? 500 : 100); // Longer delay for MIUI
+            scope.postDelayed(() -> addOverlay(appContext, wm, overlayView, params), isMIUI() ? 500 : 100);
 
             return true;
         } catch (Exception e) {
@@ -143,9 +126,46 @@ public class OverlayLauncher {
         }
     }
 
+    private static void addOverlay(Context appContext, WindowManager wm, View overlayView,
+                                   WindowManager.LayoutParams params) {
+        try {
+            wm.addView(overlayView, params);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to add overlay view", e);
+            // This is where the MIUI NPE might occur - catch and ignore
+            if (e.getMessage() != null && e.getMessage().contains("null object reference")) {
+                Log.w(TAG, "MIUI system error detected - continuing with fallback");
+            }
+            return;
+        }
+        // Launch activity after overlay is added
+        scope.postDelayed(() -> launchFromOverlay(appContext, wm, overlayView), 100);
+    }
+
+    private static void launchFromOverlay(Context appContext, WindowManager wm, View overlayView) {
+        Intent intent = new Intent(appContext, MainActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK |
+                Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        try {
+            appContext.startActivity(intent);
+            KioskStats.onLaunchStrategy(STRATEGY_OVERLAY, true);
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to launch activity from overlay", e);
+            KioskStats.onLaunchStrategy(STRATEGY_OVERLAY, false);
+        }
+
+        // Remove overlay after launch
+        scope.postDelayed(() -> {
+            try {
+                wm.removeView(overlayView);
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to remove overlay", e);
+            }
+        }, 1000);
+    }
+
     private static boolean tryBringToFront(Context context) {
         try {
-            Log.d(TAG, "Attempting to bring existing task to front...");
             ActivityManager am = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
             if (am == null) return false;
 
@@ -157,7 +177,7 @@ public class OverlayLauncher {
                         String packageName = taskInfo.baseIntent.getComponent().getPackageName();
                         if (context.getPackageName().equals(packageName)) {
                             task.moveToFront();
-                            Log.d(TAG, "Task moved to front successfully");
+                            KioskStats.onLaunchStrategy(STRATEGY_BRING_TO_FRONT, true);
                             return true;
                         }
                     }
@@ -174,32 +194,29 @@ public class OverlayLauncher {
 
     private static boolean tryForceLaunch(Context context) {
         try {
-            Log.d(TAG, "Attempting force launch...");
             Intent intent = new Intent(context, LaunchActivity.class);
             intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK |
                     Intent.FLAG_ACTIVITY_CLEAR_TASK |
                     Intent.FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS);
             context.startActivity(intent);
-            Log.d(TAG, "Force launch successful");
+            KioskStats.onLaunchStrategy(STRATEGY_FORCE, true);
             return true;
         } catch (Exception e) {
             Log.e(TAG, "Force launch failed", e);
+            KioskStats.onLaunchStrategy(STRATEGY_FORCE, false);
             return false;
         }
     }
 
     private static boolean canUseOverlay(Context context) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            boolean canDraw = Settings.canDrawOverlays(context);
-            Log.d(TAG, "Overlay permission: " + canDraw);
-            return canDraw;
+            PowerAccounting.onBinder(PowerAccounting.SUBSYSTEM_LAUNCH);
+            return Settings.canDrawOverlays(context);
         }
         return true;
     }
 
     private static boolean isMIUI() {
-        return Build.MANUFACTURER.equalsIgnoreCase("xiaomi") ||
-                Build.BRAND.equalsIgnoreCase("xiaomi") ||
-                Build.BRAND.equalsIgnoreCase("redmi");
+        return OemDetector.isXiaomiBrand(Build.MANUFACTURER, Build.BRAND);
     }
 }
\ No newline at end of file
@@ -0,0 +1,218 @@
+package com.example.autolaunchwebview;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.webkit.WebMessage;
+import android.webkit.WebMessagePort;
+import android.webkit.WebView;
+
+/**
+ * WebMessagePort channel between the kiosk page and the app.
+ * The page sends compact batches, one message per flush, each line being one record:
+ *   a<n>     n activity events (keys, pointer, scroll, input) since the last batch
+ *   s1 / s0  page is busy (e.g. media playing) / idle again
+ *   e<name>  analytics event
+ *   w<url>   asset whose server-side changes should reload the page (RefreshScheduler)
+ * A small shim is injected after each load so pages get this for free; pages can also
+ * call window.kioskBridge.activity() / .busy(bool) / .event(name) / .watch(url) themselves.
+ * The shim also watches every &lt;link rel="kiosk-watch" href="..."&gt; in the document.
+ * The app calls window.kioskBridge.quiet() before changing the page itself (scrolling it to the
+ * top on a soft reset), so that doesn't come back as visitor activity.
+ * The other way, t<step> tells the page how hot the device is (ThermalGovernor, 0 = normal):
+ * the shim sets data-kiosk-thermal on the root element and fires a kioskthermal event, so
+ * pages can cut animations and frame rate.
+ */
+public class PageBridge {
+    private static final String TAG = "PageBridge";
+    private static final String INIT_MESSAGE = "kiosk-bridge-init";
+
+    public interface Listener {
+        void onPageActivity(int count);
+
+        void onPageBusy(boolean busy);
+
+        void onPageEvent(String name);
+
+        void onPageWatch(String url);
+    }
+
+    private static final String SHIM = "(function(){" +
+            "if(window.kioskBridge&&window.kioskBridge._port)return 'attached';" +
+            "var b=window.kioskBridge=window.kioskBridge||{};" +
+            "var n=0,busy=null,sent=null,ev=[],w=[],t=null,q=false;" +
+            "function flush(){t=null;if(!b._port)return;var m=[];" +
+            "if(n>0){m.push('a'+n);n=0;}" +
+            "if(busy!==null&&busy!==sent){m.push(busy?'s1':'s0');sent=busy;}" +
+            "for(var i=0;i<ev.length;i++)m.push('e'+ev[i]);ev=[];" +
+            "for(var j=0;j<w.length;j++)m.push('w'+w[j]);w=[];" +
+            "if(m.length)b._port.postMessage(m.join('\\n'));}" +
+            "function later(){if(!t)t=setTimeout(flush,1000);}" +
+            "b.activity=function(){if(!q){n++;later();}};" +
+            // Drop unsent activity and ignore what the app's own changes cause this frame
+            // (scroll events are dispatched before the next animation frame callbacks)
+            "b.quiet=function(){n=0;q=true;requestAnimationFrame(function(){setTimeout(function(){q=false;},0);});};" +
+            "b.busy=function(v){busy=!!v;later();};" +
+            "b.event=function(name){ev.push(String(name).replace(/\\n/g,' '));later();};" +
+            "b.watch=function(url){w.push(new URL(url,location.href).href);later();};" +
+            "document.querySelectorAll('link[rel~=kiosk-watch][href]').forEach(function(l){b.watch(l.href);});" +
+            "['keydown','input','wheel','pointerdown','scroll'].forEach(function(e){" +
+            "document.addEventListener(e,b.activity,{capture:true,passive:true});});" +
+            "function media(){var p=false;document.querySelectorAll('video,audio').forEach(function(el){" +
+            "if(!el.paused&&!el.ended)p=true;});b.busy(p);}" +
+            "['playing','pause','ended'].forEach(function(e){document.addEventListener(e,media,true);});" +
+            // Only the app's own init message counts, and only the first: postWebMessage delivers
+            // it with no source window and an empty origin, which no frame can forge
+            "window.addEventListener('message',function(e){" +
+            "if(b._port||e.source!==null||e.origin!==''||e.data!=='" + INIT_MESSAGE + "'" +
+            "||!e.ports||e.ports.length!==1)return;b._port=e.ports[0];" +
+            "b._port.onmessage=function(m){var d=m.data;" +
+            "if(typeof d==='string'&&d.charAt(0)==='t'){b.thermal=+d.substring(1);" +
+            "document.documentElement.setAttribute('data-kiosk-thermal',b.thermal);" +
+            "window.dispatchEvent(new CustomEvent('kioskthermal',{detail:b.thermal}));return;}" +
+            "if(b.onmessage)b.onmessage(d);};media();later();});" +
+            "})();";
+
+    private final WebView webView;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private WebMessagePort[] ports;
+    private int thermalStep;
+
+    public PageBridge(WebView webView, Listener listener) {
+        this.webView = webView;
+        this.listener = listener;
+    }
+
+    /**
+     * Inject the shim and hand the page a fresh port; call once per finished page load. A
+     * document that already holds a port keeps it, since the shim accepts only the first.
+     */
+    public void attach() {
+        Uri origin = originOf(webView.getUrl());
+        if (origin == null) {
+            detach();
+            // Only web pages get the bridge; a wildcard target would hand the port to whatever
+            // document is current when the message is delivered
+            Log.d(TAG, "No web origin for " + webView.getUrl() + ", bridge not attached");
+            return;
+        }
+        webView.evaluateJavascript(SHIM, result -> {
+            if ("\"attached\"".equals(result) && ports != null) {
+                // Same document finished again (e.g. a fragment navigation)
+                return;
+            }
+            detach();
+            try {
+                ports = webView.createWebMessageChannel();
+                ports[0].setWebMessageCallback(new WebMessagePort.WebMessageCallback() {
+                    @Override
+                    public void onMessage(WebMessagePort port, WebMessage message) {
+                        handleBatch(message.getData());
+                    }
+                }, handler);
+                // Dropped if the page navigated to another origin meanwhile
+                webView.postWebMessage(new WebMessage(INIT_MESSAGE, new WebMessagePort[]{ports[1]}), origin);
+                if (thermalStep > 0) {
+                    post("t" + thermalStep);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to open page bridge", e);
+            }
+        });
+    }
+
+    /**
+     * Send a message to the page (delivered to window.kioskBridge.onmessage)
+     */
+    public void post(String message) {
+        if (ports != null) {
+            try {
+                ports[0].postMessage(new WebMessage(message));
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to post to page", e);
+            }
+        }
+    }
+
+    /**
+     * Tell the page the current thermal step, now and after every later attach
+     */
+    public void setThermalStep(int step) {
+        if (step != thermalStep) {
+            thermalStep = step;
+            post("t" + step);
+        }
+    }
+
+    /**
+     * scheme://host[:port] of an http(s) URL, or null
+     */
+    static Uri originOf(String url) {
+        if (url == null) {
+            return null;
+        }
+        Uri uri = Uri.parse(url);
+        String scheme = uri.getScheme();
+        if (!("https".equals(scheme) || "http".equals(scheme)) || uri.getAuthority() == null) {
+            return null;
+        }
+        return Uri.parse(scheme + "://" + uri.getAuthority());
+    }
+
+    public void detach() {
+        if (ports != null) {
+            for (WebMessagePort port : ports) {
+                try {
+                    port.close();
+                } catch (Exception e) {
+                    // Already closed or transferred
+                }
+            }
+            ports = null;
+        }
+    }
+
+    private void handleBatch(String batch) {
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+        KioskStats.onBridgeBatch();
+        int start = 0;
+        while (start < batch.length()) {
+            int end = batch.indexOf('\n', start);
+            if (end < 0) {
+                end = batch.length();
+            }
+            if (end > start) {
+                handleRecord(batch, start, end);
+            }
+            start = end + 1;
+        }
+    }
+
+    private void handleRecord(String batch, int start, int end) {
+        char type = batch.charAt(start);
+        try {
+            switch (type) {
+                case 'a':
+                    listener.onPageActivity(Integer.parseInt(batch.substring(start + 1, end)));
+                    break;
+                case 's':
+                    listener.onPageBusy(end > start + 1 && batch.charAt(start + 1) == '1');
+                    break;
+                case 'e':
+                    listener.onPageEvent(batch.substring(start + 1, end));
+                    break;
+                case 'w':
+                    listener.onPageWatch(batch.substring(start + 1, end));
+                    break;
+                default:
+                    Log.w(TAG, "Unknown bridge record: " + type);
+            }
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Malformed bridge record", e);
+        }
+    }
+}
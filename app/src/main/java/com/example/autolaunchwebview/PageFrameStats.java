@@ -0,0 +1,118 @@
+package com.example.autolaunchwebview;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Frame times, janky frames and touch-to-frame latency of MainActivity's window, per page.
+ * Pages are keyed by URL without query or fragment and kept in PAGES fixed slots; when a new
+ * page needs a slot, the one shown least recently is cleared and reused. All histograms are
+ * allocated up front, so recording never allocates.
+ */
+public class PageFrameStats {
+    public static final int PAGES = 8;
+    // Keeps odd URLs (data:, long paths) from blowing up metric labels
+    private static final int MAX_PAGE_LENGTH = 120;
+    // 700 ms is where Android vitals calls a frame frozen
+    private static final long[] FRAME_BOUNDS_MS = {8, 12, 16, 24, 33, 50, 100, 250, 700};
+    private static final long[] INPUT_BOUNDS_MS = {16, 33, 50, 75, 100, 150, 250, 500, 1000};
+
+    private static final String[] pages = new String[PAGES];
+    private static final long[] lastShown = new long[PAGES];
+    private static final LatencyHistogram[] frameTimes = new LatencyHistogram[PAGES];
+    private static final LatencyHistogram[] inputLatency = new LatencyHistogram[PAGES];
+    private static final AtomicLongArray jankyFrames = new AtomicLongArray(PAGES);
+    private static long pageSwitches;
+    // Slot frames are recorded into, -1 before the first page. A frame that races a slot being
+    // reused may land in the new page; that is one frame and not worth a lock per frame.
+    private static volatile int current = -1;
+
+    static {
+        for (int i = 0; i < PAGES; i++) {
+            frameTimes[i] = new LatencyHistogram(FRAME_BOUNDS_MS);
+            inputLatency[i] = new LatencyHistogram(INPUT_BOUNDS_MS);
+        }
+    }
+
+    /**
+     * Attribute frames and touches to url from now on
+     */
+    public static synchronized void setPage(String url) {
+        String page = pageKey(url);
+        int slot = -1;
+        int free = -1;
+        int oldest = 0;
+        for (int i = 0; i < PAGES; i++) {
+            if (page.equals(pages[i])) {
+                slot = i;
+                break;
+            }
+            if (pages[i] == null) {
+                if (free < 0) {
+                    free = i;
+                }
+            } else if (lastShown[i] < lastShown[oldest]) {
+                oldest = i;
+            }
+        }
+        if (slot < 0) {
+            slot = free >= 0 ? free : oldest;
+            pages[slot] = page;
+            frameTimes[slot].reset();
+            inputLatency[slot].reset();
+            jankyFrames.set(slot, 0);
+        }
+        lastShown[slot] = ++pageSwitches;
+        current = slot;
+    }
+
+    static String pageKey(String url) {
+        int end = url.length();
+        int query = url.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = url.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        return url.substring(0, Math.min(end, MAX_PAGE_LENGTH));
+    }
+
+    public static void onFrame(long durationNs, boolean janky) {
+        int slot = current;
+        if (slot < 0) {
+            return;
+        }
+        // Round up: a 16.9 ms frame missed a 60 Hz vsync and must not land in the 16 ms bucket
+        frameTimes[slot].record((durationNs + 999_999) / 1_000_000);
+        if (janky) {
+            jankyFrames.incrementAndGet(slot);
+        }
+    }
+
+    public static void onInputLatency(long latencyMs) {
+        int slot = current;
+        if (slot >= 0) {
+            inputLatency[slot].record(latencyMs);
+        }
+    }
+
+    /**
+     * The page in slot, or null if the slot is unused
+     */
+    public static synchronized String getPage(int slot) {
+        return pages[slot];
+    }
+
+    public static LatencyHistogram getFrameTimes(int slot) {
+        return frameTimes[slot];
+    }
+
+    public static long getJankyFrames(int slot) {
+        return jankyFrames.get(slot);
+    }
+
+    public static LatencyHistogram getInputLatency(int slot) {
+        return inputLatency[slot];
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.autolaunchwebview;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts what the kiosk's own code does that can wake or keep awake the CPU or radio: timer
+ * dispatches, alarms, wake-lock time, binder calls and network exchanges, per subsystem.
+ * Counts go into lifetime totals and into HOURS hourly buckets, both fixed arrays, so recording
+ * is a couple of atomic increments. Energy is an estimate from per-event costs (ENERGY_UJ);
+ * it is meant for comparing builds and hours, not as a battery reading.
+ */
+public class PowerAccounting {
+    public static final int SUBSYSTEM_WATCHDOG = 0;
+    public static final int SUBSYSTEM_INACTIVITY = 1;
+    public static final int SUBSYSTEM_LAUNCH = 2;
+    public static final int SUBSYSTEM_VISUAL = 3;
+    public static final int SUBSYSTEM_SCHEDULE = 4;
+    public static final int SUBSYSTEM_COMMANDS = 5;
+    public static final int SUBSYSTEM_CONTENT = 6;
+    public static final String[] SUBSYSTEM_NAMES = {
+            "watchdog", "inactivity", "launch", "visual", "schedule", "commands", "content"
+    };
+
+    // Timer-driven Handler or KioskExecutors dispatches; work driven by touch or page events
+    // runs while the CPU is awake anyway and isn't counted
+    public static final int KIND_DISPATCH = 0;
+    public static final int KIND_ALARM = 1;
+    // Counted in milliseconds held. The app takes no wake locks today, so this stays zero
+    // unless one is added
+    public static final int KIND_WAKE_LOCK_MS = 2;
+    public static final int KIND_BINDER = 3;
+    public static final int KIND_NETWORK = 4;
+    public static final String[] KIND_NAMES = {"dispatch", "alarm", "wakelock_ms", "binder", "network"};
+
+    // Rough microjoules per event (per ms for wake locks) on a mid-range ARM tablet: a short
+    // CPU wake, a wake from suspend, ~150 mW held awake, a binder round trip, a Wi-Fi exchange
+    // including its tail. Calibrate against a power monitor before quoting absolute numbers.
+    private static final long[] ENERGY_UJ = {500, 5_000, 150, 100, 30_000};
+
+    public static final int HOURS = 24;
+    private static final long HOUR_MS = 3_600_000;
+    private static final int SUBSYSTEMS = SUBSYSTEM_NAMES.length;
+    private static final int KINDS = KIND_NAMES.length;
+    private static final int CELLS = SUBSYSTEMS * KINDS;
+
+    private static final AtomicLongArray totals = new AtomicLongArray(CELLS);
+    private static final AtomicLongArray hourly = new AtomicLongArray(HOURS * CELLS);
+    // Which hour (elapsedRealtime / HOUR_MS) each bucket currently holds
+    private static final AtomicLongArray bucketHours = new AtomicLongArray(HOURS);
+
+    static {
+        for (int i = 0; i < HOURS; i++) {
+            bucketHours.set(i, -1);
+        }
+    }
+
+    public static void onDispatch(int subsystem) {
+        record(subsystem, KIND_DISPATCH, 1);
+    }
+
+    public static void onAlarm(int subsystem) {
+        record(subsystem, KIND_ALARM, 1);
+    }
+
+    public static void onWakeLockHeld(int subsystem, long heldMs) {
+        record(subsystem, KIND_WAKE_LOCK_MS, heldMs);
+    }
+
+    public static void onBinder(int subsystem) {
+        record(subsystem, KIND_BINDER, 1);
+    }
+
+    public static void onNetwork(int subsystem) {
+        record(subsystem, KIND_NETWORK, 1);
+    }
+
+    private static void record(int subsystem, int kind, long amount) {
+        int cell = subsystem * KINDS + kind;
+        totals.addAndGet(cell, amount);
+        hourly.addAndGet(bucket(SystemClock.elapsedRealtime() / HOUR_MS) * CELLS + cell, amount);
+    }
+
+    /**
+     * The bucket for hour, cleared first if it still holds an older hour. Only the first
+     * record of each hour takes the lock.
+     */
+    private static int bucket(long hour) {
+        int bucket = (int) (hour % HOURS);
+        if (bucketHours.get(bucket) != hour) {
+            synchronized (PowerAccounting.class) {
+                if (bucketHours.get(bucket) != hour) {
+                    for (int i = 0; i < CELLS; i++) {
+                        hourly.set(bucket * CELLS + i, 0);
+                    }
+                    bucketHours.set(bucket, hour);
+                }
+            }
+        }
+        return bucket;
+    }
+
+    public static long getCount(int subsystem, int kind) {
+        return totals.get(subsystem * KINDS + kind);
+    }
+
+    /**
+     * Estimated energy since the process started
+     */
+    public static long getEnergyMicrojoules(int subsystem) {
+        long energy = 0;
+        for (int kind = 0; kind < KINDS; kind++) {
+            energy += getCount(subsystem, kind) * ENERGY_UJ[kind];
+        }
+        return energy;
+    }
+
+    public static long getTotalEnergyMicrojoules() {
+        long energy = 0;
+        for (int subsystem = 0; subsystem < SUBSYSTEMS; subsystem++) {
+            energy += getEnergyMicrojoules(subsystem);
+        }
+        return energy;
+    }
+
+    /**
+     * Estimated energy per hour for the last HOURS hours, oldest first, the current (partial)
+     * hour last; hours with no records are 0. Pass subsystem -1 for all subsystems.
+     */
+    public static void getHourlyEnergyMicrojoules(int subsystem, long[] out) {
+        long current = SystemClock.elapsedRealtime() / HOUR_MS;
+        int n = Math.min(HOURS, out.length);
+        for (int i = 0; i < n; i++) {
+            long hour = current - (n - 1 - i);
+            int bucket = (int) (hour % HOURS);
+            out[i] = 0;
+            if (hour < 0 || bucketHours.get(bucket) != hour) {
+                continue;
+            }
+            for (int s = 0; s < SUBSYSTEMS; s++) {
+                if (subsystem >= 0 && s != subsystem) {
+                    continue;
+                }
+                for (int kind = 0; kind < KINDS; kind++) {
+                    out[i] += hourly.get(bucket * CELLS + s * KINDS + kind) * ENERGY_UJ[kind];
+                }
+            }
+        }
+    }
+}
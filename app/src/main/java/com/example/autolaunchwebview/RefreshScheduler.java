@@ -0,0 +1,273 @@
+package com.example.autolaunchwebview;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.webkit.WebViewAssetLoader;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Finds out whether the shown page changed on the server without reloading it. Every
+ * configured interval (stretched while ThermalGovernor throttles) the main document and any
+ * assets the page declared (see PageBridge) get a conditional HEAD request with the ETag and
+ * Last-Modified from the previous check. Unchanged content costs a 304 of a few hundred bytes
+ * and nothing else; only a real change reaches the listener. The first check of each URL just
+ * records its validators. Content served from the local bundle is never checked. Declared assets
+ * must be same-origin with the document, so a page can't make the kiosk poll other servers with
+ * its cookies. Runs on the owning activity's TaskScope, so nothing is left scheduled after it
+ * is destroyed.
+ */
+public class RefreshScheduler {
+    private static final String TAG = "RefreshScheduler";
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+    private static final int READ_TIMEOUT_MS = 15_000;
+    // Baseline new URLs shortly after the page declared them, not a whole interval later
+    private static final long BASELINE_DELAY_MS = 5_000;
+    // Each watched URL is one request per check
+    private static final int MAX_WATCHED = 16;
+    // Request line and the headers HttpURLConnection always sends, for the traffic estimate
+    private static final int REQUEST_OVERHEAD_BYTES = 160;
+    private static final String BUNDLE_ORIGIN = "https://" + WebViewAssetLoader.DEFAULT_DOMAIN + "/";
+
+    public interface Listener {
+        /**
+         * Something the page shows changed on the server; assetsChanged if a declared asset did,
+         * not only the document. Called on the main thread.
+         */
+        void onContentChanged(boolean assetsChanged);
+    }
+
+    private static final class Entry {
+        final String url;
+        final boolean asset;
+        // Validators from the last response; only touched by the check running on io()
+        String etag;
+        String lastModified;
+        boolean baselined;
+        boolean warnedUnverifiable;
+
+        Entry(String url, boolean asset) {
+            this.url = url;
+            this.asset = asset;
+        }
+    }
+
+    private final Context context;
+    private final TaskScope scope;
+    private final Listener listener;
+    private final Runnable checkRunnable = () -> check(false);
+    private final Runnable baselineRunnable = () -> check(true);
+    private final List<Entry> entries = new ArrayList<>();
+    private long intervalMs;
+    private boolean running;
+    private boolean checking;
+    // Bumped when the page changes, so a check of the previous page reports nothing
+    private int generation;
+
+    public RefreshScheduler(Context context, TaskScope scope, Listener listener) {
+        this.context = context;
+        this.scope = scope;
+        this.listener = listener;
+    }
+
+    /**
+     * Begin checking at the configured interval; no-op when refresh is off
+     */
+    public void start() {
+        intervalMs = KioskConfig.getRefreshIntervalMinutes(context) * 60_000L;
+        if (running || intervalMs <= 0) {
+            return;
+        }
+        running = true;
+        scope.postDelayed(checkRunnable, intervalMs * ThermalGovernor.get(context).getStretchFactor());
+        scope.postDelayed(baselineRunnable, BASELINE_DELAY_MS);
+    }
+
+    public void stop() {
+        running = false;
+        scope.remove(checkRunnable);
+        scope.remove(baselineRunnable);
+    }
+
+    /**
+     * The visible page finished loading url; watch it instead of the previous page
+     */
+    public void setPage(String url) {
+        if (!entries.isEmpty() && entries.get(0).url.equals(url)) {
+            return;
+        }
+        entries.clear();
+        generation++;
+        if (isWatchable(url)) {
+            entries.add(new Entry(url, false));
+            scheduleBaseline();
+        }
+    }
+
+    /**
+     * The page declared an asset whose changes should reload it; ignored unless it has the
+     * page's origin
+     */
+    public void watch(String url) {
+        if (entries.isEmpty() || entries.size() >= MAX_WATCHED || !isWatchable(url)) {
+            return;
+        }
+        Uri origin = PageBridge.originOf(url);
+        if (origin == null || !origin.equals(PageBridge.originOf(entries.get(0).url))) {
+            Log.w(TAG, "Not watching cross-origin " + url);
+            return;
+        }
+        for (Entry entry : entries) {
+            if (entry.url.equals(url)) {
+                return;
+            }
+        }
+        entries.add(new Entry(url, true));
+        scheduleBaseline();
+    }
+
+    static boolean isWatchable(String url) {
+        return (url.startsWith("https://") || url.startsWith("http://")) && !url.startsWith(BUNDLE_ORIGIN);
+    }
+
+    private void scheduleBaseline() {
+        if (running) {
+            scope.postDelayed(baselineRunnable, BASELINE_DELAY_MS);
+        }
+    }
+
+    private void check(boolean baselineOnly) {
+        PowerAccounting.onDispatch(PowerAccounting.SUBSYSTEM_CONTENT);
+        if (!running) {
+            return;
+        }
+        if (!baselineOnly) {
+            scope.postDelayed(checkRunnable, intervalMs * ThermalGovernor.get(context).getStretchFactor());
+        }
+        if (checking) {
+            if (baselineOnly) {
+                scheduleBaseline();
+            }
+            return;
+        }
+        List<Entry> due = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            // Whether the io task already set baselined is only read after it posted back
+            if (!baselineOnly || !entry.baselined) {
+                due.add(entry);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+        checking = true;
+        int checkedGeneration = generation;
+        scope.submit(KioskExecutors.io(), () -> {
+            boolean documentChanged = false;
+            boolean assetsChanged = false;
+            for (Entry entry : due) {
+                if (revalidate(entry)) {
+                    if (entry.asset) {
+                        assetsChanged = true;
+                    } else {
+                        documentChanged = true;
+                    }
+                }
+            }
+            boolean anyChanged = documentChanged || assetsChanged;
+            boolean assets = assetsChanged;
+            scope.post(() -> {
+                checking = false;
+                if (running && anyChanged && checkedGeneration == generation) {
+                    listener.onContentChanged(assets);
+                }
+            });
+        });
+    }
+
+    /**
+     * Conditional HEAD for entry; true if it changed since its last check
+     */
+    private static boolean revalidate(Entry entry) {
+        PowerAccounting.onNetwork(PowerAccounting.SUBSYSTEM_CONTENT);
+        long bytes = REQUEST_OVERHEAD_BYTES + entry.url.length();
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(entry.url).openConnection();
+            connection.setRequestMethod("HEAD");
+            connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            connection.setReadTimeout(READ_TIMEOUT_MS);
+            connection.setUseCaches(false);
+            // Same session as the page, so personalised or protected pages answer the same way
+            String cookies = SessionIsolation.getCookieManager().getCookie(entry.url);
+            if (cookies != null) {
+                connection.setRequestProperty("Cookie", cookies);
+                bytes += cookies.length();
+            }
+            if (entry.etag != null) {
+                connection.setRequestProperty("If-None-Match", entry.etag);
+                bytes += entry.etag.length();
+            }
+            if (entry.lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", entry.lastModified);
+                bytes += entry.lastModified.length();
+            }
+            int status = connection.getResponseCode();
+            bytes += responseHeaderBytes(connection);
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                KioskStats.onRefreshCheck(KioskStats.REFRESH_UNCHANGED, bytes);
+                return false;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                KioskStats.onRefreshCheck(KioskStats.REFRESH_ERROR, bytes);
+                Log.w(TAG, "HTTP " + status + " checking " + entry.url);
+                return false;
+            }
+            String etag = connection.getHeaderField("ETag");
+            String lastModified = connection.getHeaderField("Last-Modified");
+            if (etag == null && lastModified == null && !entry.warnedUnverifiable) {
+                entry.warnedUnverifiable = true;
+                Log.w(TAG, "No ETag or Last-Modified for " + entry.url + ", changes can't be detected");
+            }
+            // A 200 for a conditional request can still be the same version, if the server
+            // ignores conditions on HEAD
+            boolean changed = entry.baselined && (etag != null || lastModified != null)
+                    && !(Objects.equals(etag, entry.etag) && Objects.equals(lastModified, entry.lastModified));
+            entry.etag = etag;
+            entry.lastModified = lastModified;
+            entry.baselined = true;
+            KioskStats.onRefreshCheck(changed ? KioskStats.REFRESH_CHANGED : KioskStats.REFRESH_UNCHANGED, bytes);
+            if (changed) {
+                Log.i(TAG, "Changed on the server: " + entry.url);
+            }
+            return changed;
+        } catch (IOException e) {
+            KioskStats.onRefreshCheck(KioskStats.REFRESH_ERROR, bytes);
+            Log.w(TAG, "Failed to check " + entry.url, e);
+            return false;
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static long responseHeaderBytes(HttpURLConnection connection) {
+        long bytes = 0;
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            for (String value : header.getValue()) {
+                // "Name: value\r\n"; the status line comes with a null name
+                bytes += (header.getKey() != null ? header.getKey().length() + 2 : 0) + value.length() + 2;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.autolaunchwebview;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Parcel;
+import android.util.Log;
+import android.view.PixelCopy;
+import android.webkit.WebView;
+
+import androidx.annotation.Nullable;
+import androidx.webkit.WebViewCompat;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * What the kiosk showed before the process died: the WebView's back/forward state and a
+ * half-resolution JPEG of the last frame, kept in files/resume. MainActivity saves it while
+ * the untouched target page is shown and clears it as soon as a visitor starts using the
+ * kiosk; on a cold start it shows the frame as a placeholder while the restored page loads
+ * underneath. Both files are read once and handed out once.
+ * The state is a marshalled Parcel, whose format is only stable within one platform build
+ * and WebView version, so the file starts with both and is dropped when either changed.
+ */
+public class ResumeSnapshot {
+    private static final String TAG = "ResumeSnapshot";
+    private static final String DIR = "resume";
+    private static final String STATE_FILE = "webview_state.bin";
+    private static final String FRAME_FILE = "last_frame.jpg";
+    // Stored alongside WebView's own keys; the state is only restored for the same page
+    private static final String KEY_TARGET_URL = "kiosk_target_url";
+    private static final int FRAME_SCALE = 2;
+    private static final int FRAME_QUALITY = 80;
+    private static final int FORMAT_VERSION = 1;
+
+    private static ResumeSnapshot instance;
+
+    private final File dir;
+    // Build and WebView version the state file was written by; see the class comment
+    private final String writer;
+    private Bundle state;
+    private Bitmap frame;
+    // Reused for every capture; null while a capture or write is still using it
+    private Bitmap captureBitmap;
+    private boolean capturing;
+
+    public static synchronized ResumeSnapshot get(Context context) {
+        if (instance == null) {
+            // Normally loaded by KioskApplication's io warm-up; a main-thread caller that wins
+            // the race loads it here rather than failing StrictMode
+            KioskExecutors.permitDiskOnMain(() -> instance = new ResumeSnapshot(context.getApplicationContext()));
+        }
+        return instance;
+    }
+
+    private ResumeSnapshot(Context context) {
+        dir = new File(context.getFilesDir(), DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(TAG, "Failed to create " + dir);
+        }
+        PackageInfo webViewPackage = WebViewCompat.getCurrentWebViewPackage(context);
+        writer = FORMAT_VERSION + "|" + Build.FINGERPRINT + "|"
+                + (webViewPackage != null ? webViewPackage.packageName + "/" + webViewPackage.versionName : "none");
+        state = readState(new File(dir, STATE_FILE), writer);
+        if (state != null) {
+            frame = BitmapFactory.decodeFile(new File(dir, FRAME_FILE).getPath());
+        }
+    }
+
+    /**
+     * The saved WebView state if it was saved while showing targetUrl; only handed out once
+     */
+    @Nullable
+    public synchronized Bundle takeState(String targetUrl) {
+        Bundle saved = state;
+        state = null;
+        if (saved != null && !targetUrl.equals(saved.getString(KEY_TARGET_URL))) {
+            Log.d(TAG, "Saved state is for another page, loading fresh");
+            frame = null;
+            return null;
+        }
+        return saved;
+    }
+
+    /**
+     * The last frame to show while the restored state loads; call after takeState
+     */
+    @Nullable
+    public synchronized Bitmap takeFrame() {
+        Bitmap saved = frame;
+        frame = null;
+        return saved;
+    }
+
+    /**
+     * Forget the saved state and frame, in memory and on disk; e.g. when a visitor session
+     * starts, so nothing of it can be restored
+     */
+    public void clear() {
+        synchronized (this) {
+            state = null;
+            frame = null;
+        }
+        KioskExecutors.serial().execute(() -> {
+            for (String name : new String[]{STATE_FILE, FRAME_FILE}) {
+                File file = new File(dir, name);
+                if (file.exists() && !file.delete()) {
+                    Log.w(TAG, "Failed to delete " + file);
+                }
+            }
+        });
+    }
+
+    /**
+     * Persist webView's state now, and its current frame too if withFrame. Capturing happens
+     * on the main thread; encoding and writing on serial(), so saves land in order.
+     */
+    public void save(Activity activity, WebView webView, String targetUrl, boolean withFrame) {
+        Bundle bundle = new Bundle();
+        if (webView.saveState(bundle) == null) {
+            return;
+        }
+        bundle.putString(KEY_TARGET_URL, targetUrl);
+        KioskExecutors.serial().execute(() -> writeState(bundle));
+        if (withFrame && webView.isShown() && webView.getWidth() > 0 && webView.getHeight() > 0) {
+            captureFrame(activity, webView);
+        }
+    }
+
+    private void captureFrame(Activity activity, WebView webView) {
+        int width = webView.getWidth() / FRAME_SCALE;
+        int height = webView.getHeight() / FRAME_SCALE;
+        Bitmap bitmap;
+        synchronized (this) {
+            if (capturing) {
+                return;
+            }
+            capturing = true;
+            if (captureBitmap == null || captureBitmap.getWidth() != width || captureBitmap.getHeight() != height) {
+                captureBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            }
+            bitmap = captureBitmap;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            // The composited surface, which is what the user actually saw
+            int[] location = new int[2];
+            webView.getLocationInWindow(location);
+            Rect source = new Rect(location[0], location[1],
+                    location[0] + webView.getWidth(), location[1] + webView.getHeight());
+            try {
+                PixelCopy.request(activity.getWindow(), source, bitmap, result -> {
+                    if (result == PixelCopy.SUCCESS) {
+                        KioskExecutors.serial().execute(() -> writeFrame(bitmap));
+                    } else {
+                        finishCapture();
+                    }
+                }, KioskExecutors.mainHandler());
+            } catch (IllegalArgumentException e) {
+                // Window surface gone, e.g. while the activity is going away
+                finishCapture();
+            }
+        } else {
+            Canvas canvas = new Canvas(bitmap);
+            canvas.scale(1f / FRAME_SCALE, 1f / FRAME_SCALE);
+            webView.draw(canvas);
+            KioskExecutors.serial().execute(() -> writeFrame(bitmap));
+        }
+    }
+
+    private synchronized void finishCapture() {
+        capturing = false;
+    }
+
+    private void writeState(Bundle bundle) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            bundle.writeToParcel(parcel, 0);
+            byte[] bytes = parcel.marshall();
+            writeAtomically(new File(dir, STATE_FILE), out -> {
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeUTF(writer);
+                data.write(bytes);
+                data.flush();
+            });
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Failed to save WebView state", e);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private void writeFrame(Bitmap bitmap) {
+        try {
+            writeAtomically(new File(dir, FRAME_FILE),
+                    out -> bitmap.compress(Bitmap.CompressFormat.JPEG, FRAME_QUALITY, out));
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to save last frame", e);
+        } finally {
+            finishCapture();
+        }
+    }
+
+    private interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Write to a temp file and rename, so a kill mid-write leaves the previous file intact
+     */
+    private static void writeAtomically(File target, Writer writer) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            writer.write(out);
+            out.flush();
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(target)) {
+            throw new IOException("Failed to replace " + target);
+        }
+    }
+
+    @Nullable
+    private static Bundle readState(File file, String writer) {
+        if (!file.isFile()) {
+            return null;
+        }
+        byte[] bytes;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            String savedWriter = in.readUTF();
+            if (!writer.equals(savedWriter)) {
+                Log.d(TAG, "Saved state is from another build or WebView version, ignoring it");
+                return null;
+            }
+            bytes = new byte[in.available()];
+            in.readFully(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read saved state", e);
+            return null;
+        }
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(bytes, 0, bytes.length);
+            parcel.setDataPosition(0);
+            Bundle bundle = parcel.readBundle(ResumeSnapshot.class.getClassLoader());
+            if (bundle != null) {
+                // readBundle unparcels lazily; force it here so a bad blob fails inside the catch
+                bundle.size();
+            }
+            return bundle;
+        } catch (RuntimeException e) {
+            // Written by an incompatible build
+            Log.w(TAG, "Discarding unreadable saved state", e);
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.autolaunchwebview;
+
+import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.webkit.WebView;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.TimeZone;
+
+/**
+ * Drives the content schedule: exactly one pending timer, for the next transition, plus one
+ * shortly before it that loads the upcoming URL in a hidden WebView so its resources are in
+ * the shared cache when the switch happens. Nothing runs between transitions.
+ */
+public class ScheduleRunner {
+    private static final String TAG = "ScheduleRunner";
+    private static final long PRELOAD_LEAD_MS = 60_000;
+
+    public interface Listener {
+        /**
+         * The scheduled URL changed; null means no entry applies and the home URL should show
+         */
+        void onScheduledUrl(@Nullable String url);
+    }
+
+    private final Activity activity;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable transitionRunnable = this::onTransition;
+    private final Runnable preloadRunnable = this::preloadNext;
+    private final BroadcastReceiver timeChangeReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            // Clock or zone moved: wall-clock slots no longer line up with the pending timers
+            compile();
+            destroyPreloadView();
+            notifyIfChanged();
+            scheduleNext();
+        }
+    };
+    private String source;
+    // What the listener was last told to show
+    private String notifiedUrl;
+    private ContentSchedule schedule;
+    private WebView preloadView;
+    private boolean receiverRegistered;
+
+    public ScheduleRunner(Activity activity, Listener listener) {
+        this.activity = activity;
+        this.listener = listener;
+    }
+
+    /**
+     * Compile the configured schedule and arm the next transition; no-op without a schedule
+     */
+    public void start() {
+        if (!compile()) {
+            return;
+        }
+        notifiedUrl = getCurrentUrl();
+        if (!receiverRegistered) {
+            IntentFilter filter = new IntentFilter(Intent.ACTION_TIME_CHANGED);
+            filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+            activity.registerReceiver(timeChangeReceiver, filter);
+            receiverRegistered = true;
+        }
+        scheduleNext();
+    }
+
+    public void stop() {
+        handler.removeCallbacks(transitionRunnable);
+        handler.removeCallbacks(preloadRunnable);
+        destroyPreloadView();
+        if (receiverRegistered) {
+            activity.unregisterReceiver(timeChangeReceiver);
+            receiverRegistered = false;
+        }
+    }
+
+    /**
+     * Pick up a schedule that was changed in KioskConfig while we were running
+     */
+    public void refreshIfChanged() {
+        String current = KioskConfig.getSchedule(activity);
+        if (current == null ? source == null : current.equals(source)) {
+            return;
+        }
+        String shown = notifiedUrl;
+        stop();
+        start();
+        notifiedUrl = shown;
+        notifyIfChanged();
+    }
+
+    /**
+     * What the schedule says to show right now, or null for the home URL
+     */
+    @Nullable
+    public String getCurrentUrl() {
+        return schedule != null ? schedule.urlAt(System.currentTimeMillis()) : null;
+    }
+
+    private boolean compile() {
+        String json = KioskConfig.getSchedule(activity);
+        source = json;
+        if (json == null) {
+            schedule = null;
+            return false;
+        }
+        try {
+            schedule = ContentSchedule.compile(new JSONObject(json), System.currentTimeMillis(), TimeZone.getDefault());
+            Log.d(TAG, "Schedule compiled into " + schedule.size() + " slots");
+            return true;
+        } catch (JSONException e) {
+            Log.e(TAG, "Invalid content schedule, ignoring it", e);
+            schedule = null;
+            return false;
+        }
+    }
+
+    private void scheduleNext() {
+        handler.removeCallbacks(transitionRunnable);
+        handler.removeCallbacks(preloadRunnable);
+        if (schedule == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long delay = Math.max(0, schedule.nextTransition(now) - now);
+        handler.postDelayed(transitionRunnable, delay);
+        handler.postDelayed(preloadRunnable, Math.max(0, delay - PRELOAD_LEAD_MS));
+    }
+
+    private void onTransition() {
+        PowerAccounting.onDispatch(PowerAccounting.SUBSYSTEM_SCHEDULE);
+        if (schedule == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now >= schedule.getValidUntil()) {
+            compile();
+        }
+        destroyPreloadView();
+        notifyIfChanged();
+        scheduleNext();
+    }
+
+    private void notifyIfChanged() {
+        String url = getCurrentUrl();
+        if (url == null ? notifiedUrl == null : url.equals(notifiedUrl)) {
+            return;
+        }
+        notifiedUrl = url;
+        EventJournal.record(EventJournal.SCHEDULE_TRANSITION);
+        listener.onScheduledUrl(url);
+    }
+
+    /**
+     * Load the next slot's URL off-screen so the switch hits a warm cache
+     */
+    private void preloadNext() {
+        PowerAccounting.onDispatch(PowerAccounting.SUBSYSTEM_SCHEDULE);
+        if (schedule == null) {
+            return;
+        }
+        if (ThermalGovernor.get(activity).getStep() >= 2) {
+            // A second renderer is the last thing a throttled SoC needs; switch on a cold cache
+            Log.d(TAG, "Skipping preload while hot");
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long next = schedule.nextTransition(now);
+        String url = schedule.urlAt(next);
+        if (url == null) {
+            url = KioskWebViewClient.getHomeUrl(activity);
+        }
+        String currentUrl = getCurrentUrl();
+        if (url.equals(currentUrl != null ? currentUrl : KioskWebViewClient.getHomeUrl(activity))) {
+            return;
+        }
+        destroyPreloadView();
+        KioskExecutors.permitDiskOnMain(() -> preloadView = new WebView(activity));
+        KioskWebViewClient.applySettings(preloadView);
+        preloadView.setWebViewClient(new KioskWebViewClient(activity));
+        preloadView.loadUrl(url);
+        Log.d(TAG, "Preloading " + url);
+    }
+
+    private void destroyPreloadView() {
+        if (preloadView != null) {
+            preloadView.stopLoading();
+            preloadView.destroy();
+            preloadView = null;
+        }
+    }
+}
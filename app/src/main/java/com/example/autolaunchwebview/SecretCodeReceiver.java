@@ -9,10 +9,8 @@ public class SecretCodeReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(Context context, Intent intent) {
         Log.d("SecretCodeReceiver", "Secret code received - launching MainActivity");
-
-        Intent launchIntent = new Intent(context, LaunchActivity.class);
-        launchIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
-        context.startActivity(launchIntent);
+        EventJournal.open(context);
+        LaunchCoordinator.requestLaunch(context, KioskStats.Trigger.SECRET_CODE);
     }
 }
 
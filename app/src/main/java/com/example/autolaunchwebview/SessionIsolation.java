@@ -0,0 +1,140 @@
+package com.example.autolaunchwebview;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.Log;
+import android.webkit.CookieManager;
+import android.webkit.WebStorage;
+import android.webkit.WebView;
+
+import androidx.webkit.Profile;
+import androidx.webkit.ProfileStore;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import java.util.ArrayDeque;
+
+/**
+ * Gives each visitor session its own WebView storage, so nothing one visitor left behind
+ * (cookies, local storage, IndexedDB, service workers) is visible to the next. Where the WebView
+ * supports multiple profiles every session gets a throwaway profile, and ending a session means
+ * a new WebView in a new profile while the old one is deleted in the background. Older WebViews
+ * can't switch storage without a process restart, so there the default profile's cookies and
+ * web storage are cleared instead; both calls return immediately and finish asynchronously.
+ * <p>
+ * A profile also has its own HTTP cache, so with profiles every session starts with a cold
+ * network cache (MainActivity measures this as kiosk_session_start_seconds). What the app
+ * serves itself, the content bundle and MediaCache, is shared and stays warm in both modes.
+ * <p>
+ * ProfileStore is UI-thread only. To keep that off the reset path, the next session's profile
+ * is created while the main thread is idle, and old profiles are deleted one per idle pass.
+ * Main thread only, except getCookieManager.
+ */
+public class SessionIsolation {
+    private static final String TAG = "SessionIsolation";
+    private static final String PROFILE_PREFIX = "kiosk-session-";
+
+    // Cookies of the current session, for app code that fetches on the page's behalf
+    private static volatile CookieManager cookieManager;
+
+    private final boolean profiles = WebViewFeature.isFeatureSupported(WebViewFeature.MULTI_PROFILE);
+    private final ArrayDeque<String> discardQueue = new ArrayDeque<>();
+    private String currentProfile;
+    private String nextProfile;
+    private long sessionCount;
+    private boolean idleHandlerAdded;
+
+    /**
+     * The current session's cookie store: the session profile's with profiles, else the
+     * default one. Safe from any thread.
+     */
+    public static CookieManager getCookieManager() {
+        CookieManager cookies = cookieManager;
+        return cookies != null ? cookies : CookieManager.getInstance();
+    }
+
+    /**
+     * Whether ending a session needs a new WebView (see beginSession)
+     */
+    public boolean usesProfiles() {
+        return profiles;
+    }
+
+    /**
+     * Put webView into a fresh session. With profiles this must happen before webView loads
+     * anything; the profile it had before is left for discardOldSessions.
+     */
+    public void beginSession(WebView webView) {
+        if (!profiles) {
+            sessionCount++;
+            return;
+        }
+        String name = nextProfile != null ? nextProfile : newProfileName();
+        nextProfile = null;
+        Profile profile = ProfileStore.getInstance().getOrCreateProfile(name);
+        WebViewCompat.setProfile(webView, name);
+        currentProfile = name;
+        cookieManager = profile.getCookieManager();
+        Log.d(TAG, "Started session profile " + name);
+        // Have the following session's profile ready before the next reset needs it
+        scheduleIdleWork();
+    }
+
+    private String newProfileName() {
+        return PROFILE_PREFIX + System.currentTimeMillis() + "-" + (++sessionCount);
+    }
+
+    /**
+     * Delete every earlier session's profile that no WebView uses any more, including ones
+     * left by a previous process. Deletion happens while the main thread is idle; profiles
+     * still held by a WebView that is being destroyed are retried on the next call.
+     */
+    public void discardOldSessions() {
+        if (!profiles) {
+            return;
+        }
+        for (String name : ProfileStore.getInstance().getAllProfileNames()) {
+            if (name.startsWith(PROFILE_PREFIX) && !name.equals(currentProfile)
+                    && !name.equals(nextProfile) && !discardQueue.contains(name)) {
+                discardQueue.add(name);
+            }
+        }
+        scheduleIdleWork();
+    }
+
+    private void scheduleIdleWork() {
+        if (!idleHandlerAdded) {
+            idleHandlerAdded = true;
+            Looper.myQueue().addIdleHandler(idleHandler);
+        }
+    }
+
+    // One ProfileStore call per idle pass, so none of them delays a frame or input
+    private final MessageQueue.IdleHandler idleHandler = () -> {
+        if (nextProfile == null) {
+            nextProfile = newProfileName();
+            ProfileStore.getInstance().getOrCreateProfile(nextProfile);
+        } else if (!discardQueue.isEmpty()) {
+            String name = discardQueue.poll();
+            try {
+                ProfileStore.getInstance().deleteProfile(name);
+                Log.d(TAG, "Discarded session profile " + name);
+            } catch (IllegalStateException e) {
+                Log.d(TAG, "Session profile " + name + " still in use, retrying later");
+            }
+        }
+        idleHandlerAdded = nextProfile == null || !discardQueue.isEmpty();
+        return idleHandlerAdded;
+    };
+
+    /**
+     * Without profiles: forget the session in place. Cookie and storage deletion run on the
+     * WebView's own threads; the HTTP cache is left alone.
+     */
+    public void wipeDefaultProfile(WebView webView) {
+        CookieManager.getInstance().removeAllCookies(null);
+        WebStorage.getInstance().deleteAllData();
+        webView.clearFormData();
+        webView.clearSslPreferences();
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.autolaunchwebview;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+import android.os.Looper;
+import android.provider.Settings;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves OEM settings screens once, off the main thread, so later launches
+ * go straight to a component that exists on this device.
+ */
+public class SettingsIntentResolver {
+    private static final String TAG = "SettingsIntentResolver";
+
+    public enum Target {
+        AUTOSTART,
+        BATTERY,
+        OTHER_PERMISSIONS,
+        APP_PERMISSIONS,
+        SECURITY_CENTER,
+        OVERLAY
+    }
+
+    private static final Intent[] resolved = new Intent[Target.values().length];
+    private static final AtomicBoolean started = new AtomicBoolean(false);
+
+    /**
+     * Start resolving every target in the background (only the first call does any work)
+     */
+    public static void warmUp(Context context) {
+        if (!started.compareAndSet(false, true)) {
+            return;
+        }
+        Context appContext = context.getApplicationContext();
+        KioskExecutors.io().execute(() -> {
+            long start = System.currentTimeMillis();
+            for (Target target : Target.values()) {
+                resolveTarget(appContext, target);
+            }
+            Log.d(TAG, "Settings intents resolved in " + (System.currentTimeMillis() - start) + "ms");
+        });
+    }
+
+    /**
+     * Get a launchable intent for the target: the first candidate present on this
+     * device, or the generic screen when none is. On the main thread before the background
+     * pass got to the target, the generic screen without probing PackageManager.
+     */
+    public static Intent getIntent(Context context, Target target) {
+        Intent intent;
+        synchronized (resolved) {
+            intent = resolved[target.ordinal()];
+        }
+        if (intent == null) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                // One PackageManager IPC per candidate is too slow for the UI thread
+                warmUp(context);
+                return genericScreen(context, target);
+            }
+            intent = resolveTarget(context.getApplicationContext(), target);
+        }
+        return new Intent(intent);
+    }
+
+    /**
+     * Whether an OEM-specific screen (not the generic fallback) was found for the target.
+     * False on the main thread until the background pass is done.
+     */
+    public static boolean hasOemScreen(Context context, Target target) {
+        return getIntent(context, target).getComponent() != null;
+    }
+
+    private static Intent resolveTarget(Context context, Target target) {
+        synchronized (resolved) {
+            if (resolved[target.ordinal()] != null) {
+                return resolved[target.ordinal()];
+            }
+        }
+
+        PackageManager pm = context.getPackageManager();
+        Intent match = null;
+        for (Intent candidate : getCandidates(context, target)) {
+            try {
+                ResolveInfo info = pm.resolveActivity(candidate, 0);
+                if (info != null && info.activityInfo != null && info.activityInfo.exported) {
+                    match = candidate;
+                    break;
+                }
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to resolve " + candidate, e);
+            }
+        }
+
+        if (match == null) {
+            match = genericScreen(context, target);
+        }
+        Log.d(TAG, target + " -> " + (match.getComponent() != null ? match.getComponent().flattenToShortString() : match.getAction()));
+
+        synchronized (resolved) {
+            resolved[target.ordinal()] = match;
+        }
+        return match;
+    }
+
+    private static Intent[] getCandidates(Context context, Target target) {
+        String pkg = context.getPackageName();
+        switch (target) {
+            case AUTOSTART:
+                return new Intent[]{
+                        component("com.miui.securitycenter", "com.miui.permcenter.autostart.AutoStartManagementActivity"),
+                        component("com.oneplus.security", "com.oneplus.security.chainlaunch.view.ChainLaunchAppListActivity"),
+                        component("com.coloros.safecenter", "com.coloros.safecenter.permission.startup.StartupAppListActivity"),
+                        component("com.coloros.safecenter", "com.coloros.safecenter.startupapp.StartupAppListActivity"),
+                        component("com.oppo.safe", "com.oppo.safe.permission.startup.StartupAppListActivity"),
+                        component("com.vivo.permissionmanager", "com.vivo.permissionmanager.activity.BgStartUpManagerActivity"),
+                        component("com.iqoo.secure", "com.iqoo.secure.ui.phoneoptimize.AddWhiteListActivity"),
+                        component("com.samsung.android.lool", "com.samsung.android.sm.ui.battery.BatteryActivity")
+                };
+            case BATTERY:
+                return new Intent[]{
+                        component("com.miui.powerkeeper", "com.miui.powerkeeper.ui.HiddenAppsContainerManagementActivity"),
+                        component("com.oneplus.security", "com.oneplus.security.chainlaunch.view.ChainLaunchAppListActivity"),
+                        component("com.coloros.oppoguardelf", "com.coloros.powermanager.fuelgaue.PowerUsageModelActivity"),
+                        component("com.vivo.abe", "com.vivo.applicationbehaviorengine.ui.ExcessivePowerManagerActivity"),
+                        component("com.samsung.android.lool", "com.samsung.android.sm.battery.ui.BatteryActivity"),
+                        component("com.samsung.android.sm", "com.samsung.android.sm.ui.battery.BatteryActivity")
+                };
+            case OTHER_PERMISSIONS:
+                return new Intent[]{
+                        component("com.miui.securitycenter", "com.miui.permcenter.permissions.PermissionsEditorActivity")
+                                .putExtra("extra_pkgname", pkg)
+                };
+            case APP_PERMISSIONS:
+                return new Intent[]{
+                        component("com.miui.securitycenter", "com.miui.permcenter.permissions.AppPermissionsEditorActivity")
+                                .putExtra("extra_pkgname", pkg)
+                };
+            case SECURITY_CENTER:
+                return new Intent[]{
+                        component("com.miui.securitycenter", "com.miui.securitycenter.MainActivity"),
+                        component("com.coloros.safecenter", "com.coloros.safecenter.MainActivity"),
+                        component("com.iqoo.secure", "com.iqoo.secure.MainActivity")
+                };
+            default:
+                return new Intent[0];
+        }
+    }
+
+    private static Intent component(String pkg, String cls) {
+        Intent intent = new Intent();
+        intent.setComponent(new ComponentName(pkg, cls));
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        return intent;
+    }
+
+    private static Intent action(String action, String pkg) {
+        Intent intent = new Intent(action);
+        intent.setData(Uri.parse("package:" + pkg));
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        return intent;
+    }
+
+    /**
+     * AOSP screen for the target, present on every device, so it needs no resolving. Battery
+     * goes to the optimization list rather than the one-tap exemption dialog.
+     */
+    private static Intent genericScreen(Context context, Target target) {
+        switch (target) {
+            case BATTERY:
+                return new Intent(Settings.ACTION_IGNORE_BATTERY_OPTIMIZATION_SETTINGS)
+                        .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+            case OVERLAY:
+                return action(Settings.ACTION_MANAGE_OVERLAY_PERMISSION, context.getPackageName());
+            default:
+                return action(Settings.ACTION_APPLICATION_DETAILS_SETTINGS, context.getPackageName());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.autolaunchwebview;
+
+import android.annotation.SuppressLint;
+import android.app.Presentation;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.Display;
+import android.view.ViewGroup;
+import android.webkit.RenderProcessGoneDetail;
+import android.webkit.WebView;
+import android.widget.FrameLayout;
+
+/**
+ * Full-screen WebView on an extra display. It uses the same request path as MainActivity
+ * and no timers of its own; touches are reported back so the single inactivity timer covers
+ * every display.
+ */
+public class SignagePresentation extends Presentation {
+    private static final String TAG = "SignagePresentation";
+
+    public interface Listener {
+        void onUserActivity();
+
+        void onFirstPageFinished(SignagePresentation presentation);
+    }
+
+    private final String url;
+    private final Listener listener;
+    private FrameLayout container;
+    private WebView webView;
+    private boolean firstPageFinished;
+
+    public SignagePresentation(Context outerContext, Display display, String url, Listener listener) {
+        super(outerContext, display);
+        this.url = url;
+        this.listener = listener;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        container = new FrameLayout(getContext());
+        setContentView(container);
+        createWebView();
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    private void createWebView() {
+        KioskExecutors.permitDiskOnMain(() -> webView = new WebView(getContext()));
+        KioskWebViewClient.applySettings(webView);
+        webView.setWebViewClient(new KioskWebViewClient(getContext()) {
+            @Override
+            public void onPageFinished(WebView view, String url) {
+                super.onPageFinished(view, url);
+                if (!firstPageFinished) {
+                    firstPageFinished = true;
+                    listener.onFirstPageFinished(SignagePresentation.this);
+                }
+            }
+
+            @Override
+            public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail) {
+                KioskStats.onRendererCrash(detail.didCrash());
+                Log.e(TAG, "Renderer gone on display " + getDisplay().getDisplayId() + " - rebuilding WebView");
+                container.removeView(view);
+                view.destroy();
+                createWebView();
+                return true;
+            }
+        });
+        webView.setOnTouchListener((v, event) -> {
+            listener.onUserActivity();
+            return false;
+        });
+        container.addView(webView, new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        webView.loadUrl(url);
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (webView != null) {
+            container.removeView(webView);
+            webView.destroy();
+            webView = null;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.autolaunchwebview;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Owns the main-thread posts and background tasks of one Activity or Service, so nothing
+ * scheduled by it can run, or keep it reachable, after it is destroyed. Activity scopes
+ * (TaskScope.of) close themselves from onActivityDestroyed; services create one and call
+ * close() in onDestroy. Destroyed activities are also watched weakly, so an activity that
+ * something else still holds shows up in getRetainedActivities().
+ */
+public class TaskScope {
+    private static final String TAG = "TaskScope";
+
+    private static final Map<Activity, TaskScope> activityScopes = new HashMap<>();
+    private static final List<TaskScope> openScopes = new ArrayList<>();
+    private static final List<WeakReference<Activity>> destroyedActivities = new ArrayList<>();
+    // Tests create a fresh Application per run, so remember which one has the callbacks
+    private static Application installedIn;
+
+    private final String name;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Posted runnables by what the caller passed in, so remove() works like removeCallbacks
+    private final Map<Runnable, Post> posts = new HashMap<>();
+    private final Set<Future<?>> futures = new HashSet<>();
+    private boolean closed;
+
+    private class Post implements Runnable {
+        final Runnable task;
+
+        Post(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            synchronized (TaskScope.this) {
+                if (posts.get(task) != this) {
+                    return;
+                }
+                posts.remove(task);
+            }
+            task.run();
+        }
+    }
+
+    public TaskScope(String name) {
+        this.name = name;
+        synchronized (TaskScope.class) {
+            openScopes.add(this);
+        }
+    }
+
+    /**
+     * Register the lifecycle callbacks that close activity scopes; called once from Application
+     */
+    public static synchronized void install(Application application) {
+        if (installedIn == application) {
+            return;
+        }
+        installedIn = application;
+        application.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            @Override
+            public void onActivityDestroyed(@NonNull Activity activity) {
+                TaskScope scope;
+                synchronized (TaskScope.class) {
+                    scope = activityScopes.remove(activity);
+                    destroyedActivities.add(new WeakReference<>(activity));
+                }
+                if (scope != null) {
+                    scope.close();
+                }
+            }
+
+            @Override
+            public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+            }
+
+            @Override
+            public void onActivityStarted(@NonNull Activity activity) {
+            }
+
+            @Override
+            public void onActivityResumed(@NonNull Activity activity) {
+            }
+
+            @Override
+            public void onActivityPaused(@NonNull Activity activity) {
+            }
+
+            @Override
+            public void onActivityStopped(@NonNull Activity activity) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+            }
+        });
+    }
+
+    /**
+     * The scope of an activity, closed automatically when the activity is destroyed
+     */
+    public static synchronized TaskScope of(Activity activity) {
+        TaskScope scope = activityScopes.get(activity);
+        if (scope == null) {
+            scope = new TaskScope(activity.getClass().getSimpleName());
+            activityScopes.put(activity, scope);
+        }
+        return scope;
+    }
+
+    public void post(Runnable task) {
+        postDelayed(task, 0);
+    }
+
+    /**
+     * Run task on the main thread after delayMs, replacing any pending post of the same task
+     */
+    public synchronized void postDelayed(Runnable task, long delayMs) {
+        if (closed) {
+            Log.w(TAG, name + ": post after close ignored");
+            return;
+        }
+        Post post = new Post(task);
+        Post previous = posts.put(task, post);
+        if (previous != null) {
+            handler.removeCallbacks(previous);
+        }
+        handler.postDelayed(post, delayMs);
+    }
+
+    /**
+     * Whether task is posted and hasn't run yet
+     */
+    public synchronized boolean isPending(Runnable task) {
+        return posts.containsKey(task);
+    }
+
+    public synchronized void remove(Runnable task) {
+        Post post = posts.remove(task);
+        if (post != null) {
+            handler.removeCallbacks(post);
+        }
+    }
+
+    /**
+     * Run task on executor; it is interrupted if the scope closes first
+     */
+    public synchronized Future<?> submit(ExecutorService executor, Runnable task) {
+        FutureTask<Void> future = new FutureTask<Void>(task, null) {
+            @Override
+            protected void done() {
+                synchronized (TaskScope.this) {
+                    futures.remove(this);
+                }
+            }
+        };
+        if (closed) {
+            future.cancel(false);
+            return future;
+        }
+        futures.add(future);
+        executor.execute(future);
+        return future;
+    }
+
+    /**
+     * Cancel everything still pending; later posts and submits are ignored
+     */
+    public void close() {
+        List<Future<?>> cancel;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            handler.removeCallbacksAndMessages(null);
+            posts.clear();
+            cancel = new ArrayList<>(futures);
+            futures.clear();
+        }
+        for (Future<?> future : cancel) {
+            future.cancel(true);
+        }
+        synchronized (TaskScope.class) {
+            openScopes.remove(this);
+        }
+        if (!cancel.isEmpty()) {
+            Log.d(TAG, name + ": cancelled " + cancel.size() + " background tasks on close");
+        }
+    }
+
+    public synchronized int getOutstanding() {
+        return posts.size() + futures.size();
+    }
+
+    /**
+     * Posts and tasks pending across every open scope
+     */
+    public static int getOutstandingTotal() {
+        List<TaskScope> scopes;
+        synchronized (TaskScope.class) {
+            scopes = new ArrayList<>(openScopes);
+        }
+        int total = 0;
+        for (TaskScope scope : scopes) {
+            total += scope.getOutstanding();
+        }
+        return total;
+    }
+
+    public static synchronized int getOpenScopes() {
+        return openScopes.size();
+    }
+
+    /**
+     * Destroyed activities that have not been garbage collected. Without a GC first this
+     * includes ones that are merely not collected yet, so only a count that stays above
+     * zero after runGc means a leak.
+     */
+    public static int getRetainedActivities(boolean runGc) {
+        if (runGc) {
+            Runtime.getRuntime().gc();
+            Runtime.getRuntime().runFinalization();
+            Runtime.getRuntime().gc();
+        }
+        synchronized (TaskScope.class) {
+            Iterator<WeakReference<Activity>> it = destroyedActivities.iterator();
+            while (it.hasNext()) {
+                if (it.next().get() == null) {
+                    it.remove();
+                }
+            }
+            return destroyedActivities.size();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.autolaunchwebview;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Steps the kiosk's own load down as the device heats up, so a throttled SoC has less to do
+ * and the page keeps responding. The PowerManager thermal status maps to a step from 0 (normal)
+ * to MAX_STEP; listeners (MainActivity) lower the renderer priority and tell the page, and
+ * periodic work stretches its interval by getStretchFactor(). Everything returns to normal when
+ * the status drops again. Before Q there is no thermal API, so the status stays NONE; tests
+ * drive onStatusChanged directly. Also keeps the time spent in each status.
+ */
+public class ThermalGovernor {
+    private static final String TAG = "ThermalGovernor";
+    // Indexed by PowerManager.THERMAL_STATUS_*
+    public static final String[] STATUS_NAMES = {
+            "none", "light", "moderate", "severe", "critical", "emergency", "shutdown"
+    };
+    public static final int MAX_STEP = 3;
+
+    public interface Listener {
+        /**
+         * The throttling step changed; called on the main thread
+         */
+        void onThermalStep(int step);
+    }
+
+    private static ThermalGovernor instance;
+
+    private final List<Listener> listeners = new ArrayList<>();
+    private final long[] statusMs = new long[STATUS_NAMES.length];
+    private int status;
+    private long statusSinceMs = SystemClock.elapsedRealtime();
+    private volatile int step;
+
+    public static synchronized ThermalGovernor get(Context context) {
+        if (instance == null) {
+            instance = new ThermalGovernor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * The instance if something already created it, for readers without a Context
+     */
+    public static synchronized ThermalGovernor getIfCreated() {
+        return instance;
+    }
+
+    private ThermalGovernor(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+            if (powerManager != null) {
+                // Also delivers the current status right away
+                powerManager.addThermalStatusListener(KioskExecutors.main(), this::onStatusChanged);
+            }
+        }
+    }
+
+    /**
+     * Step for a thermal status: light warmth is ignored, moderate and above each add a step
+     */
+    static int stepFor(int status) {
+        return Math.max(0, Math.min(MAX_STEP, status - 1));
+    }
+
+    /**
+     * Main thread only
+     */
+    void onStatusChanged(int newStatus) {
+        newStatus = Math.max(0, Math.min(STATUS_NAMES.length - 1, newStatus));
+        int oldStep;
+        synchronized (this) {
+            if (newStatus == status) {
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            statusMs[status] += now - statusSinceMs;
+            statusSinceMs = now;
+            Log.i(TAG, "Thermal status " + STATUS_NAMES[status] + " -> " + STATUS_NAMES[newStatus]);
+            status = newStatus;
+            oldStep = step;
+            step = stepFor(newStatus);
+        }
+        EventJournal.record(EventJournal.THERMAL_STATUS, newStatus, step);
+        if (step != oldStep) {
+            for (Listener listener : new ArrayList<>(listeners)) {
+                listener.onThermalStep(step);
+            }
+        }
+    }
+
+    /**
+     * Main thread only
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * How much longer periodic work should wait at the current step: 1, 2, 4 or 8
+     */
+    public int getStretchFactor() {
+        return 1 << step;
+    }
+
+    public synchronized int getStatus() {
+        return status;
+    }
+
+    /**
+     * Time spent in the given status since the process started, including the current stretch
+     */
+    public synchronized long getTimeInStatusMs(int status) {
+        long ms = statusMs[status];
+        if (status == this.status) {
+            ms += SystemClock.elapsedRealtime() - statusSinceMs;
+        }
+        return ms;
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.autolaunchwebview;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.PixelCopy;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * Catches what lifecycle checks can't: a page that is up but shows nothing, or stopped
+ * changing. Every CHECK_INTERVAL_MS (longer while ThermalGovernor throttles) the visible
+ * WebView is copied into a small bitmap, and a background thread computes a 64-bit average
+ * hash and the share of pixels in the most common brightness band. Repeated blank (count
+ * configurable, see KioskConfig.getBlankChecks) or, if configured, unchanged samples trigger
+ * a reload. One sample is in flight at a time. The bitmap, pixel buffer and callbacks are
+ * allocated once, so sampling allocates nothing.
+ */
+public class VisualHealthMonitor {
+    private static final String TAG = "VisualHealth";
+    private static final long CHECK_INTERVAL_MS = 20_000;
+    // Snapshot size; the hash works on 8x8 blocks of it
+    private static final int SAMPLE_SIZE = 64;
+    private static final int HASH_GRID = 8;
+    private static final int BRIGHTNESS_BANDS = 32;
+    // Screens with at least this share of pixels in one brightness band count as blank
+    private static final float BLANK_RATIO = 0.98f;
+    // Hashes this close are the same picture (compression noise, a blinking cursor)
+    private static final int SAME_HASH_MAX_BITS = 2;
+    // Each reload that doesn't help doubles the wait before the next, up to this factor
+    private static final int MAX_BACKOFF_FACTOR = 16;
+
+    public static final int REASON_BLANK = 0;
+    public static final int REASON_FROZEN = 1;
+    public static final String[] REASON_NAMES = {"blank", "frozen"};
+
+    public interface Listener {
+        /**
+         * The screen failed a check; called on the main thread
+         */
+        void onUnhealthy(int reason);
+    }
+
+    private final Activity activity;
+    private View view;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final HandlerThread thread;
+    private final Handler workHandler;
+    private final Bitmap bitmap = Bitmap.createBitmap(SAMPLE_SIZE, SAMPLE_SIZE, Bitmap.Config.ARGB_8888);
+    private final Canvas canvas = new Canvas(bitmap);
+    private final int[] pixels = new int[SAMPLE_SIZE * SAMPLE_SIZE];
+    private final int[] bands = new int[BRIGHTNESS_BANDS];
+    private final int[] blockSums = new int[HASH_GRID * HASH_GRID];
+    private final int[] location = new int[2];
+    private final Rect sourceRect = new Rect();
+    private final Runnable captureRunnable = this::capture;
+    private final Runnable analyzeRunnable = this::analyze;
+    private final Runnable resultRunnable = this::onResult;
+    private PixelCopy.OnPixelCopyFinishedListener copyListener;
+
+    // Results handed from the worker to the main thread; the next capture is only scheduled
+    // after the previous result was consumed, so these are never written concurrently
+    private volatile long sampleHash;
+    private volatile float sampleBlankRatio;
+    private volatile boolean sampleValid;
+
+    private boolean running;
+    private boolean released;
+    // Bumped by stop(); a sample taken under an older value is dropped when its result arrives
+    private int generation;
+    private int sampleGeneration;
+    // A capture or analysis is using the bitmap; its result always comes back to onResult
+    private boolean sampling;
+    private long lastHash;
+    private boolean hasLastHash;
+    private long unchangedSinceMs;
+    private int blankCount;
+    private int backoffFactor = 1;
+    private long frozenAfterMs;
+    private int blankChecks;
+
+    public VisualHealthMonitor(Activity activity, View view, Listener listener) {
+        this.activity = activity;
+        this.view = view;
+        this.listener = listener;
+        thread = new HandlerThread("VisualHealth", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        workHandler = new Handler(thread.getLooper());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            copyListener = result -> {
+                sampleValid = result == PixelCopy.SUCCESS;
+                analyze();
+            };
+        }
+    }
+
+    /**
+     * Begin sampling; call while the activity is visible
+     */
+    public void start() {
+        if (running || released) {
+            return;
+        }
+        running = true;
+        frozenAfterMs = KioskConfig.getFrozenAfterMinutes(activity) * 60_000L;
+        blankChecks = KioskConfig.getBlankChecks(activity);
+        reset();
+        mainHandler.postDelayed(captureRunnable, checkIntervalMs());
+    }
+
+    public void stop() {
+        running = false;
+        generation++;
+        // A pending resultRunnable is left to run: it clears sampling, then sees the new generation
+        mainHandler.removeCallbacks(captureRunnable);
+    }
+
+    private long checkIntervalMs() {
+        return CHECK_INTERVAL_MS * ThermalGovernor.get(activity).getStretchFactor();
+    }
+
+    public void release() {
+        stop();
+        released = true;
+        thread.quitSafely();
+    }
+
+    /**
+     * Watch a different view from now on, e.g. a WebView that replaced the old one
+     */
+    public void setView(View view) {
+        this.view = view;
+        reset();
+    }
+
+    /**
+     * Forget earlier samples, e.g. when a new page starts loading
+     */
+    public void reset() {
+        hasLastHash = false;
+        blankCount = 0;
+        unchangedSinceMs = SystemClock.elapsedRealtime();
+    }
+
+    private void capture() {
+        if (!running) {
+            return;
+        }
+        PowerAccounting.onDispatch(PowerAccounting.SUBSYSTEM_VISUAL);
+        if (sampling || view.getWidth() == 0 || view.getHeight() == 0 || !view.isShown()) {
+            // sampling: a copy from before a stop()/start() is still in flight
+            mainHandler.postDelayed(captureRunnable, checkIntervalMs());
+            return;
+        }
+        sampling = true;
+        sampleGeneration = generation;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            // Copies the composited window surface, so it sees exactly what the GPU put on screen
+            view.getLocationInWindow(location);
+            sourceRect.set(location[0], location[1], location[0] + view.getWidth(), location[1] + view.getHeight());
+            try {
+                PixelCopy.request(activity.getWindow(), sourceRect, bitmap, copyListener, workHandler);
+            } catch (IllegalArgumentException e) {
+                // Window surface not ready yet
+                sampling = false;
+                mainHandler.postDelayed(captureRunnable, checkIntervalMs());
+            }
+        } else {
+            long cpuStart = Debug.threadCpuTimeNanos();
+            // draw() blends; a transparent page must not show through to the last sample
+            bitmap.eraseColor(Color.TRANSPARENT);
+            canvas.save();
+            canvas.scale((float) SAMPLE_SIZE / view.getWidth(), (float) SAMPLE_SIZE / view.getHeight());
+            view.draw(canvas);
+            canvas.restore();
+            KioskStats.onVisualCaptureCpu(Debug.threadCpuTimeNanos() - cpuStart);
+            sampleValid = true;
+            workHandler.post(analyzeRunnable);
+        }
+    }
+
+    /**
+     * Runs on the worker thread
+     */
+    private void analyze() {
+        if (sampleValid) {
+            long cpuStart = Debug.threadCpuTimeNanos();
+            bitmap.getPixels(pixels, 0, SAMPLE_SIZE, 0, 0, SAMPLE_SIZE, SAMPLE_SIZE);
+            Arrays.fill(bands, 0);
+            Arrays.fill(blockSums, 0);
+            int blockSize = SAMPLE_SIZE / HASH_GRID;
+            for (int y = 0; y < SAMPLE_SIZE; y++) {
+                int rowBlock = (y / blockSize) * HASH_GRID;
+                for (int x = 0; x < SAMPLE_SIZE; x++) {
+                    int color = pixels[y * SAMPLE_SIZE + x];
+                    // Integer Rec. 601 luma, 0-255
+                    int luma = (((color >> 16) & 0xff) * 77 + ((color >> 8) & 0xff) * 150 + (color & 0xff) * 29) >> 8;
+                    bands[luma * BRIGHTNESS_BANDS >> 8]++;
+                    blockSums[rowBlock + x / blockSize] += luma;
+                }
+            }
+            int maxBand = 0;
+            int total = 0;
+            for (int count : bands) {
+                maxBand = Math.max(maxBand, count);
+            }
+            for (int sum : blockSums) {
+                total += sum;
+            }
+            int mean = total / blockSums.length;
+            long hash = 0;
+            for (int i = 0; i < blockSums.length; i++) {
+                if (blockSums[i] > mean) {
+                    hash |= 1L << i;
+                }
+            }
+            sampleHash = hash;
+            sampleBlankRatio = (float) maxBand / pixels.length;
+            KioskStats.onVisualAnalyzeCpu(Debug.threadCpuTimeNanos() - cpuStart);
+        }
+        mainHandler.post(resultRunnable);
+    }
+
+    private void onResult() {
+        sampling = false;
+        if (!running || sampleGeneration != generation) {
+            return;
+        }
+        mainHandler.postDelayed(captureRunnable, checkIntervalMs());
+        if (!sampleValid) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        boolean blank = sampleBlankRatio >= BLANK_RATIO;
+        boolean same = hasLastHash && Long.bitCount(sampleHash ^ lastHash) <= SAME_HASH_MAX_BITS;
+        if (!same) {
+            unchangedSinceMs = now;
+        }
+        lastHash = sampleHash;
+        hasLastHash = true;
+        blankCount = blank ? blankCount + 1 : 0;
+        KioskStats.onVisualCheck(blank);
+
+        int reason = -1;
+        if (blankChecks > 0 && blankCount >= blankChecks * backoffFactor) {
+            reason = REASON_BLANK;
+        } else if (frozenAfterMs > 0 && now - unchangedSinceMs >= frozenAfterMs * backoffFactor) {
+            reason = REASON_FROZEN;
+        }
+        if (reason < 0) {
+            if (!blank && !same) {
+                backoffFactor = 1;
+            }
+            return;
+        }
+        Log.w(TAG, "Screen " + REASON_NAMES[reason] + " (blank ratio " + sampleBlankRatio + "), reloading");
+        backoffFactor = Math.min(backoffFactor * 2, MAX_BACKOFF_FACTOR);
+        KioskStats.onVisualRecovery(reason);
+        EventJournal.record(EventJournal.VISUAL_RECOVERY, reason, Math.round(sampleBlankRatio * 100));
+        reset();
+        listener.onUnhealthy(reason);
+    }
+}
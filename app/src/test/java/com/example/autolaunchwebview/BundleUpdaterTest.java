@@ -0,0 +1,293 @@
+package com.example.autolaunchwebview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+/**
+ * Delta updates against a local server publishing a manifest and objects/ by hash: what gets
+ * fetched, what gets verified, and that a failed update leaves the installed version alone.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class BundleUpdaterTest {
+    private static final String MANIFEST_PATH = "/site/manifest.json";
+    private static final String OBJECTS_PATH = "/site/objects/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private final Map<String, byte[]> objects = new HashMap<>();
+    private final List<String> fetched = Collections.synchronizedList(new ArrayList<>());
+    private volatile String manifest;
+    // Served with one byte flipped, or cut off half way
+    private volatile String corrupt;
+    private volatile String interrupt;
+    private File bundleDir;
+    private ContentBundleStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (MANIFEST_PATH.equals(path)) {
+                    return new MockResponse().setBody(manifest);
+                }
+                if (path == null || !path.startsWith(OBJECTS_PATH)) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                String sha256 = path.substring(OBJECTS_PATH.length());
+                fetched.add(sha256);
+                byte[] data = objects.get(sha256);
+                if (data == null) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                if (sha256.equals(corrupt)) {
+                    data = data.clone();
+                    data[data.length / 2] ^= 1;
+                }
+                MockResponse response = new MockResponse().setBody(new Buffer().write(data));
+                if (sha256.equals(interrupt)) {
+                    response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+                }
+                return response;
+            }
+        });
+        server.start();
+        bundleDir = folder.newFolder("bundles");
+        store = new ContentBundleStore(bundleDir, null);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void firstUpdateFetchesEveryDistinctObject() throws Exception {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("index.html", text("<html><script src=js/app.js></script></html>"));
+        files.put("js/app.js", randomBytes(300_000));
+        // Same content under two paths is one object
+        files.put("img/logo.svg", text("<svg/>"));
+        files.put("img/logo-copy.svg", text("<svg/>"));
+        publish("1", files);
+
+        BundleUpdater.Result result = updater().update();
+        assertTrue(result.installed);
+        assertEquals("1", result.version);
+        assertEquals(4, result.files);
+        assertEquals(3, result.filesFetched);
+        assertEquals(3, fetched.size());
+        assertEquals("1", store.getInstalledVersion());
+        assertEquals("1", store.getActiveVersion());
+        assertInstalled("1", files);
+        // Objects are only kept while an update is unfinished
+        String[] left = new File(bundleDir, "objects").list();
+        assertTrue(left == null || left.length == 0);
+    }
+
+    @Test
+    public void nextVersionFetchesOnlyWhatChanged() throws Exception {
+        Map<String, byte[]> v1 = new LinkedHashMap<>();
+        v1.put("index.html", text("<html>one</html>"));
+        v1.put("js/app.js", randomBytes(200_000));
+        publish("1", v1);
+        updater().update();
+
+        Map<String, byte[]> v2 = new LinkedHashMap<>(v1);
+        v2.put("index.html", text("<html>two</html>"));
+        v2.put("js/moved.js", v1.get("js/app.js"));
+        publish("2", v2);
+        fetched.clear();
+
+        BundleUpdater.Result result = updater().update();
+        assertTrue(result.installed);
+        assertEquals(1, result.filesFetched);
+        assertEquals(v2.get("index.html").length, result.bytesFetched);
+        assertEquals(Collections.singletonList(sha256(v2.get("index.html"))), fetched);
+        assertEquals("2", store.getInstalledVersion());
+        assertInstalled("2", v2);
+
+        // Nothing to do for a version already installed
+        fetched.clear();
+        assertFalse(updater().update().installed);
+        assertTrue(fetched.isEmpty());
+    }
+
+    @Test
+    public void corruptedObjectIsRejectedAndTheInstalledVersionKept() throws Exception {
+        Map<String, byte[]> v1 = new LinkedHashMap<>();
+        v1.put("index.html", text("<html>one</html>"));
+        publish("1", v1);
+        updater().update();
+
+        Map<String, byte[]> v2 = new LinkedHashMap<>();
+        v2.put("index.html", randomBytes(50_000));
+        publish("2", v2);
+        corrupt = sha256(v2.get("index.html"));
+        try {
+            updater().update();
+            fail("Corrupted object installed");
+        } catch (IOException expected) {
+            // Hash mismatch
+        }
+        assertEquals("1", store.getInstalledVersion());
+        assertFalse(new File(bundleDir, "2.zip").exists());
+        assertFalse(new File(new File(bundleDir, "objects"), corrupt).exists());
+
+        corrupt = null;
+        assertTrue(updater().update().installed);
+        assertInstalled("2", v2);
+    }
+
+    @Test
+    public void interruptedFetchIsResumedOnTheNextUpdate() throws Exception {
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        files.put("index.html", text("<html>loop</html>"));
+        files.put("video/intro.webm", randomBytes(500_000));
+        publish("1", files);
+        String intact = sha256(files.get("index.html"));
+        interrupt = sha256(files.get("video/intro.webm"));
+        try {
+            updater().update();
+            fail("Truncated object installed");
+        } catch (IOException expected) {
+            // Connection dropped mid-body
+        }
+        assertNull(store.getInstalledVersion());
+        File objectsDir = new File(bundleDir, "objects");
+        String[] parts = objectsDir.list((dir, name) -> name.endsWith(".part"));
+        assertTrue(parts == null || parts.length == 0);
+        // Whatever finished before the failure is verified from disk, not fetched again
+        boolean kept = new File(objectsDir, intact).exists();
+
+        interrupt = null;
+        fetched.clear();
+        BundleUpdater.Result result = updater().update();
+        assertTrue(result.installed);
+        assertEquals(kept ? 1 : 2, result.filesFetched);
+        assertEquals(kept ? 1 : 2, fetched.size());
+        assertInstalled("1", files);
+    }
+
+    @Test
+    public void manifestOnlyOverHttpsOrFromTheDeviceItself() throws Exception {
+        assertTrue(BundleUpdater.isTrustedManifestUrl(new URL("https://cdn.example.com/manifest.json")));
+        assertTrue(BundleUpdater.isTrustedManifestUrl(new URL("http://127.0.0.1:8080/manifest.json")));
+        assertTrue(BundleUpdater.isTrustedManifestUrl(new URL("http://localhost/manifest.json")));
+        assertTrue(BundleUpdater.isTrustedManifestUrl(new URL("http://[::1]/manifest.json")));
+        assertFalse(BundleUpdater.isTrustedManifestUrl(new URL("http://cdn.example.com/manifest.json")));
+        assertFalse(BundleUpdater.isTrustedManifestUrl(new URL("http://127.0.0.1.example.com/manifest.json")));
+
+        try {
+            new BundleUpdater(store, "http://cdn.example.com/manifest.json").update();
+            fail("Plain http manifest accepted");
+        } catch (IOException expected) {
+            // Refused before any request
+        }
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private BundleUpdater updater() {
+        return new BundleUpdater(store, server.url(MANIFEST_PATH).toString());
+    }
+
+    private void publish(String version, Map<String, byte[]> files) throws JSONException {
+        JSONArray list = new JSONArray();
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            String sha256 = sha256(file.getValue());
+            objects.put(sha256, file.getValue());
+            list.put(new JSONObject()
+                    .put("path", file.getKey())
+                    .put("sha256", sha256)
+                    .put("size", file.getValue().length));
+        }
+        manifest = new JSONObject().put("version", version).put("files", list).toString();
+    }
+
+    private void assertInstalled(String version, Map<String, byte[]> files) throws IOException {
+        ContentBundleStore.Bundle bundle = new ContentBundleStore.Bundle(
+                new File(bundleDir, version + ".zip"), version);
+        assertEquals(files.keySet(), bundle.entries.keySet());
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            ContentBundleStore.Entry entry = bundle.entries.get(file.getKey());
+            // Stored, so it can be served straight from the mapping
+            assertEquals(0, entry.method);
+            assertArrayEquals(file.getKey(), file.getValue(), readAll(bundle.open(entry)));
+        }
+    }
+
+    private static byte[] text(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
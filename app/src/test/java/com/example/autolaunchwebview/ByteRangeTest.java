@@ -0,0 +1,89 @@
+package com.example.autolaunchwebview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Range headers as a looping video element and odd clients send them, against a 1000 byte
+ * entry unless stated otherwise.
+ */
+public class ByteRangeTest {
+    private static final long LENGTH = 1000;
+
+    @Test
+    public void noHeaderIsTheWholeEntry() {
+        assertWhole(ByteRange.parse(null, LENGTH));
+    }
+
+    @Test
+    public void closedRange() {
+        assertPart(ByteRange.parse("bytes=100-199", LENGTH), 100, 199);
+        assertPart(ByteRange.parse("bytes= 0 - 0 ", LENGTH), 0, 0);
+    }
+
+    @Test
+    public void openEndedRangeRunsToTheEnd() {
+        // What a video element sends first
+        assertPart(ByteRange.parse("bytes=0-", LENGTH), 0, 999);
+        assertPart(ByteRange.parse("bytes=990-", LENGTH), 990, 999);
+    }
+
+    @Test
+    public void lastBytePastTheEndIsClamped() {
+        assertPart(ByteRange.parse("bytes=900-5000", LENGTH), 900, 999);
+    }
+
+    @Test
+    public void suffixRangeIsTheLastBytes() {
+        assertPart(ByteRange.parse("bytes=-100", LENGTH), 900, 999);
+        assertPart(ByteRange.parse("bytes=-5000", LENGTH), 0, 999);
+    }
+
+    @Test
+    public void invalidAndMalformedRangesAreIgnored() {
+        assertWhole(ByteRange.parse("bytes=500-100", LENGTH));
+        assertWhole(ByteRange.parse("bytes=-", LENGTH));
+        assertWhole(ByteRange.parse("bytes=abc-", LENGTH));
+        assertWhole(ByteRange.parse("bytes=5--3", LENGTH));
+        assertWhole(ByteRange.parse("bytes=+5-", LENGTH));
+        assertWhole(ByteRange.parse("bytes=5", LENGTH));
+        assertWhole(ByteRange.parse("bytes=99999999999999999999-", LENGTH));
+        assertWhole(ByteRange.parse("items=0-10", LENGTH));
+        // Several ranges would need a multipart body; the whole entry is a valid answer
+        assertWhole(ByteRange.parse("bytes=0-10,20-30", LENGTH));
+    }
+
+    @Test
+    public void rangeStartingPastTheEndIsUnsatisfiable() {
+        assertNull(ByteRange.parse("bytes=1000-", LENGTH));
+        assertNull(ByteRange.parse("bytes=1000-2000", LENGTH));
+        assertNull(ByteRange.parse("bytes=-0", LENGTH));
+    }
+
+    @Test
+    public void emptyEntryIsServedWholeButNoRangeOfItExists() {
+        ByteRange whole = ByteRange.parse(null, 0);
+        assertFalse(whole.partial);
+        assertEquals(0, whole.length());
+        assertFalse(ByteRange.parse("bytes=5-1", 0).partial);
+        assertNull(ByteRange.parse("bytes=0-", 0));
+        assertNull(ByteRange.parse("bytes=-10", 0));
+    }
+
+    private static void assertWhole(ByteRange range) {
+        assertFalse(range.partial);
+        assertEquals(0, range.start);
+        assertEquals(LENGTH - 1, range.end);
+    }
+
+    private static void assertPart(ByteRange range, long start, long end) {
+        assertTrue(range.partial);
+        assertEquals(start, range.start);
+        assertEquals(end, range.end);
+        assertEquals(end - start + 1, range.length());
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.autolaunchwebview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The zip reader behind content bundles, on plain JVM archives: central directory parsing,
+ * stored and deflated entries, and rejection of archives that must never be activated.
+ */
+public class ContentBundleStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsStoredAndDeflatedEntries() throws IOException {
+        byte[] html = "<html><body>kiosk</body></html>".getBytes(StandardCharsets.UTF_8);
+        byte[] script = randomText(200_000);
+        File archive = folder.newFile("1.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("js/"));
+            zip.closeEntry();
+            putStored(zip, "index.html", html);
+            zip.putNextEntry(new ZipEntry("js/app.js"));
+            zip.write(script);
+            zip.closeEntry();
+        }
+
+        ContentBundleStore.Bundle bundle = new ContentBundleStore.Bundle(archive, "1");
+        assertEquals(2, bundle.entries.size());
+        assertFalse(bundle.entries.containsKey("js/"));
+        assertEquals(0, bundle.entries.get("index.html").method);
+        assertEquals(8, bundle.entries.get("js/app.js").method);
+        assertArrayEquals(html, readAll(bundle.open(bundle.entries.get("index.html"))));
+        assertArrayEquals(script, readAll(bundle.open(bundle.entries.get("js/app.js"))));
+    }
+
+    @Test
+    public void skipsArchiveComment() throws IOException {
+        File archive = folder.newFile("2.zip");
+        try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(archive))) {
+            zip.setComment("built by publish_bundle.py");
+            putStored(zip, "index.html", new byte[] {1, 2, 3});
+        }
+        ContentBundleStore.Bundle bundle = new ContentBundleStore.Bundle(archive, "2");
+        assertArrayEquals(new byte[] {1, 2, 3}, readAll(bundle.open(bundle.entries.get("index.html"))));
+    }
+
+    @Test
+    public void rejectsFileThatIsNotAZip() throws IOException {
+        File archive = folder.newFile("3.zip");
+        try (FileOutputStream out = new FileOutputStream(archive)) {
+            out.write(randomText(4096));
+        }
+        assertRejected(archive);
+    }
+
+    @Test
+    public void rejectsCorruptCentralDirectory() throws IOException {
+        byte[] data = zipWith("index.html", randomText(1000));
+        // The central directory starts right after the only entry's data; break its signature
+        int cen = indexOf(data, new byte[] {0x50, 0x4b, 0x01, 0x02});
+        data[cen] = 0;
+        assertRejected(write("4.zip", data));
+    }
+
+    @Test
+    public void rejectsCorruptLocalHeader() throws IOException {
+        byte[] data = zipWith("index.html", randomText(1000));
+        data[0] = 0;
+        assertRejected(write("5.zip", data));
+    }
+
+    @Test
+    public void rejectsUnsupportedCompression() throws IOException {
+        byte[] data = zipWith("index.html", randomText(1000));
+        int cen = indexOf(data, new byte[] {0x50, 0x4b, 0x01, 0x02});
+        // Compression method 12 (bzip2)
+        data[cen + 10] = 12;
+        assertRejected(write("6.zip", data));
+    }
+
+    @Test
+    public void inflatesRawDeflateStream() throws IOException {
+        byte[] original = randomText(100_000);
+        byte[] deflated = rawDeflate(original);
+        try (InputStream in = new ContentBundleStore.RawInflaterInputStream(new ByteArrayInputStream(deflated))) {
+            assertArrayEquals(original, readAll(in));
+        }
+    }
+
+    @Test
+    public void inflatesEmptyEntry() throws IOException {
+        byte[] deflated = rawDeflate(new byte[0]);
+        try (InputStream in = new ContentBundleStore.RawInflaterInputStream(new ByteArrayInputStream(deflated))) {
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void truncatedDeflateStreamFailsInsteadOfEndingEarly() throws IOException {
+        byte[] deflated = rawDeflate(randomText(100_000));
+        byte[] truncated = Arrays.copyOf(deflated, deflated.length / 2);
+        try (InputStream in = new ContentBundleStore.RawInflaterInputStream(new ByteArrayInputStream(truncated))) {
+            readAll(in);
+            fail("Truncated entry read without error");
+        } catch (IOException expected) {
+            // A short page would be served as if it were complete
+        }
+    }
+
+    private void assertRejected(File archive) {
+        try {
+            new ContentBundleStore.Bundle(archive, "bad");
+            fail("Accepted " + archive.getName());
+        } catch (IOException | RuntimeException expected) {
+            // IndexOutOfBoundsException from the mapping also counts: never activated
+        }
+    }
+
+    private File write(String name, byte[] data) throws IOException {
+        File file = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
+
+    private static byte[] zipWith(String name, byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            putStored(zip, name, content);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void putStored(ZipOutputStream zip, String name, byte[] content) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(content.length);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        zip.write(content);
+        zip.closeEntry();
+    }
+
+    private static byte[] rawDeflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buf, 0, deflater.deflate(buf));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    // Compressible but not trivially so, like real page sources
+    private static byte[] randomText(int length) {
+        Random random = new Random(length);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(16));
+        }
+        return data;
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= data.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (data[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError("Pattern not found");
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.autolaunchwebview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.TimeZone;
+
+/**
+ * Dayparting rules compiled against a fixed clock. Robolectric only for org.json; the
+ * schedule itself is plain Java. Berlin because it has both DST transitions.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ContentScheduleTest {
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+    private static final long HOUR = 60 * 60 * 1000;
+
+    @Test
+    public void higherPriorityWinsAndTiesGoToTheFirstListed() throws JSONException {
+        ContentSchedule schedule = compile("2026-06-01T00:00", "{default: 'd', entries: ["
+                + "{url: 'all-day'},"
+                + "{url: 'lunch', start: '12:00', end: '13:00', priority: 1},"
+                + "{url: 'late-lunch', start: '12:30', end: '14:00', priority: 1},"
+                + "{url: 'low', start: '15:00', end: '16:00', priority: -1}]}");
+        assertEquals("all-day", schedule.urlAt(at("2026-06-01T11:59")));
+        assertEquals("lunch", schedule.urlAt(at("2026-06-01T12:00")));
+        assertEquals("lunch", schedule.urlAt(at("2026-06-01T12:45")));
+        assertEquals("late-lunch", schedule.urlAt(at("2026-06-01T13:00")));
+        assertEquals("all-day", schedule.urlAt(at("2026-06-01T14:00")));
+        assertEquals("all-day", schedule.urlAt(at("2026-06-01T15:30")));
+        assertEquals(at("2026-06-01T12:00"), schedule.nextTransition(at("2026-06-01T09:00")));
+        assertEquals(at("2026-06-01T13:00"), schedule.nextTransition(at("2026-06-01T12:45")));
+    }
+
+    @Test
+    public void endOfDayRunsToTheNextMidnight() throws JSONException {
+        ContentSchedule schedule = compile("2026-06-01T00:00",
+                "{default: 'd', entries: [{url: 'evening', start: '18:00', end: '24:00'}]}");
+        assertEquals("d", schedule.urlAt(at("2026-06-01T17:59")));
+        assertEquals("evening", schedule.urlAt(at("2026-06-01T23:59")));
+        assertEquals("d", schedule.urlAt(at("2026-06-02T00:00")));
+        assertEquals(at("2026-06-02T00:00"), schedule.nextTransition(at("2026-06-01T18:00")));
+    }
+
+    @Test
+    public void endAtOrBeforeStartRunsPastMidnight() throws JSONException {
+        ContentSchedule schedule = compile("2026-06-01T12:00",
+                "{entries: [{url: 'night', days: 'FRI', start: '22:00', end: '02:00'}]}");
+        // 2026-06-05 is a Friday; the entry belongs to Friday but ends on Saturday
+        assertEquals("night", schedule.urlAt(at("2026-06-06T01:59")));
+        assertNull(schedule.urlAt(at("2026-06-06T02:00")));
+        assertNull(schedule.urlAt(at("2026-06-06T22:30")));
+    }
+
+    @Test
+    public void wallClockTimesSurviveDstTransitions() throws JSONException {
+        ContentSchedule schedule = compile("2026-03-28T00:00",
+                "{default: 'd', entries: [{url: 'open', start: '09:00', end: '17:00'},"
+                        + "{url: 'whole-day', days: 'SUN', start: '00:00', end: '24:00', priority: 1}]}");
+        // Before the spring transition Berlin is UTC+1, after it UTC+2
+        assertEquals(at("2026-03-28T09:00"), schedule.nextTransition(at("2026-03-28T08:00")));
+        assertEquals(47 * HOUR, at("2026-03-30T09:00") - at("2026-03-28T09:00"));
+        assertEquals("d", schedule.urlAt(at("2026-03-30T08:59")));
+        assertEquals("open", schedule.urlAt(at("2026-03-30T09:00")));
+        // Sunday 2026-03-29 has 23 hours and the whole-day entry covers exactly them
+        assertEquals("whole-day", schedule.urlAt(at("2026-03-29T00:00")));
+        assertEquals(at("2026-03-30T00:00"), schedule.nextTransition(at("2026-03-29T00:00")));
+        assertEquals(23 * HOUR, at("2026-03-30T00:00") - at("2026-03-29T00:00"));
+
+        // Sunday 2026-10-25 has 25
+        ContentSchedule autumn = compile("2026-10-24T12:00",
+                "{default: 'd', entries: [{url: 'whole-day', days: 'SUN', start: '00:00', end: '24:00'}]}");
+        assertEquals(at("2026-10-25T00:00"), autumn.nextTransition(at("2026-10-24T12:00")));
+        assertEquals(at("2026-10-26T00:00"), autumn.nextTransition(at("2026-10-25T00:00")));
+        assertEquals(25 * HOUR, at("2026-10-26T00:00") - at("2026-10-25T00:00"));
+    }
+
+    @Test
+    public void datesLimitWhichDaysAnEntryApplies() throws JSONException {
+        ContentSchedule schedule = compile("2026-06-01T00:00", "{default: 'd', entries: ["
+                + "{url: 'promo', start: '10:00', end: '11:00', from: '2026-06-02', until: '2026-06-04',"
+                + " except: ['2026-06-03']}]}");
+        assertEquals("d", schedule.urlAt(at("2026-06-01T10:30")));
+        assertEquals("promo", schedule.urlAt(at("2026-06-02T10:30")));
+        assertEquals("d", schedule.urlAt(at("2026-06-03T10:30")));
+        assertEquals("promo", schedule.urlAt(at("2026-06-04T10:30")));
+        assertEquals("d", schedule.urlAt(at("2026-06-05T10:30")));
+    }
+
+    @Test
+    public void recompilesAtTheHorizon() throws JSONException {
+        long now = at("2026-06-01T12:00");
+        ContentSchedule schedule = compile("2026-06-01T12:00", "{default: 'd'}");
+        assertEquals(1, schedule.size());
+        assertEquals(schedule.getValidUntil(), schedule.nextTransition(now));
+        assertNull(compile("2026-06-01T12:00", "{}").urlAt(now));
+        assertTrue(schedule.getValidUntil() >= now + ContentSchedule.HORIZON_DAYS * 24 * HOUR);
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsTimePastEndOfDay() throws JSONException {
+        compile("2026-06-01T00:00", "{entries: [{url: 'x', start: '24:01'}]}");
+    }
+
+    @Test(expected = JSONException.class)
+    public void rejectsUnknownDay() throws JSONException {
+        compile("2026-06-01T00:00", "{entries: [{url: 'x', days: 'MON-FUN'}]}");
+    }
+
+    private static ContentSchedule compile(String now, String json) throws JSONException {
+        return ContentSchedule.compile(new JSONObject(json), at(now), TimeZone.getTimeZone(ZONE));
+    }
+
+    private static long at(String localTime) {
+        return LocalDateTime.parse(localTime).atZone(ZONE).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.autolaunchwebview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+
+/**
+ * Days of kiosk operation on a virtual clock. Each test prints its KioskSimulator report, so
+ * `./gradlew :app:testDebugUnitTest --tests '*KioskSimulationTest*' -i` shows how a watchdog
+ * change affects relaunches, wakeups and timer drift.
+ */
+@Ignore("Not yet run against an SDK; enable once the expected counts are confirmed")
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class KioskSimulationTest {
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    // Regression gates for the relaunch machinery's estimated energy (PowerAccounting costs).
+    // An idle day is one boot launch and one inactivity fire, about 1 mJ; an hourly
+    // backgrounding day is about 1.2 mJ per recovery.
+    private static final long IDLE_DAY_BUDGET_UJ = 5_000;
+    private static final long HOURLY_BACKGROUND_DAY_BUDGET_UJ = 50_000;
+
+    private KioskSimulator sim;
+
+    @Before
+    public void setUp() {
+        sim = new KioskSimulator();
+        sim.boot();
+        sim.advance(MINUTE);
+    }
+
+    @After
+    public void tearDown() {
+        sim.close();
+    }
+
+    @Test
+    public void bootLaunchesKioskOnceAfterOemDelay() {
+        KioskSimulator.Report report = finish("boot");
+        assertTrue(sim.isKioskResumed());
+        assertEquals(1, report.kioskLaunches);
+        assertEquals(1, report.bootTimer.firings);
+    }
+
+    @Test
+    public void idleDayFiresInactivityTimerOnce() {
+        sim.advance(DAY);
+        KioskSimulator.Report report = finish("idle day");
+        // Fires once after the boot launch, then nothing re-arms it until the next touch
+        assertEquals(1, report.inactivityFires);
+        assertEquals(1, report.kioskLaunches);
+        assertEquals(0, report.watchdogFires);
+        // The probe saw the arm that led to the fire
+        assertEquals(1, report.inactivityTimer.firings);
+        assertTrue("idle day cost " + report.watchdogEnergyUj() + " uJ",
+                report.watchdogEnergyUj() <= IDLE_DAY_BUDGET_UJ);
+    }
+
+    @Test
+    public void everyBackgroundingIsRecovered() {
+        for (int hour = 0; hour < 24; hour++) {
+            sim.leaveApp();
+            sim.advance(HOUR);
+            assertTrue("kiosk not back after hour " + hour, sim.isKioskResumed());
+        }
+        KioskSimulator.Report report = finish("hourly backgrounding");
+        assertEquals(1 + 24, report.kioskLaunches);
+        assertEquals(24, report.watchdogFires);
+        assertEquals(24, report.watchdogTimer.firings);
+        assertTrue("hourly backgrounding day cost " + report.watchdogEnergyUj() + " uJ",
+                report.watchdogEnergyUj() <= HOURLY_BACKGROUND_DAY_BUDGET_UJ);
+    }
+
+    @Test
+    public void callsRelaunchKioskOverInCallScreen() {
+        for (int i = 0; i < 10; i++) {
+            sim.advance(37 * MINUTE);
+            sim.incomingCall();
+            sim.advance(SECOND);
+            assertTrue("kiosk not back after call " + i, sim.isKioskResumed());
+        }
+        KioskSimulator.Report report = finish("incoming calls");
+        assertEquals(1 + 10, report.kioskLaunches);
+        // The call brought the kiosk back before the watchdog's 30 s ran out
+        assertEquals(0, report.watchdogFires);
+    }
+
+    @Test
+    public void threeScriptedDays() {
+        Random random = new Random(42);
+        for (int day = 0; day < 3; day++) {
+            // Opening hours: visitors tap in bursts, sometimes leave the kiosk in another app
+            for (int visit = 0; visit < 120; visit++) {
+                int taps = 1 + random.nextInt(8);
+                for (int tap = 0; tap < taps; tap++) {
+                    sim.touch();
+                    sim.advance(2 * SECOND + random.nextInt(10) * SECOND);
+                }
+                if (random.nextInt(20) == 0) {
+                    sim.leaveApp();
+                } else if (random.nextInt(60) == 0) {
+                    sim.incomingCall();
+                }
+                sim.advance(MINUTE + random.nextInt(6) * MINUTE);
+            }
+            // Overnight reboot scheduled by the device owner
+            sim.advance(6 * HOUR);
+            sim.boot();
+            sim.advance(8 * HOUR);
+            assertTrue("kiosk not up after day " + day, sim.isKioskResumed());
+        }
+        KioskSimulator.Report report = finish("three scripted days");
+        // Drift is always 0 on the paused looper, so it is only printed. What can go wrong
+        // here is a fire without an arm, or an activity kept alive across relaunches.
+        assertEquals(report.inactivityFires, report.inactivityTimer.firings);
+        assertEquals(report.watchdogFires, report.watchdogTimer.firings);
+        assertEquals(1 + 3, report.bootTimer.firings);
+        assertEquals(0, report.retainedActivities);
+    }
+
+    @Test
+    public void thermalThrottlingIsUndoneWhenCool() {
+        ThermalGovernor thermal = ThermalGovernor.get(RuntimeEnvironment.getApplication());
+        long severeBefore = thermal.getTimeInStatusMs(3);
+        // The SDK 28 sandbox has no thermal API; drive the governor the way PowerManager would
+        thermal.onStatusChanged(3);
+        assertEquals(2, thermal.getStep());
+        assertEquals(4, thermal.getStretchFactor());
+        sim.advance(HOUR);
+        assertTrue(sim.isKioskResumed());
+        thermal.onStatusChanged(0);
+        assertEquals(0, thermal.getStep());
+        assertEquals(1, thermal.getStretchFactor());
+        assertEquals(HOUR, thermal.getTimeInStatusMs(3) - severeBefore);
+        finish("one hot hour");
+    }
+
+    private KioskSimulator.Report finish(String scenario) {
+        KioskSimulator.Report report = sim.report();
+        System.out.println(scenario + ": " + report);
+        return report;
+    }
+}
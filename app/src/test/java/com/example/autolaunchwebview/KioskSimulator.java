@@ -0,0 +1,492 @@
+package com.example.autolaunchwebview;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.webkit.WebView;
+
+import com.example.autolaunchwebview.watchdog.BootDelayPolicy;
+
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs the kiosk under Robolectric's paused looper with a virtual clock, so days of operation
+ * take seconds. Scenarios call touch(), leaveApp(), incomingCall(), boot() and advance(); the
+ * simulator plays the parts of the system the app depends on: it turns recorded startActivity
+ * calls into real MainActivity lifecycles, creates InactivityMonitorService when it is started,
+ * reports our process as foreground or not, and delivers the ProcessLifecycleOwner events
+ * (whose initializer doesn't run under Robolectric). report() sums up what happened.
+ */
+class KioskSimulator {
+    // Real time allowed for the io pool to drain between virtual steps
+    private static final long SETTLE_TIMEOUT_MS = 10_000;
+
+    /**
+     * Counters for one simulated run
+     */
+    static class Report {
+        long virtualMs;
+        long wallMs;
+        long kioskLaunches;
+        long activityCreations;
+        long otherActivityStarts;
+        long launchRequests;
+        long launched;
+        long skippedResumed;
+        long coalesced;
+        long mainLooperMessages;
+        long wakeups;
+        long inactivityFires;
+        long watchdogFires;
+        long foregroundChecks;
+        TimerProbe inactivityTimer;
+        TimerProbe watchdogTimer;
+        TimerProbe bootTimer;
+        int retainedActivities;
+        // Estimated microjoules per PowerAccounting subsystem
+        final long[] energyUj = new long[PowerAccounting.SUBSYSTEM_NAMES.length];
+
+        /**
+         * Energy of the relaunch machinery itself: watchdog, inactivity timer and launches
+         */
+        long watchdogEnergyUj() {
+            return energyUj[PowerAccounting.SUBSYSTEM_WATCHDOG]
+                    + energyUj[PowerAccounting.SUBSYSTEM_INACTIVITY]
+                    + energyUj[PowerAccounting.SUBSYSTEM_LAUNCH];
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "simulated %.1f h in %d ms\n"
+                            + "  kiosk launches %d (activity creations %d, other activity starts %d)\n"
+                            + "  launch requests %d: launched %d, skipped_resumed %d, coalesced %d\n"
+                            + "  main looper messages %d, wakeups %d\n"
+                            + "  timer fires: inactivity %d, watchdog %d; foreground checks %d\n"
+                            + "  drift: %s, %s, %s\n"
+                            + "  destroyed activities still reachable %d\n"
+                            + "  estimated energy %s",
+                    virtualMs / 3_600_000.0, wallMs,
+                    kioskLaunches, activityCreations, otherActivityStarts,
+                    launchRequests, launched, skippedResumed, coalesced,
+                    mainLooperMessages, wakeups,
+                    inactivityFires, watchdogFires, foregroundChecks,
+                    inactivityTimer, watchdogTimer, bootTimer,
+                    retainedActivities, formatEnergy());
+        }
+
+        private String formatEnergy() {
+            StringBuilder out = new StringBuilder();
+            for (int i = 0; i < energyUj.length; i++) {
+                if (i > 0) {
+                    out.append(", ");
+                }
+                out.append(PowerAccounting.SUBSYSTEM_NAMES[i]).append(' ').append(energyUj[i] / 1000).append(" mJ");
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * Timer drift: how late a timer fired relative to when it was last armed plus its delay.
+     * Arming and firing are read from counters the app already keeps.
+     */
+    static class TimerProbe {
+        private final String name;
+        private final long delayMs;
+        private final LongSupplier arms;
+        private final LongSupplier fires;
+        private long lastArms;
+        private long lastFires;
+        private long armedAt = -1;
+        int firings;
+        long maxDriftMs;
+        long totalDriftMs;
+
+        TimerProbe(String name, long delayMs, LongSupplier arms, LongSupplier fires) {
+            this.name = name;
+            this.delayMs = delayMs;
+            this.arms = arms;
+            this.fires = fires;
+            lastArms = arms.getAsLong();
+            lastFires = fires.getAsLong();
+        }
+
+        void observe(long now) {
+            long a = arms.getAsLong();
+            if (a != lastArms) {
+                lastArms = a;
+                armedAt = now;
+            }
+            long f = fires.getAsLong();
+            if (f != lastFires) {
+                lastFires = f;
+                if (armedAt >= 0) {
+                    long drift = now - (armedAt + delayMs);
+                    firings++;
+                    maxDriftMs = Math.max(maxDriftMs, drift);
+                    totalDriftMs += drift;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + " max " + maxDriftMs + " ms over " + firings;
+        }
+    }
+
+    private final Application app = RuntimeEnvironment.getApplication();
+    private final ShadowLooper mainLooper = shadowOf(Looper.getMainLooper());
+    private final long startUptime = SystemClock.uptimeMillis();
+    private final long startWallNs = System.nanoTime();
+
+    private final long startRequests = totalRequests();
+    private final long startLaunched = KioskStats.getLaunchOutcomeCount(KioskStats.OUTCOME_LAUNCHED);
+    private final long startSkipped = KioskStats.getLaunchOutcomeCount(KioskStats.OUTCOME_SKIPPED_RESUMED);
+    private final long startCoalesced = KioskStats.getLaunchOutcomeCount(KioskStats.OUTCOME_COALESCED);
+    private final long startInactivityFires = KioskStats.getInactivityTimerFires();
+    private final long startWatchdogFires = KioskStats.getWatchdogTimerFires();
+    private final long startForegroundChecks = KioskStats.getForegroundChecks();
+    private final long[] startEnergyUj = energy();
+
+    private final TimerProbe inactivityTimer = new TimerProbe("inactivity", MainActivity.INACTIVITY_TIMEOUT_MS,
+            KioskStats::getInactivityTimerResets, KioskStats::getInactivityTimerFires);
+    private final TimerProbe watchdogTimer = new TimerProbe("watchdog", InactivityMonitorService.WATCHDOG_DELAY_MS,
+            KioskStats::getWatchdogTimerArms, KioskStats::getWatchdogTimerFires);
+    private long boots;
+    private final TimerProbe bootTimer = new TimerProbe("boot",
+            BootDelayPolicy.delayMsForManufacturer(Build.MANUFACTURER),
+            () -> boots, () -> KioskStats.getRelaunchCount(KioskStats.Trigger.BOOT));
+
+    private ActivityController<MainActivity> activity;
+    private ServiceController<InactivityMonitorService> service;
+    private boolean resumed;
+    private int serviceStartId;
+    private long kioskLaunches;
+    private long activityCreations;
+    private long otherActivityStarts;
+    private long messages;
+    private long wakeups;
+    private long lastDispatchAt = -1;
+
+    KioskSimulator() {
+        LaunchCoordinator.reset();
+        setForeground(false);
+    }
+
+    /**
+     * Power on: whatever ran before is gone, and BOOT_COMPLETED arrives
+     */
+    void boot() {
+        killProcess();
+        boots++;
+        new BootReceiver().onReceive(app, new Intent(Intent.ACTION_BOOT_COMPLETED));
+        observe();
+    }
+
+    /**
+     * A tap on the page; ignored unless the kiosk is on screen
+     */
+    void touch() {
+        if (!resumed) {
+            return;
+        }
+        WebView webView = activity.get().findViewById(R.id.webView);
+        long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, 10, 10, 0);
+        MotionEvent up = MotionEvent.obtain(now, now, MotionEvent.ACTION_UP, 10, 10, 0);
+        webView.dispatchTouchEvent(down);
+        webView.dispatchTouchEvent(up);
+        down.recycle();
+        up.recycle();
+        observe();
+    }
+
+    /**
+     * Someone presses Home or opens another app over the kiosk
+     */
+    void leaveApp() {
+        if (!resumed) {
+            return;
+        }
+        activity.pause().stop();
+        resumed = false;
+        setForeground(false);
+        if (service != null) {
+            service.get().onAppBackgrounded();
+        }
+        observe();
+    }
+
+    /**
+     * A call rings: the in-call screen covers the kiosk, then MyInCallService asks for it back
+     */
+    void incomingCall() {
+        leaveApp();
+        Robolectric.buildService(MyInCallService.class).create().get().onCallAdded(null);
+        observe();
+    }
+
+    /**
+     * Run everything scheduled in the next durationMs of virtual time, in order
+     */
+    void advance(long durationMs) {
+        long end = SystemClock.uptimeMillis() + durationMs;
+        while (true) {
+            settle();
+            if (!mainLooper.isIdle()) {
+                dispatchOne();
+                continue;
+            }
+            long next = nextScheduledTime();
+            if (next < 0 || next > end) {
+                break;
+            }
+            advanceClockTo(next);
+        }
+        advanceClockTo(end);
+        settle();
+    }
+
+    boolean isKioskResumed() {
+        return resumed;
+    }
+
+    Report report() {
+        Report report = new Report();
+        report.virtualMs = SystemClock.uptimeMillis() - startUptime;
+        report.wallMs = (System.nanoTime() - startWallNs) / 1_000_000;
+        report.kioskLaunches = kioskLaunches;
+        report.activityCreations = activityCreations;
+        report.otherActivityStarts = otherActivityStarts;
+        report.launchRequests = totalRequests() - startRequests;
+        report.launched = KioskStats.getLaunchOutcomeCount(KioskStats.OUTCOME_LAUNCHED) - startLaunched;
+        report.skippedResumed = KioskStats.getLaunchOutcomeCount(KioskStats.OUTCOME_SKIPPED_RESUMED) - startSkipped;
+        report.coalesced = KioskStats.getLaunchOutcomeCount(KioskStats.OUTCOME_COALESCED) - startCoalesced;
+        report.mainLooperMessages = messages;
+        report.wakeups = wakeups;
+        report.inactivityFires = KioskStats.getInactivityTimerFires() - startInactivityFires;
+        report.watchdogFires = KioskStats.getWatchdogTimerFires() - startWatchdogFires;
+        report.foregroundChecks = KioskStats.getForegroundChecks() - startForegroundChecks;
+        report.inactivityTimer = inactivityTimer;
+        report.watchdogTimer = watchdogTimer;
+        report.bootTimer = bootTimer;
+        report.retainedActivities = TaskScope.getRetainedActivities(true);
+        long[] energy = energy();
+        for (int i = 0; i < energy.length; i++) {
+            report.energyUj[i] = energy[i] - startEnergyUj[i];
+        }
+        return report;
+    }
+
+    /**
+     * Tear down the activity and service so the next test starts clean
+     */
+    void close() {
+        killProcess();
+        settle();
+    }
+
+    private void dispatchOne() {
+        long now = SystemClock.uptimeMillis();
+        if (now != lastDispatchAt) {
+            // First message at a new instant: the looper had to wake up for it
+            wakeups++;
+            lastDispatchAt = now;
+        }
+        mainLooper.runOneTask();
+        messages++;
+        observe();
+    }
+
+    /**
+     * Let everything off the main thread catch up: the io pool, HandlerThreads, and the
+     * activity and service starts they requested
+     */
+    private void settle() {
+        boolean busy;
+        do {
+            awaitIo();
+            busy = false;
+            for (Looper looper : ShadowLooper.getAllLoopers()) {
+                if (looper == Looper.getMainLooper() || !looper.getThread().isAlive()) {
+                    continue;
+                }
+                ShadowLooper background = shadowOf(looper);
+                if (!background.isIdle()) {
+                    background.idle();
+                    busy = true;
+                }
+            }
+            busy |= deliverStarts();
+        } while (busy);
+    }
+
+    private void awaitIo() {
+        ThreadPoolExecutor io = (ThreadPoolExecutor) KioskExecutors.io();
+        long deadline = System.currentTimeMillis() + SETTLE_TIMEOUT_MS;
+        while (io.getTaskCount() != io.getCompletedTaskCount()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("io pool still busy after " + SETTLE_TIMEOUT_MS + " ms");
+            }
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    /**
+     * Act as the system for startActivity/startService calls the app made
+     */
+    private boolean deliverStarts() {
+        boolean delivered = false;
+        Intent intent;
+        while ((intent = shadowOf(app).getNextStartedService()) != null) {
+            if (isComponent(intent, InactivityMonitorService.class)) {
+                startService(intent);
+                delivered = true;
+            }
+        }
+        while ((intent = shadowOf(app).getNextStartedActivity()) != null) {
+            // LaunchActivity only forwards to MainActivity
+            if (isComponent(intent, MainActivity.class) || isComponent(intent, LaunchActivity.class)) {
+                kioskLaunches++;
+                showKiosk(intent);
+                delivered = true;
+            } else {
+                // Settings screens and permission prompts
+                otherActivityStarts++;
+            }
+        }
+        return delivered;
+    }
+
+    private void showKiosk(Intent intent) {
+        if (resumed) {
+            activity.newIntent(intent);
+        } else if (activity == null) {
+            activity = Robolectric.buildActivity(MainActivity.class, intent).setup();
+            activityCreations++;
+        } else {
+            activity.restart().resume();
+        }
+        resumed = true;
+        setForeground(true);
+        if (service != null) {
+            service.get().onAppForegrounded();
+        }
+        observe();
+    }
+
+    private void startService(Intent intent) {
+        if (service == null) {
+            service = Robolectric.buildService(InactivityMonitorService.class, intent).create();
+        }
+        service.startCommand(0, ++serviceStartId);
+    }
+
+    private void killProcess() {
+        if (activity != null) {
+            if (resumed) {
+                activity.pause();
+            }
+            activity.stop().destroy();
+            activity = null;
+            resumed = false;
+        }
+        if (service != null) {
+            service.destroy();
+            service = null;
+        }
+        LaunchCoordinator.reset();
+        setForeground(false);
+    }
+
+    /**
+     * What getRunningAppProcesses() shows InactivityMonitorService for our process
+     */
+    private void setForeground(boolean foreground) {
+        ActivityManager.RunningAppProcessInfo info = new ActivityManager.RunningAppProcessInfo();
+        info.processName = app.getPackageName();
+        info.importance = foreground
+                ? ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND
+                : ActivityManager.RunningAppProcessInfo.IMPORTANCE_CACHED;
+        ActivityManager activityManager = (ActivityManager) app.getSystemService(Context.ACTIVITY_SERVICE);
+        shadowOf(activityManager).setProcesses(Collections.singletonList(info));
+    }
+
+    /**
+     * Earliest pending message on any live looper, or -1
+     */
+    private long nextScheduledTime() {
+        long next = -1;
+        for (Looper looper : ShadowLooper.getAllLoopers()) {
+            if (!looper.getThread().isAlive() && looper != Looper.getMainLooper()) {
+                continue;
+            }
+            Duration at = shadowOf(looper).getNextScheduledTaskTime();
+            if (!at.isZero() && (next < 0 || at.toMillis() < next)) {
+                next = at.toMillis();
+            }
+        }
+        return next;
+    }
+
+    private static void advanceClockTo(long uptimeMs) {
+        long now = SystemClock.uptimeMillis();
+        if (uptimeMs > now) {
+            ShadowSystemClock.advanceBy(Duration.ofMillis(uptimeMs - now));
+        }
+    }
+
+    private void observe() {
+        long now = SystemClock.uptimeMillis();
+        inactivityTimer.observe(now);
+        watchdogTimer.observe(now);
+        bootTimer.observe(now);
+    }
+
+    private static boolean isComponent(Intent intent, Class<?> cls) {
+        ComponentName component = intent.getComponent();
+        return component != null && cls.getName().equals(component.getClassName());
+    }
+
+    private static long[] energy() {
+        long[] energy = new long[PowerAccounting.SUBSYSTEM_NAMES.length];
+        for (int i = 0; i < energy.length; i++) {
+            energy[i] = PowerAccounting.getEnergyMicrojoules(i);
+        }
+        return energy;
+    }
+
+    private static long totalRequests() {
+        long total = 0;
+        for (KioskStats.Trigger trigger : KioskStats.Trigger.values()) {
+            total += KioskStats.getRelaunchCount(trigger);
+        }
+        return total;
+    }
+}
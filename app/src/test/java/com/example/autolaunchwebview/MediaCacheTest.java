@@ -0,0 +1,275 @@
+package com.example.autolaunchwebview;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.net.Uri;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * The media cache against a local server: serving while filling, ranges over cached entries,
+ * size accounting and eviction, error backoff, and the stale entry handoff on a new run.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class MediaCacheTest {
+    private static final long WAIT_MS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MockWebServer server = new MockWebServer();
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        server.start();
+        dir = folder.newFolder("media");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void servesWhileFillingThenRangesFromDisk() throws Exception {
+        byte[] body = randomBytes(200_000);
+        server.enqueue(media(body, "\"v1\""));
+        MediaCache cache = new MediaCache(dir, 1_000_000);
+        String url = url("loop.mp4");
+
+        WebResourceResponse whole = cache.intercept(get(url, null));
+        assertEquals(200, whole.getStatusCode());
+        assertEquals("video/mp4", whole.getMimeType());
+        assertEquals("200000", whole.getResponseHeaders().get("Content-Length"));
+        assertArrayEquals(body, readAll(whole));
+        awaitDataFiles(1);
+
+        WebResourceResponse part = cache.intercept(get(url, "bytes=1000-1999"));
+        assertEquals(206, part.getStatusCode());
+        assertEquals("bytes 1000-1999/200000", part.getResponseHeaders().get("Content-Range"));
+        assertArrayEquals(Arrays.copyOfRange(body, 1000, 2000), readAll(part));
+
+        WebResourceResponse suffix = cache.intercept(get(url, "bytes=-10"));
+        assertArrayEquals(Arrays.copyOfRange(body, 199_990, 200_000), readAll(suffix));
+
+        WebResourceResponse beyond = cache.intercept(get(url, "bytes=200000-"));
+        assertEquals(416, beyond.getStatusCode());
+        assertEquals("bytes */200000", beyond.getResponseHeaders().get("Content-Range"));
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(200_000, cache.getSizeBytes());
+    }
+
+    @Test
+    public void emptyEntryIsServedButNoRangeOfIt() throws Exception {
+        server.enqueue(media(new byte[0], null));
+        MediaCache cache = new MediaCache(dir, 1_000_000);
+        String url = url("silence.mp3");
+
+        WebResourceResponse whole = cache.intercept(get(url, null));
+        assertEquals(200, whole.getStatusCode());
+        assertEquals(0, readAll(whole).length);
+        awaitDataFiles(1);
+        WebResourceResponse range = cache.intercept(get(url, "bytes=0-"));
+        assertEquals(416, range.getStatusCode());
+        assertEquals("bytes */0", range.getResponseHeaders().get("Content-Range"));
+    }
+
+    @Test
+    public void errorResponsesAreLeftToTheNetworkForABackoff() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        MediaCache cache = new MediaCache(dir, 1_000_000);
+        String url = url("missing.mp4");
+
+        assertNull(cache.intercept(get(url, null)));
+        assertNull(cache.intercept(get(url, null)));
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    public void fillReservesItsLengthAndEvictsOnlyIdleEntries() throws Exception {
+        MediaCache cache = new MediaCache(dir, 300_000);
+        byte[] a = randomBytes(100_000);
+        server.enqueue(media(a, null));
+        readAll(cache.intercept(get(url("a.mp4"), null)));
+        awaitDataFiles(1);
+
+        // Keep a reader on a, so it can't be evicted
+        WebResourceResponse held = cache.intercept(get(url("a.mp4"), null));
+        server.enqueue(media(randomBytes(150_000), null));
+        readAll(cache.intercept(get(url("b.mp4"), null)));
+        awaitDataFiles(2);
+        assertEquals(250_000, cache.getSizeBytes());
+
+        // c counts in full as soon as its headers are in: 400k, so b (idle) goes and a (held) stays
+        server.enqueue(media(randomBytes(150_000), null));
+        WebResourceResponse c = cache.intercept(get(url("c.mp4"), null));
+        assertEquals(250_000, cache.getSizeBytes());
+        readAll(c);
+        awaitDataFiles(2);
+        assertArrayEquals(a, readAll(held));
+
+        // a is still on disk, b has to come from the server again
+        readAll(cache.intercept(get(url("a.mp4"), null)));
+        assertEquals(3, server.getRequestCount());
+        server.enqueue(media(randomBytes(150_000), null));
+        readAll(cache.intercept(get(url("b.mp4"), null)));
+        assertEquals(4, server.getRequestCount());
+        awaitDataFiles(2);
+    }
+
+    @Test
+    public void changedEntryIsRefetchedOnceNobodyReadsIt() throws Exception {
+        byte[] v1 = randomBytes(50_000);
+        byte[] v2 = randomBytes(60_000);
+        String url = url("promo.webm");
+        server.enqueue(media(v1, "\"v1\""));
+        readAll(new MediaCache(dir, 1_000_000).intercept(get(url, null)));
+        awaitDataFiles(1);
+        server.takeRequest();
+
+        // Next run: served from disk while a HEAD asks whether it changed
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v2\""));
+        server.enqueue(media(v2, "\"v2\""));
+        MediaCache cache = new MediaCache(dir, 1_000_000);
+        WebResourceResponse reading = cache.intercept(get(url, null));
+        RecordedRequest head = server.takeRequest(WAIT_MS, TimeUnit.MILLISECONDS);
+        assertNotNull(head);
+        assertEquals("HEAD", head.getMethod());
+        assertEquals("\"v1\"", head.getHeader("If-None-Match"));
+
+        // Still being read, so the old version keeps being served
+        assertArrayEquals(v1, readAll(cache.intercept(get(url, null))));
+        assertArrayEquals(v1, readAll(reading));
+
+        byte[] served = v1;
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (Arrays.equals(served, v1) && System.currentTimeMillis() < deadline) {
+            // The HEAD answer may not have been handled yet
+            Thread.sleep(20);
+            served = readAll(cache.intercept(get(url, null)));
+        }
+        assertArrayEquals(v2, served);
+        awaitDataFiles(1);
+        assertEquals(3, server.getRequestCount());
+        assertEquals(60_000, cache.getSizeBytes());
+    }
+
+    private String url(String name) {
+        return server.url("/media/" + name).toString();
+    }
+
+    private static MockResponse media(byte[] body, String etag) {
+        MockResponse response = new MockResponse()
+                .setHeader("Content-Type", "video/mp4")
+                .setBody(new Buffer().write(body));
+        if (etag != null) {
+            response.setHeader("ETag", etag);
+        }
+        return response;
+    }
+
+    private static WebResourceRequest get(String url, String range) {
+        Map<String, String> headers = new HashMap<>();
+        if (range != null) {
+            headers.put("Range", range);
+        }
+        return new WebResourceRequest() {
+            @Override
+            public Uri getUrl() {
+                return Uri.parse(url);
+            }
+
+            @Override
+            public boolean isForMainFrame() {
+                return false;
+            }
+
+            @Override
+            public boolean isRedirect() {
+                return false;
+            }
+
+            @Override
+            public boolean hasGesture() {
+                return false;
+            }
+
+            @Override
+            public String getMethod() {
+                return "GET";
+            }
+
+            @Override
+            public Map<String, String> getRequestHeaders() {
+                return headers;
+            }
+        };
+    }
+
+    /**
+     * A download is committed (renamed from .part) just after its last byte was served
+     */
+    private void awaitDataFiles(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (dataFiles() != count) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError(dataFiles() + " cached files, expected " + count);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private int dataFiles() {
+        String[] names = dir.list((parent, name) -> name.endsWith(".data"));
+        return names != null ? names.length : 0;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static byte[] readAll(WebResourceResponse response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = response.getData()) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                out.write(buf, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.autolaunchwebview;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The thermal governor on SDK 28, which has no thermal API, driven the way PowerManager's
+ * listener would drive it on Q and later.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class ThermalGovernorTest {
+    private static final long MINUTE = 60 * 1000;
+
+    private ThermalGovernor thermal;
+    private final List<Integer> steps = new ArrayList<>();
+    private final ThermalGovernor.Listener listener = steps::add;
+
+    @Before
+    public void setUp() {
+        thermal = ThermalGovernor.get(RuntimeEnvironment.getApplication());
+        // The instance outlives a single test
+        thermal.onStatusChanged(0);
+        thermal.addListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        thermal.removeListener(listener);
+        thermal.onStatusChanged(0);
+    }
+
+    @Test
+    public void lightIsIgnoredAndModerateAndAboveEachAddAStep() {
+        assertEquals(0, ThermalGovernor.stepFor(0));
+        assertEquals(0, ThermalGovernor.stepFor(1));
+        assertEquals(1, ThermalGovernor.stepFor(2));
+        assertEquals(2, ThermalGovernor.stepFor(3));
+        assertEquals(3, ThermalGovernor.stepFor(4));
+        assertEquals(ThermalGovernor.MAX_STEP, ThermalGovernor.stepFor(6));
+    }
+
+    @Test
+    public void listenersHearEveryStepChangeThroughRiseAndRecovery() {
+        thermal.onStatusChanged(1);
+        thermal.onStatusChanged(2);
+        assertEquals(2, thermal.getStretchFactor());
+        thermal.onStatusChanged(4);
+        assertEquals(8, thermal.getStretchFactor());
+        thermal.onStatusChanged(5);
+        thermal.onStatusChanged(3);
+        thermal.onStatusChanged(1);
+        // Light warmth and emergency beyond critical don't change the step, so aren't reported
+        assertEquals(Arrays.asList(1, 3, 2, 0), steps);
+        assertEquals(0, thermal.getStep());
+        assertEquals(1, thermal.getStretchFactor());
+        assertEquals(1, thermal.getStatus());
+    }
+
+    @Test
+    public void outOfRangeStatusIsClamped() {
+        thermal.onStatusChanged(99);
+        assertEquals(ThermalGovernor.STATUS_NAMES.length - 1, thermal.getStatus());
+        assertEquals(ThermalGovernor.MAX_STEP, thermal.getStep());
+        thermal.onStatusChanged(-1);
+        assertEquals(0, thermal.getStatus());
+        assertEquals(Arrays.asList(ThermalGovernor.MAX_STEP, 0), steps);
+    }
+
+    @Test
+    public void keepsTimeInEachStatus() {
+        long noneBefore = thermal.getTimeInStatusMs(0);
+        long severeBefore = thermal.getTimeInStatusMs(3);
+        ShadowSystemClock.advanceBy(Duration.ofMillis(MINUTE));
+        thermal.onStatusChanged(3);
+        ShadowSystemClock.advanceBy(Duration.ofMillis(10 * MINUTE));
+        // The current stretch counts before the status changes again
+        assertEquals(severeBefore + 10 * MINUTE, thermal.getTimeInStatusMs(3));
+        thermal.onStatusChanged(0);
+        ShadowSystemClock.advanceBy(Duration.ofMillis(5 * MINUTE));
+        assertEquals(severeBefore + 10 * MINUTE, thermal.getTimeInStatusMs(3));
+        assertEquals(noneBefore + 6 * MINUTE, thermal.getTimeInStatusMs(0));
+    }
+}
@@ -21,4 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "AutoLaunch Signage"
 include(":app")
+include(":watchdog-core")
+include(":watchdog-bench")
  
\ No newline at end of file
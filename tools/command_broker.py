@@ -0,0 +1,166 @@
+#!/usr/bin/env python3
+"""Local stand-in for the management server CommandChannel connects to.
+
+Accepts kiosk WebSocket connections, sends every command typed on stdin to all of them and
+prints acks with the round-trip time. Standard library only.
+
+    python3 tools/command_broker.py --port 8765
+    adb reverse tcp:8765 tcp:8765
+    adb shell am start -n com.example.autolaunchwebview/.DebugActivity \
+        --es command_url ws://127.0.0.1:8765/
+
+Commands: reload | set_url <url> | clear_cache | dump_diagnostics | restart
+"""
+import argparse
+import base64
+import hashlib
+import json
+import socket
+import struct
+import sys
+import threading
+import time
+
+GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11"
+OP_TEXT, OP_CLOSE, OP_PING, OP_PONG = 0x1, 0x8, 0x9, 0xA
+
+clients = []
+clients_lock = threading.Lock()
+sent_at = {}
+
+
+def recv_exact(conn, n):
+    data = b""
+    while len(data) < n:
+        chunk = conn.recv(n - len(data))
+        if not chunk:
+            raise ConnectionError("closed")
+        data += chunk
+    return data
+
+
+def read_frame(conn):
+    b0, b1 = recv_exact(conn, 2)
+    opcode = b0 & 0x0F
+    length = b1 & 0x7F
+    if length == 126:
+        length = struct.unpack(">H", recv_exact(conn, 2))[0]
+    elif length == 127:
+        length = struct.unpack(">Q", recv_exact(conn, 8))[0]
+    mask = recv_exact(conn, 4) if b1 & 0x80 else None
+    payload = recv_exact(conn, length)
+    if mask:
+        payload = bytes(b ^ mask[i % 4] for i, b in enumerate(payload))
+    return opcode, payload
+
+
+def write_frame(conn, opcode, payload):
+    header = bytes([0x80 | opcode])
+    if len(payload) < 126:
+        header += bytes([len(payload)])
+    elif len(payload) < 65536:
+        header += bytes([126]) + struct.pack(">H", len(payload))
+    else:
+        header += bytes([127]) + struct.pack(">Q", len(payload))
+    conn.sendall(header + payload)
+
+
+def handshake(conn):
+    request = b""
+    while b"\r\n\r\n" not in request:
+        chunk = conn.recv(4096)
+        if not chunk:
+            raise ConnectionError("closed during handshake")
+        request += chunk
+    headers = {}
+    for line in request.decode("latin-1").split("\r\n")[1:]:
+        if ":" in line:
+            name, value = line.split(":", 1)
+            headers[name.strip().lower()] = value.strip()
+    accept = base64.b64encode(hashlib.sha1((headers["sec-websocket-key"] + GUID).encode()).digest()).decode()
+    conn.sendall(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                  "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").encode())
+    return headers.get("authorization")
+
+
+def serve(conn, address):
+    try:
+        auth = handshake(conn)
+        print("connected %s%s" % (address[0], " (" + auth + ")" if auth else ""), flush=True)
+        with clients_lock:
+            clients.append(conn)
+        while True:
+            opcode, payload = read_frame(conn)
+            if opcode == OP_PING:
+                write_frame(conn, OP_PONG, payload)
+            elif opcode == OP_CLOSE:
+                write_frame(conn, OP_CLOSE, payload[:2])
+                break
+            elif opcode == OP_TEXT:
+                on_message(address, json.loads(payload.decode()))
+    except (ConnectionError, OSError) as e:
+        print("connection %s lost: %s" % (address[0], e), flush=True)
+    finally:
+        with clients_lock:
+            if conn in clients:
+                clients.remove(conn)
+        conn.close()
+        print("disconnected %s" % address[0], flush=True)
+
+
+def on_message(address, message):
+    kind = message.get("type")
+    if kind == "ack":
+        for ack in message["acks"]:
+            started = sent_at.get(ack["id"])
+            rtt = " %.0f ms" % ((time.monotonic() - started) * 1000) if started else ""
+            status = "ok" if ack["ok"] else "error: " + ack.get("error", "")
+            print("ack %s %s%s" % (ack["id"], status, rtt), flush=True)
+    elif kind == "result":
+        print("result %s:\n%s" % (message["id"], message["body"]), flush=True)
+    else:
+        print("%s %s" % (address[0], json.dumps(message)), flush=True)
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("--port", type=int, default=8765)
+    args = parser.parse_args()
+
+    server = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
+    server.setsockopt(socket.SOL_SOCKET, socket.SO_REUSEADDR, 1)
+    server.bind(("0.0.0.0", args.port))
+    server.listen()
+    print("listening on %d" % args.port, flush=True)
+
+    def accept_loop():
+        while True:
+            conn, address = server.accept()
+            conn.setsockopt(socket.IPPROTO_TCP, socket.TCP_NODELAY, 1)
+            threading.Thread(target=serve, args=(conn, address), daemon=True).start()
+
+    threading.Thread(target=accept_loop, daemon=True).start()
+
+    next_id = 1
+    for line in sys.stdin:
+        parts = line.split(None, 1)
+        if not parts:
+            continue
+        command = {"id": str(next_id), "cmd": parts[0]}
+        if len(parts) > 1:
+            command["url"] = parts[1].strip()
+        next_id += 1
+        payload = json.dumps(command).encode()
+        sent_at[command["id"]] = time.monotonic()
+        with clients_lock:
+            targets = list(clients)
+        for conn in targets:
+            try:
+                write_frame(conn, OP_TEXT, payload)
+            except OSError as e:
+                print("send failed: %s" % e, flush=True)
+        print("sent %s to %d kiosk(s)" % (json.dumps(command), len(targets)), flush=True)
+
+
+if __name__ == "__main__":
+    main()
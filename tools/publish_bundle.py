@@ -0,0 +1,50 @@
+#!/usr/bin/env python3
+"""Publish a site directory as a content-addressed bundle for BundleUpdater.
+
+Writes <out>/manifest.json and <out>/objects/<sha256> for every file; objects that
+already exist are kept, so successive versions can share one output directory.
+
+    python3 tools/publish_bundle.py site/ out/ --version 42
+    python3 -m http.server 8000 --directory out/      # local stand-in server
+    adb reverse tcp:8000 tcp:8000
+    adb shell am start -n com.example.autolaunchwebview/.DebugActivity \
+        --es bundle_manifest_url http://127.0.0.1:8000/manifest.json
+"""
+import argparse
+import hashlib
+import json
+import os
+import shutil
+
+
+def main():
+    parser = argparse.ArgumentParser()
+    parser.add_argument("site")
+    parser.add_argument("out")
+    parser.add_argument("--version", required=True)
+    args = parser.parse_args()
+
+    objects = os.path.join(args.out, "objects")
+    os.makedirs(objects, exist_ok=True)
+    files = []
+    for root, _, names in os.walk(args.site):
+        for name in sorted(names):
+            path = os.path.join(root, name)
+            with open(path, "rb") as f:
+                sha256 = hashlib.sha256(f.read()).hexdigest()
+            target = os.path.join(objects, sha256)
+            if not os.path.exists(target):
+                shutil.copyfile(path, target)
+            files.append({
+                "path": os.path.relpath(path, args.site).replace(os.sep, "/"),
+                "sha256": sha256,
+                "size": os.path.getsize(path),
+            })
+
+    with open(os.path.join(args.out, "manifest.json"), "w") as f:
+        json.dump({"version": args.version, "files": files}, f, indent=1)
+    print("%s: %d files, %d bytes" % (args.version, len(files), sum(f["size"] for f in files)))
+
+
+if __name__ == "__main__":
+    main()
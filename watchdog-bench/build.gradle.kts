@@ -0,0 +1,25 @@
+// JMH benchmarks for :watchdog-core; run with ./gradlew :watchdog-bench:jmh (no device needed)
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    implementation(project(":watchdog-core"))
+}
+
+jmh {
+    // The plugin adds jmh-core and the annotation processor at this version
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // Adds gc.alloc.rate.norm (bytes per operation) next to the throughput
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,96 @@
+package com.example.autolaunchwebview.watchdog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The watchdog's per-tick and per-launch decisions. Run with the gc profiler (the default in
+ * build.gradle.kts) and check gc.alloc.rate.norm: every benchmark here should stay at 0 B/op.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class WatchdogBenchmarks {
+    /**
+     * Stand-in for ActivityManager.RunningAppProcessInfo
+     */
+    static final class ProcessInfo {
+        final String processName;
+        final int importance;
+
+        ProcessInfo(String processName, int importance) {
+            this.processName = processName;
+            this.importance = importance;
+        }
+    }
+
+    private static final String PACKAGE = "com.example.autolaunchwebview";
+    // What Build.MANUFACTURER reports on the devices the kiosk ships to
+    private static final String[] MANUFACTURERS = {
+            "Xiaomi", "OnePlus", "OPPO", "vivo", "samsung", "Google", "HUAWEI", "Redmi"
+    };
+
+    private final InactivityDeadline deadline = new InactivityDeadline(30_000, 10 * 60_000);
+    private List<ProcessInfo> processes;
+    private long now;
+    private int index;
+
+    @Setup
+    public void setUp() {
+        // A typical list on a kiosk: system processes first, ours near the end
+        processes = new ArrayList<>();
+        for (int i = 0; i < 24; i++) {
+            processes.add(new ProcessInfo("com.android.system.process" + i, 300));
+        }
+        processes.add(new ProcessInfo(PACKAGE, ForegroundPolicy.IMPORTANCE_FOREGROUND));
+        processes.add(new ProcessInfo("com.android.launcher3", 200));
+    }
+
+    @Benchmark
+    public boolean inactivityDeadline() {
+        now += 17;
+        if ((now & 0xff) == 0) {
+            deadline.setBusy(!deadline.isBusy(), now);
+        } else {
+            deadline.onActivity(now);
+        }
+        return deadline.isExpired(now + deadline.getRemainingMs(now));
+    }
+
+    @Benchmark
+    public boolean foregroundCheck() {
+        int importance = ForegroundPolicy.importanceOf(PACKAGE, processes,
+                process -> process.processName, process -> process.importance);
+        return ForegroundPolicy.shouldRelaunch(importance);
+    }
+
+    @Benchmark
+    public void launchStrategyOrder(Blackhole blackhole) {
+        for (int strategy = LaunchStrategyOrder.first(); strategy != LaunchStrategyOrder.NONE;
+             strategy = LaunchStrategyOrder.next(strategy)) {
+            blackhole.consume(LaunchStrategyOrder.needsOverlayPermission(strategy));
+        }
+    }
+
+    @Benchmark
+    public int bootDelay() {
+        index = (index + 1) & (MANUFACTURERS.length - 1);
+        return BootDelayPolicy.delayMsForManufacturer(MANUFACTURERS[index]);
+    }
+
+    @Benchmark
+    public boolean oemDetection() {
+        index = (index + 1) & (MANUFACTURERS.length - 1);
+        return OemDetector.isXiaomiBrand(MANUFACTURERS[index], MANUFACTURERS[index]);
+    }
+}
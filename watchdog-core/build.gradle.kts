@@ -0,0 +1,13 @@
+// Android-free watchdog decision logic, shared by :app and benchmarked by :watchdog-bench
+plugins {
+    `java-library`
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
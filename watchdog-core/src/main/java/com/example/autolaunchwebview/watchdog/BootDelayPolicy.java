@@ -0,0 +1,27 @@
+package com.example.autolaunchwebview.watchdog;
+
+/**
+ * How long to wait after boot before launching. OEM ROMs that start their own services late
+ * (and kill early starters) get longer delays.
+ */
+public final class BootDelayPolicy {
+    private BootDelayPolicy() {
+    }
+
+    public static int delayMs(int oem) {
+        switch (oem) {
+            case OemDetector.XIAOMI:
+                return 15000;
+            case OemDetector.ONEPLUS:
+                return 12000;
+            case OemDetector.OPPO_VIVO:
+                return 10000;
+            default:
+                return 8000; // default fallback
+        }
+    }
+
+    public static int delayMsForManufacturer(String manufacturer) {
+        return delayMs(OemDetector.detect(manufacturer));
+    }
+}
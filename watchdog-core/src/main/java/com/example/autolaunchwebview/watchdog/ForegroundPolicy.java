@@ -0,0 +1,47 @@
+package com.example.autolaunchwebview.watchdog;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Decides from the running-process list whether the kiosk is in front. Takes accessors rather
+ * than Android types, so the app passes ActivityManager.RunningAppProcessInfo fields directly
+ * and nothing is copied per check.
+ */
+public final class ForegroundPolicy {
+    // ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND
+    public static final int IMPORTANCE_FOREGROUND = 100;
+    public static final int IMPORTANCE_NOT_RUNNING = -1;
+
+    private ForegroundPolicy() {
+    }
+
+    /**
+     * Importance of the process named packageName, or IMPORTANCE_NOT_RUNNING
+     */
+    public static <T> int importanceOf(String packageName, List<T> processes,
+                                       Function<T, String> name, ToIntFunction<T> importance) {
+        if (processes == null) {
+            return IMPORTANCE_NOT_RUNNING;
+        }
+        for (int i = 0, n = processes.size(); i < n; i++) {
+            T process = processes.get(i);
+            if (packageName.equals(name.apply(process))) {
+                return importance.applyAsInt(process);
+            }
+        }
+        return IMPORTANCE_NOT_RUNNING;
+    }
+
+    public static boolean isForeground(int importance) {
+        return importance == IMPORTANCE_FOREGROUND;
+    }
+
+    /**
+     * Whether the watchdog should relaunch: only when the kiosk process isn't in front
+     */
+    public static boolean shouldRelaunch(int importance) {
+        return !isForeground(importance);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.autolaunchwebview.watchdog;
+
+/**
+ * When the kiosk counts as idle: timeoutMs after the last user or page activity, or
+ * busyHoldMaxMs while the page reports itself busy (a video, a form being filled in).
+ * Times are from one monotonic clock chosen by the caller.
+ */
+public final class InactivityDeadline {
+    private final long timeoutMs;
+    private final long busyHoldMaxMs;
+    private long lastActivityMs;
+    private boolean busy;
+
+    public InactivityDeadline(long timeoutMs, long busyHoldMaxMs) {
+        this.timeoutMs = timeoutMs;
+        this.busyHoldMaxMs = busyHoldMaxMs;
+    }
+
+    public void onActivity(long nowMs) {
+        lastActivityMs = nowMs;
+    }
+
+    /**
+     * A change in the page's busy state counts as activity
+     */
+    public void setBusy(boolean busy, long nowMs) {
+        this.busy = busy;
+        lastActivityMs = nowMs;
+    }
+
+    /**
+     * A new page starts out idle, without resetting the deadline
+     */
+    public void clearBusy() {
+        busy = false;
+    }
+
+    public boolean isBusy() {
+        return busy;
+    }
+
+    public long getDeadlineMs() {
+        return lastActivityMs + (busy ? busyHoldMaxMs : timeoutMs);
+    }
+
+    public long getRemainingMs(long nowMs) {
+        return Math.max(0, getDeadlineMs() - nowMs);
+    }
+
+    public boolean isExpired(long nowMs) {
+        return nowMs >= getDeadlineMs();
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.autolaunchwebview.watchdog;
+
+/**
+ * Order in which the launcher tries to bring the kiosk back, cheapest and most reliable first.
+ * Walked without allocating: for (int s = first(); s != NONE; s = next(s)).
+ */
+public final class LaunchStrategyOrder {
+    public static final int NONE = 0;
+    public static final int DIRECT = 1;
+    public static final int OVERLAY = 2;
+    public static final int BRING_TO_FRONT = 3;
+    public static final int FORCE = 4;
+    public static final int LAUNCH_ACTIVITY = 5;
+
+    private static final int[] ORDER = {DIRECT, OVERLAY, BRING_TO_FRONT, FORCE};
+
+    private LaunchStrategyOrder() {
+    }
+
+    public static int first() {
+        return ORDER[0];
+    }
+
+    /**
+     * The strategy after previous, or NONE when all have been tried
+     */
+    public static int next(int previous) {
+        for (int i = 0; i < ORDER.length - 1; i++) {
+            if (ORDER[i] == previous) {
+                return ORDER[i + 1];
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Strategies that may only run with the draw-over-other-apps permission
+     */
+    public static boolean needsOverlayPermission(int strategy) {
+        return strategy == OVERLAY;
+    }
+}
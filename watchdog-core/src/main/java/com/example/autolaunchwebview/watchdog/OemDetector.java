@@ -0,0 +1,49 @@
+package com.example.autolaunchwebview.watchdog;
+
+/**
+ * Manufacturer families that need special handling, from Build.MANUFACTURER / Build.BRAND.
+ * Matching is case-insensitive and does not allocate.
+ */
+public final class OemDetector {
+    public static final int OTHER = 0;
+    public static final int XIAOMI = 1;
+    public static final int ONEPLUS = 2;
+    public static final int OPPO_VIVO = 3;
+
+    private OemDetector() {
+    }
+
+    public static int detect(String manufacturer) {
+        if (manufacturer == null) {
+            return OTHER;
+        }
+        if (containsIgnoreCase(manufacturer, "xiaomi") || containsIgnoreCase(manufacturer, "redmi")) {
+            return XIAOMI;
+        } else if (containsIgnoreCase(manufacturer, "oneplus")) {
+            return ONEPLUS;
+        } else if (containsIgnoreCase(manufacturer, "oppo") || containsIgnoreCase(manufacturer, "vivo")) {
+            return OPPO_VIVO;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Xiaomi or Redmi hardware. MIUI on other hardware is only visible through the
+     * ro.miui.ui.version.name property, which the app checks separately.
+     */
+    public static boolean isXiaomiBrand(String manufacturer, String brand) {
+        return "xiaomi".equalsIgnoreCase(manufacturer)
+                || "xiaomi".equalsIgnoreCase(brand)
+                || "redmi".equalsIgnoreCase(brand);
+    }
+
+    static boolean containsIgnoreCase(String text, String lowerCaseNeedle) {
+        int last = text.length() - lowerCaseNeedle.length();
+        for (int i = 0; i <= last; i++) {
+            if (text.regionMatches(true, i, lowerCaseNeedle, 0, lowerCaseNeedle.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.autolaunchwebview.watchdog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Behaviour of the decisions WatchdogBenchmarks measures: the benchmarks only say they are
+ * cheap, these say they are right.
+ */
+public class WatchdogDecisionsTest {
+    private static final long TIMEOUT_MS = 30_000;
+    private static final long BUSY_HOLD_MS = 10 * 60_000;
+    private static final String PACKAGE = "com.example.autolaunchwebview";
+
+    private static final class ProcessInfo {
+        final String processName;
+        final int importance;
+
+        ProcessInfo(String processName, int importance) {
+            this.processName = processName;
+            this.importance = importance;
+        }
+    }
+
+    @Test
+    public void inactivityExpiresTimeoutAfterLastActivity() {
+        InactivityDeadline deadline = new InactivityDeadline(TIMEOUT_MS, BUSY_HOLD_MS);
+        deadline.onActivity(1_000);
+        assertEquals(1_000 + TIMEOUT_MS, deadline.getDeadlineMs());
+        assertFalse(deadline.isExpired(TIMEOUT_MS));
+        assertEquals(1_000, deadline.getRemainingMs(TIMEOUT_MS));
+        assertTrue(deadline.isExpired(1_000 + TIMEOUT_MS));
+        assertEquals(0, deadline.getRemainingMs(1_000 + TIMEOUT_MS + 5_000));
+        // A touch pushes the deadline out again
+        deadline.onActivity(20_000);
+        assertFalse(deadline.isExpired(1_000 + TIMEOUT_MS));
+    }
+
+    @Test
+    public void busyPageHoldsOffInactivityForAtMostTheBusyHold() {
+        InactivityDeadline deadline = new InactivityDeadline(TIMEOUT_MS, BUSY_HOLD_MS);
+        deadline.setBusy(true, 0);
+        assertTrue(deadline.isBusy());
+        assertFalse(deadline.isExpired(TIMEOUT_MS));
+        assertTrue(deadline.isExpired(BUSY_HOLD_MS));
+        // Going idle counts as activity: the normal timeout runs from there
+        deadline.setBusy(false, 60_000);
+        assertEquals(60_000 + TIMEOUT_MS, deadline.getDeadlineMs());
+    }
+
+    @Test
+    public void newPageClearsBusyWithoutResettingTheDeadline() {
+        InactivityDeadline deadline = new InactivityDeadline(TIMEOUT_MS, BUSY_HOLD_MS);
+        deadline.setBusy(true, 5_000);
+        deadline.clearBusy();
+        assertFalse(deadline.isBusy());
+        assertEquals(5_000 + TIMEOUT_MS, deadline.getDeadlineMs());
+    }
+
+    @Test
+    public void relaunchesOnlyWhenKioskIsNotInFront() {
+        List<ProcessInfo> processes = new ArrayList<>(Arrays.asList(
+                new ProcessInfo("com.android.systemui", 100),
+                new ProcessInfo(PACKAGE, ForegroundPolicy.IMPORTANCE_FOREGROUND)));
+        assertFalse(ForegroundPolicy.shouldRelaunch(importance(processes)));
+
+        processes.set(1, new ProcessInfo(PACKAGE, 200));
+        assertEquals(200, importance(processes));
+        assertTrue(ForegroundPolicy.shouldRelaunch(importance(processes)));
+
+        // Not in the list at all: the kiosk process is gone
+        processes.remove(1);
+        assertEquals(ForegroundPolicy.IMPORTANCE_NOT_RUNNING, importance(processes));
+        assertTrue(ForegroundPolicy.shouldRelaunch(importance(processes)));
+        assertEquals(ForegroundPolicy.IMPORTANCE_NOT_RUNNING, ForegroundPolicy.importanceOf(PACKAGE, null,
+                (ProcessInfo process) -> process.processName, process -> process.importance));
+    }
+
+    @Test
+    public void strategiesAreTriedInOrderThenExhausted() {
+        List<Integer> tried = new ArrayList<>();
+        for (int strategy = LaunchStrategyOrder.first(); strategy != LaunchStrategyOrder.NONE;
+             strategy = LaunchStrategyOrder.next(strategy)) {
+            tried.add(strategy);
+        }
+        assertEquals(Arrays.asList(LaunchStrategyOrder.DIRECT, LaunchStrategyOrder.OVERLAY,
+                LaunchStrategyOrder.BRING_TO_FRONT, LaunchStrategyOrder.FORCE), tried);
+        // LaunchActivity is the coordinator's last resort, outside the walk
+        assertEquals(LaunchStrategyOrder.NONE, LaunchStrategyOrder.next(LaunchStrategyOrder.LAUNCH_ACTIVITY));
+        assertTrue(LaunchStrategyOrder.needsOverlayPermission(LaunchStrategyOrder.OVERLAY));
+        assertFalse(LaunchStrategyOrder.needsOverlayPermission(LaunchStrategyOrder.DIRECT));
+    }
+
+    @Test
+    public void detectsOemFamiliesWhateverTheCase() {
+        assertEquals(OemDetector.XIAOMI, OemDetector.detect("Xiaomi"));
+        assertEquals(OemDetector.XIAOMI, OemDetector.detect("REDMI"));
+        assertEquals(OemDetector.ONEPLUS, OemDetector.detect("OnePlus"));
+        assertEquals(OemDetector.OPPO_VIVO, OemDetector.detect("OPPO"));
+        assertEquals(OemDetector.OPPO_VIVO, OemDetector.detect("vivo"));
+        assertEquals(OemDetector.OTHER, OemDetector.detect("samsung"));
+        assertEquals(OemDetector.OTHER, OemDetector.detect(""));
+        assertEquals(OemDetector.OTHER, OemDetector.detect(null));
+        assertTrue(OemDetector.isXiaomiBrand("Google", "Redmi"));
+        assertFalse(OemDetector.isXiaomiBrand("POCO", "POCO"));
+    }
+
+    @Test
+    public void lateStartingRomsGetLongerBootDelays() {
+        assertEquals(15_000, BootDelayPolicy.delayMsForManufacturer("Xiaomi"));
+        assertEquals(12_000, BootDelayPolicy.delayMsForManufacturer("OnePlus"));
+        assertEquals(10_000, BootDelayPolicy.delayMsForManufacturer("vivo"));
+        assertEquals(8_000, BootDelayPolicy.delayMsForManufacturer("Google"));
+        assertEquals(8_000, BootDelayPolicy.delayMsForManufacturer(null));
+    }
+
+    private static int importance(List<ProcessInfo> processes) {
+        return ForegroundPolicy.importanceOf(PACKAGE, processes,
+                process -> process.processName, process -> process.importance);
+    }
+}